@@ -2,10 +2,43 @@
 
 ENV="${ENV:-default}"
 
+# Forwards the command to a daemon serving this directory, started with `./run-shell.sh daemon &`. Returns 1 without
+# having run anything when there is no daemon to forward to, or the daemon refuses the command.
+forward_to_daemon() {
+    local state_file="${HOME}/.events/daemons/$(pwd -P | sed -E 's/[^A-Za-z0-9.-]+/_/g').properties"
+    [[ -r "$state_file" ]] || return 1
+    local port token
+    port=$(sed -n 's/^port=//p' "$state_file")
+    token=$(sed -n 's/^token=//p' "$state_file")
+    # the braces keep the redirect to the connect itself; a bare exec would silence stderr for the rest of the script
+    { exec 3<>"/dev/tcp/127.0.0.1/${port}"; } 2> /dev/null || return 1
+    printf '%s\n' "$token" "$(pwd -P)" "$ENV" "$@" "" >&3
+    local line
+    while IFS= read -r line <&3; do
+        case "${line:0:1}" in
+            o) printf '%s\n' "${line:1}" ;;
+            e) printf '%s\n' "${line:1}" >&2 ;;
+            x) exec 3<&-; exit "${line:1}" ;;
+            r) break ;;
+        esac
+    done
+    exec 3<&-
+    return 1
+}
+
+if [[ $# -gt 0 ]]; then
+    forward_to_daemon "$@"
+fi
+
 JAR=`ls -d build/libs/* 2> /dev/null | grep ".jar"`
+CDS_DIR=build/cds
 if [[ -z "$JAR" ]]; then
     echo "No JAR exists. Please build the JAR first by running 'gradle clean build'"
     exit 1
+elif [[ -f "$CDS_DIR/events.jsa" && "$CDS_DIR/events-app.jar" -nt "$JAR" ]]; then
+    # class data sharing archive from 'gradle cdsArchive', which only applies to the classpath it was dumped with
+    SPRING_PROFILES_ACTIVE=${ENV} java -XX:SharedArchiveFile=${CDS_DIR}/events.jsa -cp "$(cat ${CDS_DIR}/classpath.txt)" \
+        com.github.chasdevs.events.EventsApplication $@
 else
     SPRING_PROFILES_ACTIVE=${ENV} java -jar ${JAR} $@
 fi
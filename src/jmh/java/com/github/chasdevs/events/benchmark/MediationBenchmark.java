@@ -0,0 +1,47 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.services.mediation.MediationService;
+import com.github.chasdevs.events.services.mediation.MediationServiceException;
+import com.github.chasdevs.events.services.repo.RepoItemType;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import org.apache.avro.Schema;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the compatibility checks run before every sync, against a registry holding the previous version of
+ * every local record so that every record is checked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediationBenchmark {
+
+    private MediationService mediationService;
+    private String eventName;
+
+    @Setup(Level.Trial)
+    public void setUp(RepoState state) throws RepoServiceException {
+        Map<String, Schema> localSchemasBySubject = new HashMap<>();
+        Map<RepoItemType, Map<String, Schema>> localRepoSchemaMap = state.repoService.getLocalRepoSchemaMap();
+        localRepoSchemaMap.values().forEach(localSchemasBySubject::putAll);
+        mediationService = new MediationService(new PreviousVersionRegistryClient(localSchemasBySubject), state.repoService);
+        eventName = state.repoService.list(RepoItemType.EVENT).get(0).getName();
+    }
+
+    @Benchmark
+    public Object testGlobalCompatibility() throws MediationServiceException {
+        return mediationService.testGlobalCompatibility();
+    }
+
+    @Benchmark
+    public String testCompatibility() throws MediationServiceException {
+        return mediationService.testCompatibility(eventName);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.util.NamingUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the name conversions done for every item on every command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NamingUtilBenchmark {
+
+    @Param({"click-event", "content-video-playback-progress-event"})
+    public String subject;
+
+    private String fileName;
+
+    @Setup
+    public void setUp() {
+        fileName = NamingUtil.fromSubjectToFile(subject);
+    }
+
+    @Benchmark
+    public String fromSubjectToFile() {
+        return NamingUtil.fromSubjectToFile(subject);
+    }
+
+    @Benchmark
+    public String fromFileToSubject() {
+        return NamingUtil.fromFileToSubject(fileName);
+    }
+
+    @Benchmark
+    public String fromSubjectToNamespace() {
+        return NamingUtil.fromSubjectToNamespace(subject);
+    }
+
+    @Benchmark
+    public String fromLocalToRegistrySubject() {
+        return NamingUtil.fromLocalToRegistrySubject(subject);
+    }
+}
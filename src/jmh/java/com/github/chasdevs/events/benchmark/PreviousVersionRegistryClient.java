@@ -0,0 +1,132 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.clients.registry.SchemaMetaData;
+import com.github.chasdevs.events.clients.registry.SchemaRegistryClient;
+import com.hotels.avro.compatibility.Compatibility;
+import org.apache.avro.Schema;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Registry stand-in holding the previous version of every local record: the same record without its last field that
+ * has a default, which keeps the local record compatible with it. Every such record therefore differs from the registry
+ * and goes through a compatibility check, which is checked in process the way the registry checks backwards compatibility.
+ */
+public class PreviousVersionRegistryClient implements SchemaRegistryClient {
+
+    private final Map<String, Schema> schemasBySubject;
+
+    public PreviousVersionRegistryClient(Map<String, Schema> localSchemasBySubject) {
+        schemasBySubject = localSchemasBySubject.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> getPreviousVersion(e.getValue())));
+    }
+
+    @Override
+    public boolean testCompatibility(String subject, Schema schema) {
+        Schema latest = schemasBySubject.get(subject);
+        return latest == null || Compatibility.checkThat(schema).canRead(latest).isCompatible();
+    }
+
+    @Override
+    public String getCompatibilityLevel(String subject) {
+        return "BACKWARD";
+    }
+
+    @Override
+    public SortedMap<Integer, Schema> getSchemaHistory(String subject) {
+        Schema latest = schemasBySubject.get(subject);
+        return latest == null ? new TreeMap<>() : new TreeMap<>(Map.of(1, latest));
+    }
+
+    @Override
+    public Map<String, Schema> getCurrentRegistrySchemaMap() {
+        return schemasBySubject;
+    }
+
+    @Override
+    public Map<String, Schema> getRegistrySchemaMap(Collection<String> subjects) {
+        return subjects.stream()
+                .filter(schemasBySubject::containsKey)
+                .collect(Collectors.toMap(subject -> subject, schemasBySubject::get));
+    }
+
+    @Override
+    public Schema getLatestSchemaBySubject(String subject) {
+        return schemasBySubject.get(subject);
+    }
+
+    @Override
+    public List<String> getAllSubjects() {
+        return new ArrayList<>(schemasBySubject.keySet());
+    }
+
+    @Override
+    public void discardSnapshot() {
+    }
+
+    @Override
+    public void saveSnapshot() {
+    }
+
+    @Override
+    public Integer register(String subject, Schema schema) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Schema getSchemaById(int id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Schema getSchemaBySubjectAndId(String subject, int id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer getSchemaIdBySubjectAndSchema(String subject, Schema schema) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SchemaMetaData getLatestSchemaMetaData(String subject) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SchemaMetaData getSchemaMetaDataBySubjectAndId(String subject, int id) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Integer getSchemaVersionBySubjectAndSchema(String subject, Schema schema) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Integer> getAllVersionsBySubject(String subject) {
+        throw new UnsupportedOperationException();
+    }
+
+    private static Schema getPreviousVersion(Schema schema) {
+        if(schema.getType() != Schema.Type.RECORD) {
+            return schema;
+        }
+        Schema.Field added = null;
+        for(Schema.Field field : schema.getFields()) {
+            if(field.hasDefaultValue()) {
+                added = field;
+            }
+        }
+        if(added == null) {
+            return schema;
+        }
+        Schema.Field removed = added;
+        List<Schema.Field> fields = schema.getFields().stream()
+                .filter(field -> field != removed)
+                .map(field -> new Schema.Field(field, field.schema()))
+                .collect(Collectors.toList());
+        return Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError(), fields);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.services.repo.RepoItem;
+import com.github.chasdevs.events.services.repo.RepoService;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import com.github.chasdevs.events.util.AvroParser;
+import com.github.chasdevs.events.util.FileUtil;
+import org.apache.avro.Protocol;
+import org.apache.avro.Schema;
+import org.apache.avro.compiler.idl.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for scanning, parsing and validating the local repo. Benchmarks named "cold" start from a new
+ * {@link RepoService} with nothing cached, the way a single command run from a script does; the others reuse one
+ * service the way the interactive shell does.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepoBenchmark {
+
+    @Benchmark
+    public Protocol parseIdl(RepoState state) throws IOException, ParseException {
+        return AvroParser.protocolFromIdl(state.randomItem().getPathToFile());
+    }
+
+    @Benchmark
+    public List<Path> getDescendents(RepoState state) throws IOException {
+        return FileUtil.getDescendents(state.root, Collections.emptyList());
+    }
+
+    @Benchmark
+    public List<RepoItem> listAll(RepoState state) throws RepoServiceException {
+        return state.repoService.listAll();
+    }
+
+    @Benchmark
+    public Schema getSchema(RepoState state) throws RepoServiceException {
+        return state.repoService.getSchema(state.randomItem().getName());
+    }
+
+    @Benchmark
+    public Object validateLocalRepo(RepoState state) throws RepoServiceException {
+        return state.repoService.validateLocalRepo();
+    }
+
+    @Benchmark
+    public Object validateLocalRepoCold(RepoState state) throws RepoServiceException {
+        return new RepoService(state.newConfig()).validateLocalRepo();
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.config.LocalRepoConfig;
+import com.github.chasdevs.events.services.repo.RepoItem;
+import com.github.chasdevs.events.services.repo.RepoService;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import com.github.chasdevs.events.services.repo.SyntheticRepoGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * A generated repo of each benchmarked size, along with a warmed-up {@link RepoService} over it. The repo is generated
+ * once per trial with a fixed seed, so generating it is not part of any measurement and every run measures the same repo.
+ */
+@State(Scope.Benchmark)
+public class RepoState {
+
+    @Param({"10", "1000", "10000"})
+    public int schemaCount;
+
+    public Path root;
+    public LocalRepoConfig config;
+    public RepoService repoService;
+    public List<RepoItem> items;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, RepoServiceException {
+        SyntheticRepoGenerator.Options options = new SyntheticRepoGenerator.Options();
+        options.setSchemaCount(schemaCount);
+        root = Files.createTempDirectory("events-benchmark-repo");
+        new SyntheticRepoGenerator(options).generate(root);
+        config = newConfig();
+        repoService = new RepoService(config);
+        items = repoService.listAll();
+        // parses every schema once, so benchmarks on this service measure the warm path
+        repoService.validateLocalRepo();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try(Stream<Path> paths = Files.walk(root)) {
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return config for a fresh service over the generated repo, which keeps its index in memory only so that
+     * one benchmark cannot warm up another through the index file
+     */
+    public LocalRepoConfig newConfig() {
+        LocalRepoConfig config = new LocalRepoConfig(root.toString(), 8);
+        config.setIndexFile("");
+        return config;
+    }
+
+    public RepoItem randomItem() {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+}
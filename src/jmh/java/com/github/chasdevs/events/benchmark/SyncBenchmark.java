@@ -0,0 +1,55 @@
+package com.github.chasdevs.events.benchmark;
+
+import com.github.chasdevs.events.clients.registry.ConfluentSchemaRegistryClient;
+import com.github.chasdevs.events.clients.registry.InMemorySchemaRegistry;
+import com.github.chasdevs.events.config.FakeRegistryConfig;
+import com.github.chasdevs.events.config.SchemaRegistryConfig;
+import com.github.chasdevs.events.services.mediation.MediationService;
+import com.github.chasdevs.events.services.mediation.MediationServiceException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for syncing against an in-memory registry with a simulated network latency, once to register the whole repo
+ * and then repeatedly while everything is up to date. The latency makes the number of requests in flight matter the
+ * way it does against a real registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncBenchmark {
+
+    @Param({"1", "8"})
+    public int maxInFlightRequests;
+
+    @Param({"2"})
+    public long latencyMs;
+
+    private MediationService mediationService;
+
+    @Setup(Level.Trial)
+    public void setUp(RepoState state) throws MediationServiceException {
+        FakeRegistryConfig fakeConfig = new FakeRegistryConfig();
+        fakeConfig.setDefaults(new FakeRegistryConfig.CallBehavior(FakeRegistryConfig.LatencyDistribution.LOG_NORMAL, latencyMs, latencyMs * 4, 0));
+        SchemaRegistryConfig registryConfig = new SchemaRegistryConfig("in-memory", 512);
+        registryConfig.setMaxInFlightRequests(maxInFlightRequests);
+        ConfluentSchemaRegistryClient registryClient = new ConfluentSchemaRegistryClient(
+                new InMemorySchemaRegistry(fakeConfig), registryConfig);
+        mediationService = new MediationService(registryClient, state.repoService, registryConfig);
+        mediationService.syncLocalWithRemote();
+    }
+
+    @Benchmark
+    public Object syncUpToDate() throws MediationServiceException {
+        return mediationService.syncLocalWithRemote();
+    }
+
+    @Benchmark
+    public Object testGlobalCompatibility() throws MediationServiceException {
+        return mediationService.testGlobalCompatibility();
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.chasdevs.events;
 
+import com.github.chasdevs.events.command.CommandBatch;
+import org.jline.reader.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.ExitCodeExceptionMapper;
@@ -16,7 +20,6 @@ import org.springframework.util.StringUtils;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Configuration class that specifies a {@link CommandLineRunner} bean that essentially assumes any runtime arguments
@@ -26,6 +29,9 @@ import java.util.stream.Collectors;
  * For example, the non-interactive CLI will be used in our post-build actions on the master branch for syncing with
  * the schema registry. Whereas we could allow the interactive shell for developers to test compatibility before they
  * create a PR.
+ * <p>
+ * Several commands can be run in the same process as a {@link CommandBatch}, which this runner also takes over from
+ * Spring Shell's own script runner for {@code @file} arguments.
  */
 @Configuration
 public class ApplicationRunnerConfiguration {
@@ -33,9 +39,12 @@ public class ApplicationRunnerConfiguration {
     @Autowired
     private Shell shell;
 
+    @Autowired
+    private Parser parser;
+
     @Bean
-    public CommandLineRunner exampleCommandLineRunner(ConfigurableEnvironment environment) {
-        return new MapToShellCommandLineRunner(shell, environment);
+    public CommandLineRunner exampleCommandLineRunner(ConfigurableEnvironment environment, ExitCodeExceptionMapper exitCodeExceptionMapper) {
+        return new MapToShellCommandLineRunner(shell, environment, parser, exitCodeExceptionMapper);
     }
 
     @Bean
@@ -53,23 +62,46 @@ public class ApplicationRunnerConfiguration {
 @Order(InteractiveShellApplicationRunner.PRECEDENCE - 2)
 class MapToShellCommandLineRunner implements CommandLineRunner {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MapToShellCommandLineRunner.class);
+
     private Shell shell;
 
     private final ConfigurableEnvironment environment;
 
-    public MapToShellCommandLineRunner(Shell shell, ConfigurableEnvironment environment) {
+    private final Parser parser;
+
+    private final ExitCodeExceptionMapper exitCodeExceptionMapper;
+
+    public MapToShellCommandLineRunner(Shell shell, ConfigurableEnvironment environment, Parser parser, ExitCodeExceptionMapper exitCodeExceptionMapper) {
         this.shell = shell;
         this.environment = environment;
+        this.parser = parser;
+        this.exitCodeExceptionMapper = exitCodeExceptionMapper;
     }
 
     @Override
     public void run(String... args) throws Exception {
-        List<String> commandsToRun = Arrays.stream(args)
-                .filter(w -> !w.startsWith("@"))
-                .collect(Collectors.toList());
-        if (!commandsToRun.isEmpty()) {
-            InteractiveShellApplicationRunner.disable(environment);
-            shell.run(new StringInputProvider(commandsToRun));
+        CommandBatch batch = CommandBatch.parse(Arrays.asList(args), parser);
+        if (batch.isEmpty()) {
+            return;
+        }
+        InteractiveShellApplicationRunner.disable(environment);
+        if (batch.isSingleCommand()) {
+            shell.run(new StringInputProvider(batch.getCommands().get(0).getWords()));
+            return;
+        }
+        // a failed command is reported by the shell as it fails, and only decides the exit code of the batch here
+        int exitCode = batch.run(words -> {
+            try {
+                shell.run(new StringInputProvider(words));
+                return 0;
+            } catch (Exception e) {
+                LOGGER.debug("Command failed: " + String.join(" ", words), e);
+                return exitCodeExceptionMapper.getExitCode(e);
+            }
+        });
+        if (exitCode != 0) {
+            throw new ExitRequest(exitCode);
         }
     }
 }
@@ -1,21 +1,47 @@
 package com.github.chasdevs.events;
 
+import com.github.chasdevs.events.clients.registry.InMemorySchemaRegistry;
+import com.github.chasdevs.events.config.FakeRegistryConfig;
 import com.github.chasdevs.events.config.SchemaRegistryConfig;
+import com.github.chasdevs.events.services.repo.RepoService;
 import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import org.apache.avro.Schema;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+
+import java.util.Map;
 
 @SpringBootApplication
 @EnableConfigurationProperties
 public class EventsApplication {
 
 	@Bean
+	@Lazy
+	@Profile("!fake-registry")
 	CachedSchemaRegistryClient theirRegistryClient(SchemaRegistryConfig config) {
 		return new CachedSchemaRegistryClient(config.getUrl(), config.getIdentityMapLimit(), config.getAuthConfigs());
 	}
 
+	@Bean
+	@Lazy
+	@Profile("fake-registry")
+	SchemaRegistryClient fakeRegistryClient(FakeRegistryConfig config, RepoService repoService) throws Exception {
+		InMemorySchemaRegistry registry = new InMemorySchemaRegistry(config);
+		if(config.isPreloadLocalRepo()) {
+			for(Map<String, Schema> schemasBySubject : repoService.getLocalRepoSchemaMap().values()) {
+				for(Map.Entry<String, Schema> entry : schemasBySubject.entrySet()) {
+					registry.preload(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return registry;
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(EventsApplication.class, args);
 	}
@@ -1,34 +1,58 @@
 package com.github.chasdevs.events.clients.registry;
 
+import com.github.chasdevs.events.config.SchemaRegistryConfig;
 import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
 import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
 import org.apache.avro.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * This class is an implementation of our {@link SchemaRegistryClient} that leverages Confluent's Schema Registry Client.
  * This class exists as a wrapper to their implementation, so that any potential change to their implementation does not
  * bleed into our code base's main services.
+ * <p>
+ * Like the Confluent client behind it, this client is only created once a command needs the registry, so commands that
+ * only touch the local repo never load or connect to it.
  */
 @Service
+@Lazy
 public class ConfluentSchemaRegistryClient implements SchemaRegistryClient {
 
     private final io.confluent.kafka.schemaregistry.client.SchemaRegistryClient confluentClient;
+    private final int maxInFlightRequests;
+    private final long requestTimeoutMs;
+    @Nullable
+    private final RegistrySnapshot snapshot;
+    // fetched once, for the subjects that have no level of their own
+    private volatile String globalCompatibilityLevel;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfluentSchemaRegistryClient.class);
 
-    @Autowired
     public ConfluentSchemaRegistryClient(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient confluentClient) {
         this.confluentClient = confluentClient;
+        this.maxInFlightRequests = 1;
+        this.requestTimeoutMs = 0;
+        this.snapshot = null;
+    }
+
+    @Autowired
+    public ConfluentSchemaRegistryClient(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient confluentClient, SchemaRegistryConfig config) {
+        this.confluentClient = confluentClient;
+        this.maxInFlightRequests = Math.max(1, config.getMaxInFlightRequests());
+        this.requestTimeoutMs = config.getRequestTimeoutMs();
+        this.snapshot = config.isSnapshotEnabled()
+                ? new RegistrySnapshot(config.getUrl(), config.getSnapshotFile(), Duration.ofSeconds(config.getSnapshotMaxAgeSeconds()))
+                : null;
     }
 
     @Override
@@ -36,6 +60,11 @@ public class ConfluentSchemaRegistryClient implements SchemaRegistryClient {
         Integer id = null;
         try {
             id = confluentClient.register(subject, schema);
+            if(snapshot != null) {
+                // otherwise later diffs in this process, or in the next one, would compare against the previous version;
+                // saved once the whole sync is done, see saveSnapshot
+                snapshot.invalidate(subject);
+            }
         } catch (IOException | RestClientException e) {
             handleExternalExceptions(e);
         }
@@ -137,6 +166,31 @@ public class ConfluentSchemaRegistryClient implements SchemaRegistryClient {
         return compatible;
     }
 
+    @Override
+    public String getCompatibilityLevel(String subject) throws SchemaRegistryException {
+        String level = null;
+        try {
+            level = confluentClient.getCompatibility(subject);
+        } catch (RestClientException e) {
+            if(e.getStatus() != 404) {
+                handleExternalExceptions(e);
+            }
+            level = getGlobalCompatibilityLevel();
+        } catch (IOException e) {
+            handleExternalExceptions(e);
+        }
+        return level;
+    }
+
+    @Override
+    public SortedMap<Integer, Schema> getSchemaHistory(String subject) throws SchemaRegistryException {
+        SortedMap<Integer, Schema> history = new TreeMap<>();
+        for(Integer version : getAllVersionsBySubject(subject)) {
+            history.put(version, new Schema.Parser().parse(getSchemaMetaDataBySubjectAndId(subject, version).getSchema()));
+        }
+        return history;
+    }
+
     @Override
     public List<String> getAllSubjects() throws SchemaRegistryException {
         List<String> subjects = new ArrayList<>();
@@ -150,11 +204,135 @@ public class ConfluentSchemaRegistryClient implements SchemaRegistryClient {
 
     @Override
     public Map<String, Schema> getCurrentRegistrySchemaMap() throws SchemaRegistryException {
-        Map<String, Schema> currentSchemasBySubject = new HashMap<>();
-        for(String subject : getAllSubjects()) {
-            currentSchemasBySubject.put(subject, getLatestSchemaBySubject(subject));
+        List<String> subjects;
+        if(snapshot != null && snapshot.isListingFresh()) {
+            subjects = new ArrayList<>(snapshot.getSubjects());
+        } else {
+            subjects = getAllSubjects();
+            if(snapshot != null) {
+                snapshot.setSubjects(subjects);
+            }
+        }
+        return getLatestSchemas(subjects, false);
+    }
+
+    @Override
+    public Map<String, Schema> getRegistrySchemaMap(Collection<String> subjects) throws SchemaRegistryException {
+        return getLatestSchemas(subjects, true);
+    }
+
+    @Override
+    public void discardSnapshot() {
+        if(snapshot != null) {
+            snapshot.discard();
+            snapshot.save();
+        }
+    }
+
+    @Override
+    public void saveSnapshot() {
+        if(snapshot != null) {
+            snapshot.save();
+        }
+    }
+
+    /**
+     * Fetches the latest schema of every subject, keeping at most {@link #maxInFlightRequests} requests in flight and
+     * giving up on any single request once it has been running for {@link #requestTimeoutMs}. Schemas registered under several subjects are
+     * only parsed once. When a {@link RegistrySnapshot} is configured, subjects are served from it where possible and
+     * the snapshot is saved afterwards.
+     *
+     * @param subjects
+     * @param skipUnregistered whether a subject the registry has no schema for is left out rather than reported as a failure
+     * @throws SchemaRegistrySnapshotException if the latest schema could not be fetched for some of the subjects
+     */
+    private Map<String, Schema> getLatestSchemas(Collection<String> subjects, boolean skipUnregistered) throws SchemaRegistryException {
+        RegistrySnapshot snapshot = this.snapshot != null ? this.snapshot : RegistrySnapshot.inMemory();
+        Map<String, CompletableFuture<Schema>> futures = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxInFlightRequests, Math.max(1, subjects.size())));
+        try {
+            for(String subject : subjects) {
+                CompletableFuture<Schema> future = new CompletableFuture<>();
+                executor.execute(() -> {
+                    // the timeout starts once a thread picks the request up, not while it waits for one in the queue
+                    if(requestTimeoutMs > 0) {
+                        future.orTimeout(requestTimeoutMs, TimeUnit.MILLISECONDS);
+                    }
+                    try {
+                        future.complete(getLatestSchema(subject, snapshot));
+                    } catch (Throwable e) {
+                        // as CompletableFuture.supplyAsync does, so that nothing thrown leaves the future incomplete
+                        future.completeExceptionally(e);
+                    }
+                });
+                futures.put(subject, future);
+            }
+
+            Map<String, Schema> currentSchemasBySubject = new HashMap<>();
+            Map<String, String> failures = new TreeMap<>();
+            for(Map.Entry<String, CompletableFuture<Schema>> entry : futures.entrySet()) {
+                try {
+                    currentSchemasBySubject.put(entry.getKey(), entry.getValue().join());
+                } catch (CompletionException | CancellationException e) {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    if(isNotFound(cause)) {
+                        snapshot.remove(entry.getKey());
+                        if(skipUnregistered) {
+                            continue;
+                        }
+                    }
+                    String message = cause instanceof TimeoutException ? String.format("Timed out after %d ms", requestTimeoutMs) : cause.getMessage();
+                    LOGGER.debug("Could not fetch latest schema for " + entry.getKey(), cause);
+                    failures.put(entry.getKey(), message);
+                }
+            }
+            if(!failures.isEmpty()) {
+                snapshot.invalidateListing();
+            }
+            snapshot.save();
+            if(!failures.isEmpty()) {
+                throw new SchemaRegistrySnapshotException(currentSchemasBySubject, failures);
+            }
+            return currentSchemasBySubject;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the latest schema of the subject, only asking the registry for what the snapshot cannot vouch for: a
+     * stale entry costs a version listing, and the schema itself is only fetched when its version has changed.
+     */
+    private Schema getLatestSchema(String subject, RegistrySnapshot snapshot) throws SchemaRegistryException {
+        RegistrySnapshot.Entry stored = snapshot.get(subject);
+        if(stored != null) {
+            if(snapshot.isFresh(stored)) {
+                return snapshot.getSchema(stored);
+            }
+            List<Integer> versions = getAllVersionsBySubject(subject);
+            if(!versions.isEmpty() && Collections.max(versions) == stored.getVersion()) {
+                snapshot.confirm(stored);
+                return snapshot.getSchema(stored);
+            }
         }
-        return currentSchemasBySubject;
+        return snapshot.getSchema(snapshot.put(subject, getLatestSchemaMetaData(subject)));
+    }
+
+    private String getGlobalCompatibilityLevel() throws SchemaRegistryException {
+        if(globalCompatibilityLevel == null) {
+            try {
+                globalCompatibilityLevel = confluentClient.getCompatibility(null);
+            } catch (IOException | RestClientException e) {
+                handleExternalExceptions(e);
+            }
+        }
+        return globalCompatibilityLevel;
+    }
+
+    private boolean isNotFound(Throwable e) {
+        return e instanceof SchemaRegistryException
+                && e.getCause() instanceof RestClientException
+                && ((RestClientException) e.getCause()).getStatus() == 404;
     }
 
     private void handleExternalExceptions(Exception e) throws SchemaRegistryException {
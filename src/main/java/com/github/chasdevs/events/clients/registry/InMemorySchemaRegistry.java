@@ -0,0 +1,293 @@
+package com.github.chasdevs.events.clients.registry;
+
+import com.github.chasdevs.events.config.FakeRegistryConfig;
+import com.hotels.avro.compatibility.Compatibility;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaMetadata;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import org.apache.avro.Schema;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A schema registry that lives entirely in memory, for running syncs and compatibility checks without a registry to
+ * talk to. It stands in for Confluent's client rather than ours, so {@link ConfluentSchemaRegistryClient} still sits in
+ * front of it and everything above the network behaves as it does against a real registry: missing subjects, versions
+ * and schemas are reported with the registry's 404 error codes, and internal errors with a 500.
+ * <p>
+ * Each call first waits for a latency sampled from its {@link FakeRegistryConfig.CallBehavior}, then fails with the
+ * configured error rate, so that the effect of slow or flaky registries can be measured offline. The wait happens
+ * before the registry's lock is taken, so concurrent calls overlap as they would against a real registry. Calls our
+ * client never makes, such as modes and deleting single versions, are left to Confluent's own mock client.
+ */
+public class InMemorySchemaRegistry extends MockSchemaRegistryClient {
+
+    public static final String DEFAULT_COMPATIBILITY = "BACKWARD";
+
+    private static final double Z_99 = 2.326;
+
+    private final FakeRegistryConfig config;
+    private final Random random;
+
+    private final Map<String, List<Integer>> idsBySubject = new TreeMap<>();
+    private final Map<Integer, Schema> schemasById = new HashMap<>();
+    private final Map<String, Integer> idsBySchema = new HashMap<>();
+    private final Map<String, String> compatibilityBySubject = new HashMap<>();
+    private String globalCompatibility = DEFAULT_COMPATIBILITY;
+
+    public InMemorySchemaRegistry(FakeRegistryConfig config) {
+        this.config = config;
+        this.random = new Random(config.getSeed());
+    }
+
+    /**
+     * Registers the schema without waiting for the configured latency or failing, for filling the registry before use.
+     */
+    public synchronized int preload(String subject, Schema schema) throws RestClientException {
+        List<Integer> ids = idsBySubject.get(subject);
+        Integer id = idsBySchema.get(schema.toString());
+        if(ids != null && id != null && ids.contains(id)) {
+            return id;
+        }
+        if(ids != null && !isCompatible(subject, schema)) {
+            throw new RestClientException("Schema being registered is incompatible with an earlier schema", 409, 409);
+        }
+        if(id == null) {
+            id = schemasById.size() + 1;
+            schemasById.put(id, schema);
+            idsBySchema.put(schema.toString(), id);
+        }
+        idsBySubject.computeIfAbsent(subject, s -> new ArrayList<>()).add(id);
+        return id;
+    }
+
+    @Override
+    public int register(String subject, Schema schema) throws IOException, RestClientException {
+        simulate("register");
+        return preload(subject, schema);
+    }
+
+    @Override
+    public Schema getById(int id) throws IOException, RestClientException {
+        simulate("getById");
+        synchronized(this) {
+            Schema schema = schemasById.get(id);
+            if(schema == null) {
+                throw schemaNotFound();
+            }
+            return schema;
+        }
+    }
+
+    @Override
+    public Schema getBySubjectAndId(String subject, int id) throws IOException, RestClientException {
+        simulate("getBySubjectAndId");
+        synchronized(this) {
+            if(!getIds(subject).contains(id)) {
+                throw schemaNotFound();
+            }
+            return schemasById.get(id);
+        }
+    }
+
+    @Override
+    public SchemaMetadata getLatestSchemaMetadata(String subject) throws IOException, RestClientException {
+        simulate("getLatestSchemaMetadata");
+        synchronized(this) {
+            List<Integer> ids = getIds(subject);
+            return getMetadata(subject, ids.size());
+        }
+    }
+
+    @Override
+    public SchemaMetadata getSchemaMetadata(String subject, int version) throws IOException, RestClientException {
+        simulate("getSchemaMetadata");
+        synchronized(this) {
+            return getMetadata(subject, version);
+        }
+    }
+
+    @Override
+    public int getVersion(String subject, Schema schema) throws IOException, RestClientException {
+        simulate("getVersion");
+        synchronized(this) {
+            return getVersionOf(subject, schema);
+        }
+    }
+
+    @Override
+    public int getId(String subject, Schema schema) throws IOException, RestClientException {
+        simulate("getId");
+        synchronized(this) {
+            return getIds(subject).get(getVersionOf(subject, schema) - 1);
+        }
+    }
+
+    @Override
+    public List<Integer> getAllVersions(String subject) throws IOException, RestClientException {
+        simulate("getAllVersions");
+        synchronized(this) {
+            return getVersions(subject);
+        }
+    }
+
+    @Override
+    public boolean testCompatibility(String subject, Schema schema) throws IOException, RestClientException {
+        simulate("testCompatibility");
+        synchronized(this) {
+            getIds(subject);
+            return isCompatible(subject, schema);
+        }
+    }
+
+    @Override
+    public String updateCompatibility(String subject, String compatibility) throws IOException, RestClientException {
+        simulate("updateCompatibility");
+        synchronized(this) {
+            if(subject == null) {
+                globalCompatibility = compatibility;
+            } else {
+                compatibilityBySubject.put(subject, compatibility);
+            }
+            return compatibility;
+        }
+    }
+
+    @Override
+    public String getCompatibility(String subject) throws IOException, RestClientException {
+        simulate("getCompatibility");
+        synchronized(this) {
+            return getLevel(subject);
+        }
+    }
+
+    @Override
+    public List<String> getAllSubjects() throws IOException, RestClientException {
+        simulate("getAllSubjects");
+        synchronized(this) {
+            return new ArrayList<>(idsBySubject.keySet());
+        }
+    }
+
+    @Override
+    public List<Integer> deleteSubject(String subject) throws IOException, RestClientException {
+        simulate("deleteSubject");
+        synchronized(this) {
+            List<Integer> versions = getVersions(subject);
+            idsBySubject.remove(subject);
+            compatibilityBySubject.remove(subject);
+            return versions;
+        }
+    }
+
+    private SchemaMetadata getMetadata(String subject, int version) throws RestClientException {
+        List<Integer> ids = getIds(subject);
+        if(version < 1 || version > ids.size()) {
+            throw new RestClientException("Version not found", 404, 40402);
+        }
+        int id = ids.get(version - 1);
+        return new SchemaMetadata(id, version, schemasById.get(id).toString());
+    }
+
+    private int getVersionOf(String subject, Schema schema) throws RestClientException {
+        int index = getIds(subject).indexOf(idsBySchema.get(schema.toString()));
+        if(index < 0) {
+            throw schemaNotFound();
+        }
+        return index + 1;
+    }
+
+    private List<Integer> getVersions(String subject) throws RestClientException {
+        List<Integer> versions = new ArrayList<>();
+        for(int version = 1; version <= getIds(subject).size(); version++) {
+            versions.add(version);
+        }
+        return versions;
+    }
+
+    private String getLevel(String subject) {
+        return subject == null ? globalCompatibility : compatibilityBySubject.getOrDefault(subject, globalCompatibility);
+    }
+
+    /**
+     * Checks the schema against the subject's latest version, or all of its versions for a transitive level, the way the
+     * registry does for the subject's compatibility level.
+     */
+    private boolean isCompatible(String subject, Schema schema) {
+        String level = getLevel(subject).toUpperCase();
+        if(level.startsWith("NONE")) {
+            return true;
+        }
+        List<Integer> ids = idsBySubject.get(subject);
+        List<Integer> checked = level.endsWith("_TRANSITIVE") ? ids : ids.subList(ids.size() - 1, ids.size());
+        boolean backward = level.startsWith("BACKWARD") || level.startsWith("FULL");
+        boolean forward = level.startsWith("FORWARD") || level.startsWith("FULL");
+        for(Integer id : checked) {
+            Schema existing = schemasById.get(id);
+            if(backward && !Compatibility.checkThat(schema).canRead(existing).isCompatible()) {
+                return false;
+            }
+            if(forward && !Compatibility.checkThat(existing).canRead(schema).isCompatible()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Integer> getIds(String subject) throws RestClientException {
+        List<Integer> ids = idsBySubject.get(subject);
+        if(ids == null) {
+            throw new RestClientException("Subject not found", 404, 40401);
+        }
+        return ids;
+    }
+
+    private RestClientException schemaNotFound() {
+        return new RestClientException("Schema not found", 404, 40403);
+    }
+
+    /**
+     * Waits for a latency sampled from the call's behavior, then fails the call with the configured error rate.
+     */
+    private void simulate(String call) throws IOException, RestClientException {
+        FakeRegistryConfig.CallBehavior behavior = config.getBehavior(call);
+        long latencyMs;
+        boolean failed;
+        synchronized(random) {
+            latencyMs = sampleLatencyMs(behavior);
+            failed = behavior.getErrorRate() > 0 && random.nextDouble() < behavior.getErrorRate();
+        }
+        if(latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting on the in-memory registry", e);
+            }
+        }
+        if(failed) {
+            throw new RestClientException("Internal Server Error", 500, 50001);
+        }
+    }
+
+    private long sampleLatencyMs(FakeRegistryConfig.CallBehavior behavior) {
+        long latencyMs = behavior.getLatencyMs();
+        long jitterMs = behavior.getLatencyJitterMs();
+        if(latencyMs <= 0 && jitterMs <= 0) {
+            return 0;
+        }
+        switch(behavior.getLatencyDistribution()) {
+            case UNIFORM:
+                return Math.max(0, latencyMs - jitterMs + Math.round(random.nextDouble() * 2 * jitterMs));
+            case LOG_NORMAL:
+                if(latencyMs <= 0 || jitterMs <= 0) {
+                    return latencyMs;
+                }
+                double sigma = Math.log((double) (latencyMs + jitterMs) / latencyMs) / Z_99;
+                return Math.round(latencyMs * Math.exp(sigma * random.nextGaussian()));
+            default:
+                return latencyMs;
+        }
+    }
+}
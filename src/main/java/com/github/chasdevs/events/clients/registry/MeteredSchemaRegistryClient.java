@@ -0,0 +1,150 @@
+package com.github.chasdevs.events.clients.registry;
+
+import com.github.chasdevs.events.util.MetricsUtil;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import io.micrometer.core.instrument.Timer;
+import org.apache.avro.Schema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * {@link SchemaRegistryClient} that times every call made through it, tagged by method and outcome, and otherwise
+ * passes calls on to the {@link ConfluentSchemaRegistryClient}. Subjects are left out of the tags, since a registry can
+ * have thousands of them.
+ */
+@Service
+@Lazy
+@Primary
+public class MeteredSchemaRegistryClient implements SchemaRegistryClient {
+
+    private static final String METHOD = "method";
+    private static final String NOT_FOUND = "not_found";
+
+    private final SchemaRegistryClient registryClient;
+
+    @Autowired
+    public MeteredSchemaRegistryClient(ConfluentSchemaRegistryClient registryClient) {
+        this((SchemaRegistryClient) registryClient);
+    }
+
+    public MeteredSchemaRegistryClient(SchemaRegistryClient registryClient) {
+        this.registryClient = registryClient;
+    }
+
+    @Override
+    public Integer register(String subject, Schema schema) throws SchemaRegistryException {
+        return timed("register", () -> registryClient.register(subject, schema));
+    }
+
+    @Override
+    public Schema getSchemaById(int id) throws SchemaRegistryException {
+        return timed("getSchemaById", () -> registryClient.getSchemaById(id));
+    }
+
+    @Override
+    public Schema getSchemaBySubjectAndId(String subject, int id) throws SchemaRegistryException {
+        return timed("getSchemaBySubjectAndId", () -> registryClient.getSchemaBySubjectAndId(subject, id));
+    }
+
+    @Override
+    public Integer getSchemaIdBySubjectAndSchema(String subject, Schema schema) throws SchemaRegistryException {
+        return timed("getSchemaIdBySubjectAndSchema", () -> registryClient.getSchemaIdBySubjectAndSchema(subject, schema));
+    }
+
+    @Override
+    public SchemaMetaData getLatestSchemaMetaData(String subject) throws SchemaRegistryException {
+        return timed("getLatestSchemaMetaData", () -> registryClient.getLatestSchemaMetaData(subject));
+    }
+
+    @Override
+    public SchemaMetaData getSchemaMetaDataBySubjectAndId(String subject, int id) throws SchemaRegistryException {
+        return timed("getSchemaMetaDataBySubjectAndId", () -> registryClient.getSchemaMetaDataBySubjectAndId(subject, id));
+    }
+
+    @Override
+    public Integer getSchemaVersionBySubjectAndSchema(String subject, Schema schema) throws SchemaRegistryException {
+        return timed("getSchemaVersionBySubjectAndSchema", () -> registryClient.getSchemaVersionBySubjectAndSchema(subject, schema));
+    }
+
+    @Override
+    public List<Integer> getAllVersionsBySubject(String subject) throws SchemaRegistryException {
+        return timed("getAllVersionsBySubject", () -> registryClient.getAllVersionsBySubject(subject));
+    }
+
+    @Override
+    public Schema getLatestSchemaBySubject(String subject) throws SchemaRegistryException {
+        return timed("getLatestSchemaBySubject", () -> registryClient.getLatestSchemaBySubject(subject));
+    }
+
+    @Override
+    public boolean testCompatibility(String subject, Schema schema) throws SchemaRegistryException {
+        return timed("testCompatibility", () -> registryClient.testCompatibility(subject, schema));
+    }
+
+    @Override
+    public String getCompatibilityLevel(String subject) throws SchemaRegistryException {
+        return timed("getCompatibilityLevel", () -> registryClient.getCompatibilityLevel(subject));
+    }
+
+    @Override
+    public SortedMap<Integer, Schema> getSchemaHistory(String subject) throws SchemaRegistryException {
+        return timed("getSchemaHistory", () -> registryClient.getSchemaHistory(subject));
+    }
+
+    @Override
+    public List<String> getAllSubjects() throws SchemaRegistryException {
+        return timed("getAllSubjects", registryClient::getAllSubjects);
+    }
+
+    @Override
+    public Map<String, Schema> getCurrentRegistrySchemaMap() throws SchemaRegistryException {
+        return timed("getCurrentRegistrySchemaMap", registryClient::getCurrentRegistrySchemaMap);
+    }
+
+    @Override
+    public Map<String, Schema> getRegistrySchemaMap(Collection<String> subjects) throws SchemaRegistryException {
+        return timed("getRegistrySchemaMap", () -> registryClient.getRegistrySchemaMap(subjects));
+    }
+
+    @Override
+    public void discardSnapshot() {
+        registryClient.discardSnapshot();
+    }
+
+    @Override
+    public void saveSnapshot() {
+        registryClient.saveSnapshot();
+    }
+
+    private <T> T timed(String method, RegistryCall<T> call) throws SchemaRegistryException {
+        Timer.Sample sample = MetricsUtil.start();
+        String outcome = MetricsUtil.SUCCESS;
+        try {
+            return call.call();
+        } catch (SchemaRegistryException e) {
+            outcome = isNotFound(e) ? NOT_FOUND : MetricsUtil.FAILURE;
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = MetricsUtil.FAILURE;
+            throw e;
+        } finally {
+            MetricsUtil.stop(sample, MetricsUtil.REGISTRY_CALLS, METHOD, method, MetricsUtil.OUTCOME, outcome);
+        }
+    }
+
+    private static boolean isNotFound(SchemaRegistryException e) {
+        return e.getCause() instanceof RestClientException && ((RestClientException) e.getCause()).getStatus() == 404;
+    }
+
+    @FunctionalInterface
+    private interface RegistryCall<T> {
+        T call() throws SchemaRegistryException;
+    }
+}
@@ -0,0 +1,289 @@
+package com.github.chasdevs.events.clients.registry;
+
+import com.github.chasdevs.events.util.SchemaFingerprint;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Locally persisted copy of the latest schema of each registry subject, along with its version and id. It lets a run
+ * skip re-fetching and re-parsing schemas that have not changed since the previous run.
+ * <p>
+ * Every entry records when it was last confirmed against the registry. Entries confirmed within the staleness bound are
+ * served as-is; older entries only need their version re-checked, and their schema body is only fetched again when the
+ * version has moved on. Schemas are parsed lazily and at most once per schema id.
+ * <p>
+ * The fingerprints of each schema are stored along with it, so a schema is fingerprinted once when it is first parsed
+ * rather than on every diff; later runs hand the stored fingerprints to {@link SchemaFingerprint} as they parse it.
+ */
+public class RegistrySnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistrySnapshot.class);
+
+    private static final String HEADER = "# registry snapshot v2";
+    private static final String NO_FINGERPRINTS = "-";
+    private static final String LISTING_RECORD = "L";
+    private static final String SUBJECT_RECORD = "S";
+
+    private final String registryUrl;
+    @Nullable
+    private final Path file;
+    private final Duration maxAge;
+    private final Clock clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, Schema> schemasById = new ConcurrentHashMap<>();
+    // indexed by SchemaFingerprint.Normalization ordinal
+    private final Map<Integer, long[]> fingerprintsById = new ConcurrentHashMap<>();
+    private volatile Instant subjectsListedAt;
+    private volatile boolean dirty;
+
+    /**
+     * @param registryUrl url of the registry this is a snapshot of; a persisted snapshot of any other registry is ignored
+     * @param file file to persist the snapshot to, or null to keep it in memory only
+     * @param maxAge how long a subject is trusted without checking its version with the registry
+     */
+    public RegistrySnapshot(String registryUrl, @Nullable Path file, Duration maxAge) {
+        this(registryUrl, file, maxAge, Clock.systemUTC());
+    }
+
+    /**
+     * @return a snapshot that is never persisted and never trusted without checking, which still lets a single run
+     * parse each schema id only once
+     */
+    public static RegistrySnapshot inMemory() {
+        return new RegistrySnapshot("", null, Duration.ZERO);
+    }
+
+    RegistrySnapshot(String registryUrl, @Nullable Path file, Duration maxAge, Clock clock) {
+        this.registryUrl = registryUrl;
+        this.file = file;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        load();
+    }
+
+    @Nullable
+    public Entry get(String subject) {
+        return entries.get(subject);
+    }
+
+    public boolean isFresh(Entry entry) {
+        return isFresh(entry.checkedAt);
+    }
+
+    /**
+     * @return whether the stored list of subjects is complete and recent enough to be trusted without asking the registry
+     */
+    public boolean isListingFresh() {
+        return subjectsListedAt != null && isFresh(subjectsListedAt);
+    }
+
+    public Set<String> getSubjects() {
+        return new TreeSet<>(entries.keySet());
+    }
+
+    /**
+     * Records the complete list of subjects in the registry, dropping any stored subject that no longer exists.
+     */
+    public void setSubjects(Collection<String> subjects) {
+        entries.keySet().retainAll(new HashSet<>(subjects));
+        subjectsListedAt = clock.instant();
+        dirty = true;
+    }
+
+    public Entry put(String subject, SchemaMetaData metaData) {
+        String schemaString = metaData.getSchema();
+        if(schemaString.contains("\n") || schemaString.contains("\t")) {
+            // keep each entry on a single line of the persisted snapshot
+            schemaString = new Schema.Parser().parse(schemaString).toString();
+        }
+        Entry entry = new Entry(subject, metaData.getVersion(), metaData.getId(), schemaString, clock.instant());
+        entries.put(subject, entry);
+        dirty = true;
+        return entry;
+    }
+
+    /**
+     * Marks an entry as confirmed to still be the latest version of its subject.
+     */
+    public void confirm(Entry entry) {
+        entries.put(entry.subject, new Entry(entry.subject, entry.version, entry.id, entry.schemaString, clock.instant()));
+        dirty = true;
+    }
+
+    public void remove(String subject) {
+        if(entries.remove(subject) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Forgets the subject after a new version of it has been registered, so its latest schema is fetched again, and
+     * stops trusting the stored list of subjects, which may not include the subject yet.
+     */
+    public void invalidate(String subject) {
+        entries.remove(subject);
+        subjectsListedAt = null;
+        dirty = true;
+    }
+
+    /**
+     * Stops trusting the stored list of subjects, which only covers subjects with an entry, after some listed subjects
+     * could not be fetched; otherwise later runs would leave those subjects out until the listing goes stale.
+     */
+    public void invalidateListing() {
+        subjectsListedAt = null;
+        dirty = true;
+    }
+
+    /**
+     * Throws away everything stored so far, so the next run rebuilds the snapshot from the registry.
+     */
+    public void discard() {
+        entries.clear();
+        fingerprintsById.clear();
+        subjectsListedAt = null;
+        dirty = true;
+    }
+
+    /**
+     * Returns the parsed schema for the entry. Entries sharing a schema id share the parsed schema, which comes with its
+     * fingerprints already known.
+     */
+    public Schema getSchema(Entry entry) {
+        return schemasById.computeIfAbsent(entry.id, id -> {
+            Schema schema = new Schema.Parser().parse(entry.schemaString);
+            SchemaFingerprint.Normalization[] normalizations = SchemaFingerprint.Normalization.values();
+            long[] fingerprints = fingerprintsById.get(id);
+            if(fingerprints == null) {
+                fingerprints = new long[normalizations.length];
+                for(SchemaFingerprint.Normalization normalization : normalizations) {
+                    fingerprints[normalization.ordinal()] = SchemaFingerprint.of(schema, normalization);
+                }
+                fingerprintsById.put(id, fingerprints);
+                dirty = true;
+            } else {
+                for(SchemaFingerprint.Normalization normalization : normalizations) {
+                    SchemaFingerprint.remember(schema, normalization, fingerprints[normalization.ordinal()]);
+                }
+            }
+            return schema;
+        });
+    }
+
+    public synchronized void save() {
+        if(!dirty || file == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER + "\t" + registryUrl);
+        if(subjectsListedAt != null) {
+            lines.add(String.join("\t", LISTING_RECORD, subjectsListedAt.toString()));
+        }
+        entries.values().stream()
+                .sorted(Comparator.comparing(e -> e.subject))
+                .forEach(e -> lines.add(String.join("\t", SUBJECT_RECORD, e.subject, String.valueOf(e.version),
+                        String.valueOf(e.id), e.checkedAt.toString(), formatFingerprints(fingerprintsById.get(e.id)), e.schemaString)));
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, lines);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.debug("Could not write registry snapshot to " + file, e);
+        }
+    }
+
+    private void load() {
+        if(file == null || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file);
+            if(lines.isEmpty() || !lines.get(0).equals(HEADER + "\t" + registryUrl)) {
+                LOGGER.debug("Ignoring registry snapshot {} taken from a different registry or with an unknown format", file);
+                return;
+            }
+            for(String line : lines.subList(1, lines.size())) {
+                // the schema is the last column, and its JSON never contains a raw tab
+                String[] parts = line.split("\t", 7);
+                if(LISTING_RECORD.equals(parts[0])) {
+                    subjectsListedAt = Instant.parse(parts[1]);
+                } else if(SUBJECT_RECORD.equals(parts[0])) {
+                    int id = Integer.parseInt(parts[3]);
+                    entries.put(parts[1], new Entry(parts[1], Integer.parseInt(parts[2]), id, parts[6], Instant.parse(parts[4])));
+                    if(!NO_FINGERPRINTS.equals(parts[5])) {
+                        fingerprintsById.put(id, parseFingerprints(parts[5]));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read registry snapshot from " + file + ", rebuilding it", e);
+            entries.clear();
+            fingerprintsById.clear();
+            subjectsListedAt = null;
+        }
+    }
+
+    private static String formatFingerprints(@Nullable long[] fingerprints) {
+        if(fingerprints == null) {
+            return NO_FINGERPRINTS;
+        }
+        return Arrays.stream(fingerprints).mapToObj(Long::toHexString).collect(Collectors.joining(","));
+    }
+
+    private static long[] parseFingerprints(String column) {
+        String[] parts = column.split(",");
+        if(parts.length != SchemaFingerprint.Normalization.values().length) {
+            throw new IllegalArgumentException("Expected a fingerprint per normalization, got " + column);
+        }
+        return Arrays.stream(parts).mapToLong(part -> Long.parseUnsignedLong(part, 16)).toArray();
+    }
+
+    private boolean isFresh(Instant instant) {
+        return Duration.between(instant, clock.instant()).compareTo(maxAge) < 0;
+    }
+
+    public static class Entry {
+
+        private final String subject;
+        private final int version;
+        private final int id;
+        private final String schemaString;
+        private final Instant checkedAt;
+
+        Entry(String subject, int version, int id, String schemaString, Instant checkedAt) {
+            this.subject = subject;
+            this.version = version;
+            this.id = id;
+            this.schemaString = schemaString;
+            this.checkedAt = checkedAt;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public int getId() {
+            return id;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.github.chasdevs.events.clients.registry;
 
 import org.apache.avro.Schema;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 
 /**
  * Registry client interface mostly mirroring Confluent's schema registry client's interface.
@@ -26,8 +28,35 @@ public interface SchemaRegistryClient {
 
     boolean testCompatibility(String subject, Schema schema) throws SchemaRegistryException;
 
+    /**
+     * Returns the compatibility level the registry enforces for the subject, e.g. BACKWARD or FULL_TRANSITIVE, falling
+     * back to the registry's global level when the subject has no level of its own.
+     */
+    String getCompatibilityLevel(String subject) throws SchemaRegistryException;
+
+    /**
+     * Returns every registered version of the subject's schema, keyed and ordered by version.
+     */
+    SortedMap<Integer, Schema> getSchemaHistory(String subject) throws SchemaRegistryException;
+
     List<String> getAllSubjects() throws SchemaRegistryException;
 
     Map<String, Schema> getCurrentRegistrySchemaMap() throws SchemaRegistryException;
 
+    /**
+     * Like {@link #getCurrentRegistrySchemaMap()}, but only for the given subjects. Subjects that have not been
+     * registered are left out of the returned map.
+     */
+    Map<String, Schema> getRegistrySchemaMap(Collection<String> subjects) throws SchemaRegistryException;
+
+    /**
+     * Discards any locally stored snapshot of the registry, so the next schema map is built entirely from the registry.
+     */
+    void discardSnapshot();
+
+    /**
+     * Persists any locally stored snapshot of the registry, e.g. once a sync has finished registering new versions.
+     */
+    void saveSnapshot();
+
 }
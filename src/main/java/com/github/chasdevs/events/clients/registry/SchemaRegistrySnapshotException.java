@@ -0,0 +1,31 @@
+package com.github.chasdevs.events.clients.registry;
+
+import org.apache.avro.Schema;
+
+import java.util.Map;
+
+/**
+ * Thrown when a snapshot of the registry could only be partially retrieved. It carries the schemas that were fetched
+ * successfully along with the reason each remaining subject could not be fetched, so that callers can carry on with
+ * the subjects they do have rather than mistaking the missing ones for unregistered subjects.
+ */
+public class SchemaRegistrySnapshotException extends SchemaRegistryException {
+
+    private final Map<String, Schema> schemas;
+    private final Map<String, String> failures;
+
+    public SchemaRegistrySnapshotException(Map<String, Schema> schemas, Map<String, String> failures) {
+        super(String.format("Could not fetch the latest schema for %d of %d subject(s) from the registry: %s",
+                failures.size(), schemas.size() + failures.size(), String.join(", ", failures.keySet())));
+        this.schemas = schemas;
+        this.failures = failures;
+    }
+
+    public Map<String, Schema> getSchemas() {
+        return schemas;
+    }
+
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.chasdevs.events.command;
+
+import org.jline.reader.Parser;
+import org.springframework.shell.Input;
+import org.springframework.shell.jline.FileInputProvider;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A list of commands run one after the other in the same process, so that they share the parsed schema cache and the
+ * registry snapshot instead of each paying for startup and parsing. Commands are separated the way a shell separates
+ * them: the command after {@code ;} always runs, while the command after {@code &&} only runs if the one before it
+ * succeeded. For example:
+ * <pre>
+ * ./run-shell.sh validate \&amp;\&amp; test-compatibility \&amp;\&amp; sync --force
+ * ./run-shell.sh 'validate; test-compatibility'
+ * ./run-shell.sh @ci-commands.txt
+ * </pre>
+ * An {@code @file} argument stands for the commands in that file, one per line, as if separated by {@code ;}. Lines
+ * starting with {@code #} are comments. A batch fails with the exit code of its first failed command.
+ */
+public class CommandBatch {
+
+    private static final String AND = "&&";
+    private static final String SEQUENCE = ";";
+    private static final String SCRIPT_PREFIX = "@";
+    private static final String COMMENT_PREFIX = "#";
+
+    private final List<Command> commands;
+
+    private CommandBatch(List<Command> commands) {
+        this.commands = commands;
+    }
+
+    /**
+     * Splits runtime arguments into commands, reading the commands of any {@code @file} arguments with the given parser.
+     */
+    public static CommandBatch parse(List<String> args, Parser parser) throws IOException {
+        List<String> words = new ArrayList<>();
+        for(String arg : args) {
+            if(arg.startsWith(SCRIPT_PREFIX)) {
+                words.add(SEQUENCE);
+                words.addAll(readScript(Paths.get(arg.substring(SCRIPT_PREFIX.length())), parser));
+            } else {
+                words.add(arg);
+            }
+        }
+        return parse(words);
+    }
+
+    /**
+     * Splits words into commands. Separators are either words of their own, or part of a word holding several commands,
+     * such as a quoted {@code 'validate; sync'}.
+     */
+    public static CommandBatch parse(List<String> words) {
+        List<Command> commands = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        boolean onlyIfPreviousSucceeded = false;
+        for(String word : tokenize(words)) {
+            if(word.equals(AND) || word.equals(SEQUENCE)) {
+                if(!current.isEmpty()) {
+                    commands.add(new Command(current, onlyIfPreviousSucceeded));
+                    current = new ArrayList<>();
+                }
+                onlyIfPreviousSucceeded = word.equals(AND);
+            } else {
+                current.add(word);
+            }
+        }
+        if(!current.isEmpty()) {
+            commands.add(new Command(current, onlyIfPreviousSucceeded));
+        }
+        return new CommandBatch(commands);
+    }
+
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public boolean isSingleCommand() {
+        return commands.size() == 1;
+    }
+
+    /**
+     * Runs every command in order, skipping those after an {@code &&} whose predecessor failed or was skipped.
+     *
+     * @param runner runs a single command and returns its exit code
+     * @return the exit code of the first failed command, or 0 if every command that ran succeeded
+     */
+    public int run(ToIntFunction<List<String>> runner) {
+        int exitCode = 0;
+        boolean previousFailed = false;
+        for(Command command : commands) {
+            if(command.isOnlyIfPreviousSucceeded() && previousFailed) {
+                continue;
+            }
+            int commandExitCode = runner.applyAsInt(command.getWords());
+            previousFailed = commandExitCode != 0;
+            if(previousFailed && exitCode == 0) {
+                exitCode = commandExitCode;
+            }
+        }
+        return exitCode;
+    }
+
+    private static List<String> tokenize(List<String> words) {
+        List<String> tokens = new ArrayList<>();
+        for(String word : words) {
+            if(!word.contains(SEQUENCE) || word.equals(SEQUENCE)) {
+                tokens.add(word);
+                continue;
+            }
+            String[] parts = word.split(SEQUENCE, -1);
+            for(int i = 0; i < parts.length; i++) {
+                if(i > 0) {
+                    tokens.add(SEQUENCE);
+                }
+                Arrays.stream(parts[i].trim().split("\\s+"))
+                        .filter(part -> !part.isEmpty())
+                        .forEach(tokens::add);
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> readScript(Path script, Parser parser) throws IOException {
+        List<String> words = new ArrayList<>();
+        try(Reader reader = Files.newBufferedReader(script); FileInputProvider inputProvider = new FileInputProvider(reader, parser)) {
+            Input input;
+            while((input = inputProvider.readInput()) != null) {
+                List<String> line = input.words().stream()
+                        .filter(word -> !word.isEmpty())
+                        .collect(Collectors.toList());
+                if(line.isEmpty() || line.get(0).startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                words.addAll(line);
+                words.add(SEQUENCE);
+            }
+        }
+        return words;
+    }
+
+    public static class Command {
+        private final List<String> words;
+        private final boolean onlyIfPreviousSucceeded;
+
+        Command(List<String> words, boolean onlyIfPreviousSucceeded) {
+            this.words = words;
+            this.onlyIfPreviousSucceeded = onlyIfPreviousSucceeded;
+        }
+
+        public List<String> getWords() {
+            return words;
+        }
+
+        public boolean isOnlyIfPreviousSucceeded() {
+            return onlyIfPreviousSucceeded;
+        }
+
+        @Override
+        public String toString() {
+            return String.join(" ", words);
+        }
+    }
+}
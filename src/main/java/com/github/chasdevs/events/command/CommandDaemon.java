@@ -0,0 +1,337 @@
+package com.github.chasdevs.events.command;
+
+import com.github.chasdevs.events.config.DaemonConfig;
+import org.jline.reader.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.shell.ExitRequest;
+import org.springframework.shell.Input;
+import org.springframework.shell.Shell;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.math.BigInteger;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the application context, and with it every warm cache, alive between CLI invocations by serving shell commands
+ * over a loopback socket. run-shell.sh forwards its arguments to a daemon serving the current directory when there is
+ * one, which skips JVM and Spring startup entirely.
+ * <p>
+ * The daemon records its port and a random token in a state file only its user can read, and refuses connections that
+ * do not present the token. Requests and responses are plain lines so that the client can be a shell script:
+ * <pre>
+ * request:  token, working directory, active profiles, one line per argument, then an empty line
+ * response: one line per output line, prefixed with o (stdout) or e (stderr), then x and the exit code;
+ *           or a single line prefixed with r when the daemon refuses the request and it should run locally instead
+ * </pre>
+ * Commands are run one at a time, in the order they arrive. A request may hold a {@link CommandBatch}, which the
+ * daemon runs as a whole before answering. Requests streaming results to the terminal with {@code --report -} are
+ * refused, since the daemon's terminal is not the client's and its answer only comes once the command is done.
+ */
+@Component
+public class CommandDaemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandDaemon.class);
+
+    private static final Path DEFAULT_STATE_DIRECTORY = Paths.get(System.getProperty("user.home"), ".events", "daemons");
+    // commands that print as they go rather than returning a result, which the daemon has no way to forward
+    private static final Set<String> UNSUPPORTED_COMMANDS = Set.of("watch");
+    private static final List<String> REPORT_TO_TERMINAL = List.of("--report", "-");
+    private static final int REQUEST_TIMEOUT_MS = 10000;
+
+    private final Shell shell;
+    private final Parser parser;
+    private final DaemonConfig config;
+    private final String profiles;
+    private final Path workingDirectory;
+    private final Path stateDirectory;
+    private volatile ServerSocket serverSocket;
+    private volatile boolean stopping;
+
+    @Autowired
+    public CommandDaemon(@Lazy Shell shell, Parser parser, DaemonConfig config, Environment environment) throws IOException {
+        this(shell, parser, config, getProfiles(environment), Paths.get("").toRealPath(), DEFAULT_STATE_DIRECTORY);
+    }
+
+    CommandDaemon(Shell shell, Parser parser, DaemonConfig config, String profiles, Path workingDirectory, Path stateDirectory) {
+        this.shell = shell;
+        this.parser = parser;
+        this.config = config;
+        this.profiles = profiles;
+        this.workingDirectory = workingDirectory;
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * Serves commands until {@link #stop()} is called or the daemon has been idle for longer than configured. Blocks
+     * the calling thread throughout.
+     *
+     * @param listener told where the daemon is listening once it is ready
+     * @return false if this process is already serving
+     * @throws IOException if another process is already serving this directory, or the daemon could not listen
+     */
+    public boolean serve(Consumer<String> listener) throws IOException {
+        if(serverSocket != null) {
+            return false;
+        }
+        Path stateFile = getStateFile();
+        if(isServedElsewhere(stateFile)) {
+            throw new IOException(String.format("A daemon is already serving %s; stop it with daemon --stop", workingDirectory));
+        }
+        byte[] tokenBytes = new byte[32];
+        new SecureRandom().nextBytes(tokenBytes);
+        String token = new BigInteger(1, tokenBytes).toString(16);
+        try(ServerSocket server = new ServerSocket(config.getPort(), 50, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout((int) TimeUnit.MINUTES.toMillis(config.getIdleTimeoutMinutes()));
+            serverSocket = server;
+            stopping = false;
+            writeStateFile(stateFile, server.getLocalPort(), token);
+            listener.accept(String.format("Serving commands for %s on %s:%d. Use daemon --stop to stop.",
+                    workingDirectory, server.getInetAddress().getHostAddress(), server.getLocalPort()));
+            while(!stopping) {
+                try(Socket socket = server.accept()) {
+                    handle(socket, token);
+                } catch (SocketTimeoutException e) {
+                    LOGGER.info("Stopping the daemon after {} idle minutes", config.getIdleTimeoutMinutes());
+                    break;
+                } catch (IOException e) {
+                    if(server.isClosed()) {
+                        break;
+                    }
+                    LOGGER.debug("Dropped a daemon connection", e);
+                }
+            }
+        } finally {
+            serverSocket = null;
+            Files.deleteIfExists(stateFile);
+        }
+        return true;
+    }
+
+    /**
+     * Stops serving once the command in progress, if any, has been answered.
+     *
+     * @return false if this process was not serving
+     */
+    @PreDestroy
+    public boolean stop() {
+        ServerSocket server = serverSocket;
+        if(server == null) {
+            return false;
+        }
+        stopping = true;
+        try {
+            server.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close the daemon socket", e);
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return serverSocket != null;
+    }
+
+    Path getStateFile() {
+        return stateDirectory.resolve(workingDirectory.toString().replaceAll("[^A-Za-z0-9.-]+", "_") + ".properties");
+    }
+
+    /**
+     * Runs a command, or a batch of them, the way the command line runner does, but collects what it would have printed.
+     */
+    Response execute(List<String> args) {
+        CommandBatch batch;
+        try {
+            batch = CommandBatch.parse(args, parser);
+        } catch (IOException e) {
+            return new Response("", "Could not read script: " + e.getMessage(), 1);
+        }
+        if(batch.isEmpty()) {
+            return new Response("", "No command given", 1);
+        }
+        if(batch.isSingleCommand()) {
+            return executeCommand(batch.getCommands().get(0).getWords());
+        }
+        StringBuilder output = new StringBuilder();
+        StringBuilder error = new StringBuilder();
+        int exitCode = batch.run(words -> {
+            Response response = executeCommand(words);
+            append(output, response.getOutput());
+            append(error, response.getError());
+            return response.getExitCode();
+        });
+        return new Response(output.toString(), error.toString(), exitCode);
+    }
+
+    private Response executeCommand(List<String> words) {
+        if(UNSUPPORTED_COMMANDS.contains(words.get(0))) {
+            return new Response("", String.format("%s cannot run through the daemon; run it in the interactive shell instead", words.get(0)), 1);
+        }
+        Object result = shell.evaluate(new Input() {
+            @Override
+            public String rawText() {
+                return StringUtils.collectionToDelimitedString(words, " ");
+            }
+
+            @Override
+            public List<String> words() {
+                return words;
+            }
+        });
+        if(result == null || result == Shell.NO_INPUT) {
+            return new Response("", "", 0);
+        }
+        if(result instanceof Throwable) {
+            Throwable e = (Throwable) result;
+            while(e != null && !(e instanceof ExitRequest)) {
+                e = e.getCause();
+            }
+            Throwable error = (Throwable) result;
+            String message = error.getMessage() != null ? error.getMessage() : error.toString();
+            return e == null ? new Response("", message, 1) : new Response("", "", ((ExitRequest) e).status());
+        }
+        if(result instanceof Iterable) {
+            StringBuilder sb = new StringBuilder();
+            ((Iterable<?>) result).forEach(item -> sb.append(item).append("\n"));
+            return new Response(sb.toString(), "", 0);
+        }
+        return new Response(result.toString(), "", 0);
+    }
+
+    private static void append(StringBuilder sb, String text) {
+        if(!text.isEmpty()) {
+            sb.append(text);
+            if(!text.endsWith("\n")) {
+                sb.append("\n");
+            }
+        }
+    }
+
+    private void handle(Socket socket, String token) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        String presented = in.readLine();
+        if(presented == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), presented.getBytes(StandardCharsets.UTF_8))) {
+            LOGGER.warn("Refused a daemon connection with an invalid token");
+            return;
+        }
+        String directory = in.readLine();
+        String requestedProfiles = in.readLine();
+        List<String> args = new ArrayList<>();
+        String line;
+        while((line = in.readLine()) != null && !line.isEmpty()) {
+            args.add(line);
+        }
+
+        if(!workingDirectory.toString().equals(directory)) {
+            out.println("rThis daemon serves " + workingDirectory);
+        } else if(!profiles.equals(requestedProfiles)) {
+            out.println("rThis daemon runs with the " + profiles + " profile");
+        } else if(reportsToTerminal(args)) {
+            out.println("r--report - streams to the terminal, so it runs in its own process");
+        } else {
+            Response response = execute(args);
+            printLines(out, 'o', response.getOutput());
+            printLines(out, 'e', response.getError());
+            out.println("x" + response.getExitCode());
+        }
+        out.flush();
+    }
+
+    boolean reportsToTerminal(List<String> args) {
+        try {
+            return CommandBatch.parse(args, parser).getCommands().stream()
+                    .anyMatch(command -> Collections.indexOfSubList(command.getWords(), REPORT_TO_TERMINAL) >= 0);
+        } catch (IOException e) {
+            // answered with the error when the request is executed
+            return false;
+        }
+    }
+
+    private void printLines(PrintWriter out, char prefix, String text) {
+        if(text.isEmpty()) {
+            return;
+        }
+        String trimmed = text.endsWith("\n") ? text.substring(0, text.length() - 1) : text;
+        for(String line : trimmed.split("\\r?\\n", -1)) {
+            out.print(prefix);
+            out.println(line);
+        }
+    }
+
+    private boolean isServedElsewhere(Path stateFile) throws IOException {
+        if(!Files.exists(stateFile)) {
+            return false;
+        }
+        Properties state = new Properties();
+        try(Reader reader = Files.newBufferedReader(stateFile)) {
+            state.load(reader);
+        }
+        try(Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port", "0"))), 200);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.debug("Replacing the state file of a daemon that is no longer running", e);
+            return false;
+        }
+    }
+
+    private void writeStateFile(Path stateFile, int port, String token) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Files.deleteIfExists(stateFile);
+        if(FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(stateFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(port));
+        state.setProperty("token", token);
+        state.setProperty("pid", String.valueOf(ProcessHandle.current().pid()));
+        try(Writer writer = Files.newBufferedWriter(stateFile)) {
+            state.store(writer, "events daemon for " + workingDirectory);
+        }
+    }
+
+    private static String getProfiles(Environment environment) {
+        String[] profiles = environment.getActiveProfiles().length > 0 ? environment.getActiveProfiles() : environment.getDefaultProfiles();
+        return String.join(",", profiles);
+    }
+
+    static class Response {
+        private final String output;
+        private final String error;
+        private final int exitCode;
+
+        Response(String output, String error, int exitCode) {
+            this.output = output;
+            this.error = error;
+            this.exitCode = exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.chasdevs.events.command;
+
+import org.jline.terminal.Terminal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+
+/**
+ * Commands for running the CLI as a resident daemon; see {@link CommandDaemon}.
+ */
+@ShellComponent
+public class DaemonCommands {
+
+    private final CommandDaemon commandDaemon;
+    private final Terminal terminal;
+
+    @Autowired
+    public DaemonCommands(CommandDaemon commandDaemon, @Lazy Terminal terminal) {
+        this.commandDaemon = commandDaemon;
+        this.terminal = terminal;
+    }
+
+    @ShellMethod("Keeps running and serves commands forwarded by run-shell.sh from this directory, until stopped")
+    public String daemon(@ShellOption(help = "Stop the daemon once the current command has been answered") boolean stop) {
+        if(stop) {
+            return commandDaemon.stop() ? "Stopping the daemon" : "No daemon is running";
+        }
+        try {
+            if(!commandDaemon.serve(this::printToTerminal)) {
+                return "The daemon is already running";
+            }
+        } catch (IOException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+        return "Daemon stopped";
+    }
+
+    private void printToTerminal(String message) {
+        terminal.writer().println(message);
+        terminal.flush();
+    }
+}
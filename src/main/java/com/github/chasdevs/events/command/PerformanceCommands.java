@@ -0,0 +1,36 @@
+package com.github.chasdevs.events.command;
+
+import com.github.chasdevs.events.services.performance.SchemaCostAnalyzer;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+
+/**
+ * Commands for estimating what the schemas in the local repo will cost producers and consumers; see
+ * {@link SchemaCostAnalyzer}.
+ */
+@ShellComponent
+public class PerformanceCommands {
+
+    private final SchemaCostAnalyzer schemaCostAnalyzer;
+
+    @Autowired
+    public PerformanceCommands(SchemaCostAnalyzer schemaCostAnalyzer) {
+        this.schemaCostAnalyzer = schemaCostAnalyzer;
+    }
+
+    @ShellMethod("Ranks local schemas by their estimated encoded size and decode cost, and flags those over the performance budget")
+    public String analyze(@ShellOption(defaultValue = "20", help = "Number of schemas to list, costliest first") int top,
+                          @ShellOption(help = "Print the report as JSON instead of a table") boolean json) {
+        try {
+            SchemaCostAnalyzer.Report report = schemaCostAnalyzer.analyze();
+            return json ? report.toJson(top) : report.toString(top);
+        } catch (RepoServiceException | IOException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+    }
+}
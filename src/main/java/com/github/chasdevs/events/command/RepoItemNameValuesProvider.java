@@ -1,9 +1,15 @@
 package com.github.chasdevs.events.command;
 
+import com.github.chasdevs.events.clients.registry.SchemaRegistryClient;
+import com.github.chasdevs.events.clients.registry.SchemaRegistryException;
+import com.github.chasdevs.events.config.SchemaRegistryConfig;
 import com.github.chasdevs.events.services.repo.RepoService;
 import com.github.chasdevs.events.services.repo.RepoServiceException;
+import com.github.chasdevs.events.util.Constants;
+import com.github.chasdevs.events.util.PrefixIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.MethodParameter;
 import org.springframework.shell.CompletionContext;
@@ -11,30 +17,83 @@ import org.springframework.shell.CompletionProposal;
 import org.springframework.shell.standard.ValueProviderSupport;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * Completes schema names from the local repo's index, or from the registry's subjects when the command is given
+ * {@code --remote}. Only names starting with what has been typed so far, ignoring case, are proposed.
+ * <p>
+ * The registry's subjects are listed on the first completion that needs them and kept for
+ * {@link SchemaRegistryConfig#getSubjectCompletionMaxAgeSeconds()}, so pressing TAB does not make a registry call
+ * every time.
+ */
 @Component
 class RepoItemNameValuesProvider extends ValueProviderSupport {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RepoItemNameValuesProvider.class);
 
+    private static final String REMOTE_OPTION = "--remote";
+
     private final RepoService repoService;
+    private final Supplier<SchemaRegistryClient> registryClient;
+    private final long subjectsMaxAgeNanos;
+
+    private PrefixIndex remoteNames;
+    private long remoteNamesListedAt;
 
     @Autowired
-    public RepoItemNameValuesProvider(RepoService repoService) {
+    public RepoItemNameValuesProvider(RepoService repoService, ObjectProvider<SchemaRegistryClient> registryClient, SchemaRegistryConfig registryConfig) {
+        this(repoService, registryClient::getObject, Duration.ofSeconds(registryConfig.getSubjectCompletionMaxAgeSeconds()));
+    }
+
+    RepoItemNameValuesProvider(RepoService repoService, Supplier<SchemaRegistryClient> registryClient, Duration subjectsMaxAge) {
         this.repoService = repoService;
+        this.registryClient = registryClient;
+        this.subjectsMaxAgeNanos = subjectsMaxAge.toNanos();
     }
 
     @Override
     public List<CompletionProposal> complete(MethodParameter parameter, CompletionContext completionContext, String[] hints) {
-        List<CompletionProposal> completionProposals = new ArrayList<>();
-        try {
-            completionProposals = repoService.listAll().stream().map(item -> new CompletionProposal(item.getName())).collect(Collectors.toList());
-        } catch (RepoServiceException e) {
-            LOGGER.debug(e.getMessage(), e);
+        String prefix = completionContext.currentWordUpToCursor();
+        if(prefix == null) {
+            prefix = "";
+        }
+        List<String> names = new ArrayList<>();
+        if(completionContext.getWords().contains(REMOTE_OPTION)) {
+            names = getRemoteNames().startingWith(prefix);
+        } else {
+            try {
+                names = repoService.completeNames(prefix);
+            } catch (RepoServiceException e) {
+                LOGGER.debug(e.getMessage(), e);
+            }
+        }
+        return names.stream().map(CompletionProposal::new).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the local names of the registry's value subjects, listing the subjects again once they are too old. A
+     * failed listing is kept as no names for as long, so an unreachable registry does not hold up every TAB.
+     */
+    private synchronized PrefixIndex getRemoteNames() {
+        if(remoteNames == null || System.nanoTime() - remoteNamesListedAt >= subjectsMaxAgeNanos) {
+            List<String> names = new ArrayList<>();
+            try {
+                for(String subject : registryClient.get().getAllSubjects()) {
+                    if(subject.endsWith(Constants.DEFAULT_SUBJECT_SUFFIX)) {
+                        names.add(subject.substring(0, subject.length() - Constants.DEFAULT_SUBJECT_SUFFIX.length()));
+                    }
+                }
+            } catch (SchemaRegistryException | RuntimeException e) {
+                LOGGER.debug("Could not list registry subjects for completion", e);
+            }
+            remoteNames = new PrefixIndex(names);
+            remoteNamesListedAt = System.nanoTime();
         }
-        return completionProposals;
+        return remoteNames;
     }
-}
\ No newline at end of file
+}
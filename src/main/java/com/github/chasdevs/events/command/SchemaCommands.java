@@ -2,19 +2,37 @@ package com.github.chasdevs.events.command;
 
 import com.github.chasdevs.events.services.mediation.MediationService;
 import com.github.chasdevs.events.services.mediation.MediationServiceException;
+import com.github.chasdevs.events.services.mediation.NdjsonResultWriter;
+import com.github.chasdevs.events.services.mediation.SubjectResult;
+import com.github.chasdevs.events.services.performance.SchemaBenchmark;
 import com.github.chasdevs.events.services.repo.*;
 import com.github.chasdevs.events.clients.registry.SchemaRegistryClient;
 import com.github.chasdevs.events.clients.registry.SchemaRegistryException;
 import com.github.chasdevs.events.config.SchemaRegistryConfig;
 import com.github.chasdevs.events.util.NamingUtil;
 import org.apache.avro.Schema;
+import org.jline.terminal.Terminal;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.shell.standard.ShellComponent;
 import org.springframework.shell.standard.ShellMethod;
 import org.springframework.shell.standard.ShellOption;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * This class represents all of the existing commands available in the interactive shell/CLI.
@@ -23,16 +41,35 @@ import java.util.stream.Collectors;
 public class SchemaCommands {
 
     private final RepoService repoService;
-    private final SchemaRegistryClient registryClient;
+    private final Supplier<SchemaRegistryClient> registryClient;
     private final SchemaRegistryConfig registryConfig;
-    private final MediationService mediationService;
+    private final Supplier<MediationService> mediationService;
+    private final RepoWatcher repoWatcher;
+    private final Terminal terminal;
 
+    public SchemaCommands(RepoService repoService, SchemaRegistryClient registryClient, SchemaRegistryConfig registryConfig,
+                          MediationService mediationService, RepoWatcher repoWatcher, Terminal terminal) {
+        this(repoService, () -> registryClient, registryConfig, () -> mediationService, repoWatcher, terminal);
+    }
+
+    /**
+     * The registry client and the mediation service are only looked up once a command needs them, so commands that only
+     * touch the local repo never create them.
+     */
     @Autowired
-    public SchemaCommands(RepoService repoService, SchemaRegistryClient registryClient, SchemaRegistryConfig registryConfig, MediationService mediationService) {
+    public SchemaCommands(RepoService repoService, ObjectProvider<SchemaRegistryClient> registryClient, SchemaRegistryConfig registryConfig,
+                          ObjectProvider<MediationService> mediationService, RepoWatcher repoWatcher, @Lazy Terminal terminal) {
+        this(repoService, registryClient::getObject, registryConfig, mediationService::getObject, repoWatcher, terminal);
+    }
+
+    private SchemaCommands(RepoService repoService, Supplier<SchemaRegistryClient> registryClient, SchemaRegistryConfig registryConfig,
+                           Supplier<MediationService> mediationService, RepoWatcher repoWatcher, Terminal terminal) {
         this.repoService = repoService;
         this.registryClient = registryClient;
         this.registryConfig = registryConfig;
         this.mediationService = mediationService;
+        this.repoWatcher = repoWatcher;
+        this.terminal = terminal;
     }
 
     @ShellMethod("Lists all schemas")
@@ -60,7 +97,7 @@ public class SchemaCommands {
             if(!remote) {
                 schemaString = repoService.getSchema(name).toString(true);
             } else {
-                schemaString = registryClient.getLatestSchemaBySubject(NamingUtil.fromLocalToRegistrySubject(name)).toString(true);
+                schemaString = registryClient.get().getLatestSchemaBySubject(NamingUtil.fromLocalToRegistrySubject(name)).toString(true);
             }
         } catch (RepoServiceException | SchemaRegistryException e) {
             throw new SchemaCommandException(e.getMessage(), e);
@@ -74,7 +111,8 @@ public class SchemaCommands {
         String message = "Local schema for %s was successfully registered with the schema registry at %s";
         try {
             Schema schema = repoService.getSchema(name);
-            registryClient.register(NamingUtil.fromLocalToRegistrySubject(name), schema);
+            registryClient.get().register(NamingUtil.fromLocalToRegistrySubject(name), schema);
+            registryClient.get().saveSnapshot();
         } catch (RepoServiceException | SchemaRegistryException e) {
             throw new SchemaCommandException(e.getMessage(), e);
         }
@@ -82,11 +120,29 @@ public class SchemaCommands {
     }
 
     @ShellMethod("Synchronizes the local repo with the schema registry by registering new schema versions")
-    public String sync(@ShellOption boolean force) {
+    public String sync(@ShellOption boolean force,
+                       @ShellOption(help = "Rebuild the local registry snapshot from scratch") boolean refreshSnapshot,
+                       @ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null", help = "Only cover the named schema and the schemas that import it") String impactOf,
+                       @ShellOption(defaultValue = "null", help = "Stream a line of JSON per subject to this file as results come in, or - for the terminal") String report,
+                       @ShellOption(defaultValue = "null", help = "Only cover the schemas changed since this git ref, e.g. origin/master, and the schemas that import them") String since) {
+        checkScope(null, impactOf, since);
         if(force) {
+            if(refreshSnapshot) {
+                registryClient.get().discardSnapshot();
+            }
             try {
-                return mediationService.getPrettyMessageFromSyncResultsMap(mediationService.syncLocalWithRemote());
-            } catch (MediationServiceException e) {
+                List<RepoItem> scope = getScope(impactOf, since);
+                if(scope != null && scope.isEmpty()) {
+                    return String.format("No schemas changed since %s. No need to sync.", since);
+                }
+                if(report != null) {
+                    return streamResults(report, listener -> mediationService.get().syncLocalWithRemote(scope, listener));
+                }
+                if(scope != null) {
+                    return mediationService.get().getPrettyMessageFromSyncResultsMap(mediationService.get().syncLocalWithRemote(scope));
+                }
+                return mediationService.get().getPrettyMessageFromSyncResultsMap(mediationService.get().syncLocalWithRemote());
+            } catch (MediationServiceException | RepoServiceException e) {
                 throw new SchemaCommandException(e.getMessage(), e);
             }
         } else {
@@ -95,32 +151,214 @@ public class SchemaCommands {
     }
 
     @ShellMethod("Tests the compatibility of the current local schema(s) with the schema registry")
-    public String testCompatibility(@ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null") String name) {
+    public String testCompatibility(@ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null") String name,
+                                    @ShellOption(help = "Rebuild the local registry snapshot from scratch") boolean refreshSnapshot,
+                                    @ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null", help = "Only cover the named schema and the schemas that import it") String impactOf,
+                                    @ShellOption(defaultValue = "null", help = "Stream a line of JSON per subject to this file as results come in, or - for the terminal; not used when testing a single schema") String report,
+                                    @ShellOption(defaultValue = "null", help = "Only cover the schemas changed since this git ref, e.g. origin/master, and the schemas that import them") String since) {
+        checkScope(name, impactOf, since);
+        if(refreshSnapshot) {
+            registryClient.get().discardSnapshot();
+        }
         String message;
         try {
-            if(name == null) {
-                message = mediationService.getPrettyMessageFromCompatibilityResultsMap(mediationService.testGlobalCompatibility());
+            if(name != null) {
+                return mediationService.get().testCompatibility(name);
+            }
+            List<RepoItem> scope = getScope(impactOf, since);
+            if(scope != null && scope.isEmpty()) {
+                return String.format("No schemas changed since %s. No need to check compatibility.", since);
+            }
+            if(report != null) {
+                return streamResults(report, listener -> mediationService.get().testGlobalCompatibility(scope, listener));
+            }
+            if(scope != null) {
+                message = mediationService.get().getPrettyMessageFromCompatibilityResultsMap(mediationService.get().testGlobalCompatibility(scope));
             } else {
-                message = mediationService.testCompatibility(name);
+                message = mediationService.get().getPrettyMessageFromCompatibilityResultsMap(mediationService.get().testGlobalCompatibility());
             }
-        } catch (MediationServiceException e) {
+        } catch (MediationServiceException | RepoServiceException e) {
             throw new SchemaCommandException(e.getMessage(), e);
         }
         return message;
     }
 
     @ShellMethod("Validates the current schema(s)")
-    public String validate(@ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null") String name) {
+    public String validate(@ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null") String name,
+                           @ShellOption(valueProvider = RepoItemNameValuesProvider.class, defaultValue = "null", help = "Only cover the named schema and the schemas that import it") String impactOf,
+                           @ShellOption(defaultValue = "null", help = "Only cover the schemas changed since this git ref, e.g. origin/master, and the schemas that import them") String since) {
+        checkScope(name, impactOf, since);
+        String message;
         try {
-            if(name == null) {
-                repoService.validateLocalRepo();
+            if(impactOf != null) {
+                ValidationSummary summary = repoService.validateImpactOf(impactOf);
+                message = String.format("%s and the schemas that import it are valid\n%s", impactOf, summary);
+            } else if(since != null) {
+                ValidationSummary summary = repoService.validateChangesSince(since);
+                message = String.format("All schemas changed since %s and the schemas that import them are valid\n%s", since, summary);
+            } else if(name == null) {
+                ValidationSummary summary = repoService.validateLocalRepo();
+                message = String.format("All schemas in the local repo are valid\n%s", summary);
             } else {
                 repoService.validate(name);
+                message = String.format("Local schema for %s is valid", name);
+            }
+        } catch (RepoServiceException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+        return message;
+    }
+
+    @ShellMethod("Lists the schemas that import the named schema, directly or through other imports")
+    public List<String> impact(@ShellOption(valueProvider = RepoItemNameValuesProvider.class) String name) {
+        try {
+            return repoService.getImpactedItems(name).stream()
+                    .skip(1)
+                    .map(RepoItem::getName)
+                    .collect(Collectors.toList());
+        } catch (RepoServiceException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+    }
+
+    @ShellMethod("Watches the local repo and revalidates changed schemas, and the schemas importing them, on every save")
+    public String watch(@ShellOption(help = "Stop watching the local repo") boolean stop) {
+        if(stop) {
+            return repoWatcher.stop() ? "Stopped watching the local repo" : "The local repo is not being watched";
+        }
+        try {
+            if(!repoWatcher.start(this::printToTerminal)) {
+                return "The local repo is already being watched";
             }
         } catch (RepoServiceException e) {
             throw new SchemaCommandException(e.getMessage(), e);
         }
-        return name == null ? "All schemas in the local repo are valid" : String.format("Local schema for %s is valid", name);
+        return String.format("Watching %s for changes. Use watch --stop to stop watching.", repoService.getRootRepoPath());
+    }
+
+    @ShellMethod("Generates a synthetic repo of valid schemas for load and scale testing")
+    public String generateRepo(@ShellOption(help = "Directory to write the repo to; it must not exist yet or be empty") String target,
+                               @ShellOption(defaultValue = "1000", help = "Number of schemas to generate") int count,
+                               @ShellOption(defaultValue = "0", help = "Seed for the generator; the same seed generates the same repo") long seed,
+                               @ShellOption(defaultValue = "2", help = "Deepest subdirectory to place events in") int namespaceDepth,
+                               @ShellOption(defaultValue = "3") int minFields,
+                               @ShellOption(defaultValue = "12") int maxFields,
+                               @ShellOption(defaultValue = "0.2", help = "Chance of a field being an optional union") double unionDensity,
+                               @ShellOption(defaultValue = "0.1", help = "Chance of a field being an enum") double enumDensity,
+                               @ShellOption(defaultValue = "0.05", help = "Chance of a field being a map") double mapDensity,
+                               @ShellOption(defaultValue = "2", help = "Number of common schemas imported by each event") int importFanOut) {
+        if(namespaceDepth > repoService.getAllowedNamespaceDepth()) {
+            throw new SchemaCommandException(String.format("The namespace depth %d is beyond the allowed subdirectory depth of %d",
+                    namespaceDepth, repoService.getAllowedNamespaceDepth()));
+        }
+        SyntheticRepoGenerator.Options options = new SyntheticRepoGenerator.Options();
+        options.setSchemaCount(count);
+        options.setSeed(seed);
+        options.setNamespaceDepth(namespaceDepth);
+        options.setMinFields(minFields);
+        options.setMaxFields(maxFields);
+        options.setUnionDensity(unionDensity);
+        options.setEnumDensity(enumDensity);
+        options.setMapDensity(mapDensity);
+        options.setImportFanOut(importFanOut);
+        Path root = Paths.get(target);
+        List<Path> generated;
+        try {
+            generated = new SyntheticRepoGenerator(options).generate(root);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+        return String.format("Generated %d schemas in %s. Point local-repo.rootPath at it to use it.", generated.size(), root);
+    }
+
+    @ShellMethod("Measures how fast random records of a local schema encode and decode, and how much they allocate")
+    public String benchmarkSchema(@ShellOption(valueProvider = RepoItemNameValuesProvider.class) String name,
+                                  @ShellOption(defaultValue = "1000", help = "Number of random records encoded and decoded in each iteration") int records,
+                                  @ShellOption(defaultValue = "5", help = "Iterations run before measuring starts, and not measured") int warmupIterations,
+                                  @ShellOption(defaultValue = "10") int iterations,
+                                  @ShellOption(defaultValue = "0", help = "Seed for the random records; the same seed generates the same records") long seed,
+                                  @ShellOption(defaultValue = "null", help = "Jar or directory of the classes compiled from the generateJava output, to also measure the specific API") String generatedClasses,
+                                  @ShellOption(help = "Print the results as JSON instead of a table") boolean json) {
+        SchemaBenchmark.Options options = new SchemaBenchmark.Options();
+        options.setRecordCount(records);
+        options.setWarmupIterations(warmupIterations);
+        options.setIterations(iterations);
+        options.setSeed(seed);
+        try(URLClassLoader classLoader = generatedClasses == null ? null
+                : new URLClassLoader(new URL[]{Paths.get(generatedClasses).toUri().toURL()}, SchemaBenchmark.class.getClassLoader())) {
+            if(classLoader != null) {
+                options.setClassLoader(classLoader);
+            }
+            SchemaBenchmark.Result result = new SchemaBenchmark(options).run(repoService.getSchema(name));
+            return json ? result.toJson() : result.toString();
+        } catch (RepoServiceException | IOException | IllegalArgumentException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+    }
+
+    @ShellMethod("Prints hit/miss statistics for the parsed schema cache")
+    public String cacheStats() {
+        return repoService.getProtocolCache().toString();
+    }
+
+    /**
+     * Runs a sync or compatibility test that reports each subject as NDJSON while it runs, and sums it up at the end.
+     */
+    private String streamResults(String report, StreamedRun run) {
+        boolean toTerminal = report.equals("-");
+        NdjsonResultWriter results;
+        try {
+            Writer writer = toTerminal ? terminal.writer() : Files.newBufferedWriter(Paths.get(report));
+            results = new NdjsonResultWriter(writer);
+            try {
+                run.run(results);
+            } finally {
+                if(!toTerminal) {
+                    writer.close();
+                }
+            }
+        } catch (MediationServiceException | RepoServiceException | IOException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+        if(results.getFailureCount() > 0) {
+            throw new SchemaCommandException(results.toString());
+        }
+        return results.toString();
+    }
+
+    /**
+     * Rejects more than one of a schema name, --impact-of and --since, rather than letting one silently win.
+     */
+    private static void checkScope(@Nullable String name, @Nullable String impactOf, @Nullable String since) {
+        if(Stream.of(name, impactOf, since).filter(Objects::nonNull).count() > 1) {
+            throw new SchemaCommandException(name == null
+                    ? "--impact-of and --since cannot be combined"
+                    : "Give a schema name, --impact-of or --since, not more than one of them");
+        }
     }
 
-}
\ No newline at end of file
+    /**
+     * The items a run is narrowed down to by --impact-of or --since, or null when it covers the whole local repo.
+     */
+    @Nullable
+    private List<RepoItem> getScope(@Nullable String impactOf, @Nullable String since) throws RepoServiceException {
+        if(impactOf != null) {
+            return repoService.getImpactedItems(impactOf);
+        }
+        if(since != null) {
+            return repoService.getItemsChangedSince(since);
+        }
+        return null;
+    }
+
+    private void printToTerminal(String message) {
+        terminal.writer().println();
+        terminal.writer().println(message);
+        terminal.flush();
+    }
+
+    @FunctionalInterface
+    private interface StreamedRun {
+        void run(Consumer<SubjectResult> listener) throws MediationServiceException, RepoServiceException;
+    }
+}
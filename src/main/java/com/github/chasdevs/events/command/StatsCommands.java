@@ -0,0 +1,35 @@
+package com.github.chasdevs.events.command;
+
+import com.github.chasdevs.events.services.metrics.MetricsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.shell.standard.ShellComponent;
+import org.springframework.shell.standard.ShellMethod;
+import org.springframework.shell.standard.ShellOption;
+
+import java.io.IOException;
+
+/**
+ * Commands for inspecting where time went in the commands run so far; see {@link MetricsService}.
+ */
+@ShellComponent
+public class StatsCommands {
+
+    private final MetricsService metricsService;
+
+    @Autowired
+    public StatsCommands(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    @ShellMethod("Prints timings of registry calls, parsing, repo scans and validation rules recorded in this session")
+    public String stats(@ShellOption(help = "Print the metrics as JSON instead of a table") boolean json) {
+        if(!json) {
+            return metricsService.getStats();
+        }
+        try {
+            return metricsService.toJson();
+        } catch (IOException e) {
+            throw new SchemaCommandException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.chasdevs.events.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("daemon")
+public class DaemonConfig {
+
+    private int port;
+    private long idleTimeoutMinutes = 60;
+
+    // loopback port the daemon listens on; 0 picks a free one, which run-shell.sh finds through the daemon's state file
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    // how long the daemon waits for a command before shutting itself down; 0 keeps it running until stopped
+    public long getIdleTimeoutMinutes() {
+        return idleTimeoutMinutes;
+    }
+
+    public void setIdleTimeoutMinutes(long idleTimeoutMinutes) {
+        this.idleTimeoutMinutes = idleTimeoutMinutes;
+    }
+}
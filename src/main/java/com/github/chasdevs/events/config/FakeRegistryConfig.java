@@ -0,0 +1,119 @@
+package com.github.chasdevs.events.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the in-memory registry used by the fake-registry profile. Every call to it behaves according to
+ * {@link #getDefaults()}, unless {@link #getCalls()} holds a behavior for that call, keyed by the name of the Confluent
+ * client method, such as getAllVersions or getLatestSchemaMetadata.
+ */
+@Component
+@ConfigurationProperties("fake-registry")
+public class FakeRegistryConfig {
+    private long seed;
+    private boolean preloadLocalRepo;
+    private CallBehavior defaults = new CallBehavior();
+    private Map<String, CallBehavior> calls = new HashMap<>();
+
+    // seed for sampling latencies and injected errors, so that single-threaded runs see the same sequence every time
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // whether every schema in the local repo is registered on startup, so that a sync finds everything up to date
+    public boolean isPreloadLocalRepo() {
+        return preloadLocalRepo;
+    }
+
+    public void setPreloadLocalRepo(boolean preloadLocalRepo) {
+        this.preloadLocalRepo = preloadLocalRepo;
+    }
+
+    public CallBehavior getDefaults() {
+        return defaults;
+    }
+
+    public void setDefaults(CallBehavior defaults) {
+        this.defaults = defaults;
+    }
+
+    public Map<String, CallBehavior> getCalls() {
+        return calls;
+    }
+
+    public void setCalls(Map<String, CallBehavior> calls) {
+        this.calls = calls;
+    }
+
+    // convenience method that returns the behavior of the given Confluent client method
+    public CallBehavior getBehavior(String call) {
+        return calls.getOrDefault(call, defaults);
+    }
+
+    public enum LatencyDistribution {
+        // every call takes latencyMs
+        FIXED,
+        // calls take anywhere between latencyMs - latencyJitterMs and latencyMs + latencyJitterMs
+        UNIFORM,
+        // calls take latencyMs at the median, with one call in a hundred taking latencyMs + latencyJitterMs or longer
+        LOG_NORMAL
+    }
+
+    public static class CallBehavior {
+        private LatencyDistribution latencyDistribution = LatencyDistribution.FIXED;
+        private long latencyMs;
+        private long latencyJitterMs;
+        private double errorRate;
+
+        public CallBehavior() {
+        }
+
+        public CallBehavior(LatencyDistribution latencyDistribution, long latencyMs, long latencyJitterMs, double errorRate) {
+            this.latencyDistribution = latencyDistribution;
+            this.latencyMs = latencyMs;
+            this.latencyJitterMs = latencyJitterMs;
+            this.errorRate = errorRate;
+        }
+
+        public LatencyDistribution getLatencyDistribution() {
+            return latencyDistribution;
+        }
+
+        public void setLatencyDistribution(LatencyDistribution latencyDistribution) {
+            this.latencyDistribution = latencyDistribution;
+        }
+
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+
+        public void setLatencyMs(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        public long getLatencyJitterMs() {
+            return latencyJitterMs;
+        }
+
+        public void setLatencyJitterMs(long latencyJitterMs) {
+            this.latencyJitterMs = latencyJitterMs;
+        }
+
+        // share of calls that fail the way the registry does on an internal error, from 0 to 1
+        public double getErrorRate() {
+            return errorRate;
+        }
+
+        public void setErrorRate(double errorRate) {
+            this.errorRate = errorRate;
+        }
+    }
+}
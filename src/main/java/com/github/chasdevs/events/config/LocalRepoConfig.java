@@ -9,6 +9,9 @@ public class LocalRepoConfig {
 
     private String rootPath;
     private int allowedNamespaceDepth;
+    private String indexFile = ".events-index";
+    private int validationParallelism = Runtime.getRuntime().availableProcessors();
+    private long watchDebounceMs = 100;
 
     public LocalRepoConfig() {
     }
@@ -33,4 +36,31 @@ public class LocalRepoConfig {
     public void setAllowedNamespaceDepth(int allowedNamespaceDepth) {
         this.allowedNamespaceDepth = allowedNamespaceDepth;
     }
+
+    // name of the repo index file within the root path; blank keeps the index in memory only
+    public String getIndexFile() {
+        return indexFile;
+    }
+
+    public void setIndexFile(String indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    // number of threads used to validate the whole repo; 1 validates on the calling thread
+    public int getValidationParallelism() {
+        return validationParallelism;
+    }
+
+    public void setValidationParallelism(int validationParallelism) {
+        this.validationParallelism = validationParallelism;
+    }
+
+    // how long the watch command waits for a burst of file changes to settle before revalidating
+    public long getWatchDebounceMs() {
+        return watchDebounceMs;
+    }
+
+    public void setWatchDebounceMs(long watchDebounceMs) {
+        this.watchDebounceMs = watchDebounceMs;
+    }
 }
@@ -0,0 +1,33 @@
+package com.github.chasdevs.events.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+@ConfigurationProperties("metrics")
+public class MetricsConfig {
+
+    private List<Double> percentiles = Arrays.asList(0.5, 0.9, 0.99);
+    private String dumpFile;
+
+    // percentiles the stats command reports for every timer
+    public List<Double> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(List<Double> percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    // file every metric is written to as JSON when the process exits, for tracking trends across CI runs; unset writes nothing
+    public String getDumpFile() {
+        return dumpFile;
+    }
+
+    public void setDumpFile(String dumpFile) {
+        this.dumpFile = dumpFile;
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.chasdevs.events.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties("performance-budget")
+public class PerformanceBudgetConfig {
+
+    private boolean enforced;
+    private double maxEncodedBytes = 4096;
+    private double maxDecodeCost = 2000;
+    private int maxNestingDepth = 6;
+    private int maxUnionBranches = 4;
+    private double maxOptionalFieldRatio = 1.0;
+    private int assumedStringBytes = 16;
+    private int assumedCollectionSize = 4;
+
+    // whether validate fails schemas over any of the thresholds below; analyze reports them either way
+    public boolean isEnforced() {
+        return enforced;
+    }
+
+    public void setEnforced(boolean enforced) {
+        this.enforced = enforced;
+    }
+
+    // highest estimated size of an encoded record, in bytes
+    public double getMaxEncodedBytes() {
+        return maxEncodedBytes;
+    }
+
+    public void setMaxEncodedBytes(double maxEncodedBytes) {
+        this.maxEncodedBytes = maxEncodedBytes;
+    }
+
+    // highest estimated cost of decoding a record, in values read; see SchemaCost
+    public double getMaxDecodeCost() {
+        return maxDecodeCost;
+    }
+
+    public void setMaxDecodeCost(double maxDecodeCost) {
+        this.maxDecodeCost = maxDecodeCost;
+    }
+
+    // deepest nesting of records, arrays and maps, counting the schema itself as 1
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    public void setMaxNestingDepth(int maxNestingDepth) {
+        this.maxNestingDepth = maxNestingDepth;
+    }
+
+    // most branches in any one union
+    public int getMaxUnionBranches() {
+        return maxUnionBranches;
+    }
+
+    public void setMaxUnionBranches(int maxUnionBranches) {
+        this.maxUnionBranches = maxUnionBranches;
+    }
+
+    // highest share of fields that are optional, i.e. unions with null; 1.0 never fails
+    public double getMaxOptionalFieldRatio() {
+        return maxOptionalFieldRatio;
+    }
+
+    public void setMaxOptionalFieldRatio(double maxOptionalFieldRatio) {
+        this.maxOptionalFieldRatio = maxOptionalFieldRatio;
+    }
+
+    // length assumed for every string and bytes value when estimating sizes
+    public int getAssumedStringBytes() {
+        return assumedStringBytes;
+    }
+
+    public void setAssumedStringBytes(int assumedStringBytes) {
+        this.assumedStringBytes = assumedStringBytes;
+    }
+
+    // number of elements assumed for every array and map when estimating sizes
+    public int getAssumedCollectionSize() {
+        return assumedCollectionSize;
+    }
+
+    public void setAssumedCollectionSize(int assumedCollectionSize) {
+        this.assumedCollectionSize = assumedCollectionSize;
+    }
+}
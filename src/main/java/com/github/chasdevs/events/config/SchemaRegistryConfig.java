@@ -1,8 +1,11 @@
 package com.github.chasdevs.events.config;
 
+import com.github.chasdevs.events.util.SchemaFingerprint;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -13,6 +16,17 @@ public class SchemaRegistryConfig {
     private int identityMapLimit;
     private String username;
     private String password;
+    private int maxInFlightRequests = 8;
+    private long requestTimeoutMs = 30000;
+    private boolean snapshotLocalSubjectsOnly;
+    private boolean snapshotEnabled;
+    private String snapshotDirectory = Paths.get(System.getProperty("user.home"), ".events", "registry-snapshots").toString();
+    private long snapshotMaxAgeSeconds = 300;
+    private long subjectCompletionMaxAgeSeconds = 60;
+    private SchemaFingerprint.Normalization diffNormalization = SchemaFingerprint.Normalization.IGNORE_DOCS;
+    private boolean localCompatibilityChecks = true;
+    private int compatibilityCacheSize = 10000;
+    private String compatibilityCacheFile;
 
     public SchemaRegistryConfig() {
     }
@@ -61,6 +75,110 @@ public class SchemaRegistryConfig {
         this.password = password;
     }
 
+    // upper bound on concurrent requests made to the registry; 1 makes requests one at a time
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    // timeout for each request made while taking a snapshot of the registry; 0 waits indefinitely
+    public long getRequestTimeoutMs() {
+        return requestTimeoutMs;
+    }
+
+    public void setRequestTimeoutMs(long requestTimeoutMs) {
+        this.requestTimeoutMs = requestTimeoutMs;
+    }
+
+    // whether a snapshot of the registry only covers subjects that exist in the local repo
+    public boolean isSnapshotLocalSubjectsOnly() {
+        return snapshotLocalSubjectsOnly;
+    }
+
+    public void setSnapshotLocalSubjectsOnly(boolean snapshotLocalSubjectsOnly) {
+        this.snapshotLocalSubjectsOnly = snapshotLocalSubjectsOnly;
+    }
+
+    // whether the latest schema of every subject is persisted locally and refreshed incrementally between runs
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    public void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    public String getSnapshotDirectory() {
+        return snapshotDirectory;
+    }
+
+    public void setSnapshotDirectory(String snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    // how long a stored subject is trusted before its version is checked with the registry again
+    public long getSnapshotMaxAgeSeconds() {
+        return snapshotMaxAgeSeconds;
+    }
+
+    public void setSnapshotMaxAgeSeconds(long snapshotMaxAgeSeconds) {
+        this.snapshotMaxAgeSeconds = snapshotMaxAgeSeconds;
+    }
+
+    // how long the list of registry subjects used to complete names in the shell is kept before it is listed again
+    public long getSubjectCompletionMaxAgeSeconds() {
+        return subjectCompletionMaxAgeSeconds;
+    }
+
+    public void setSubjectCompletionMaxAgeSeconds(long subjectCompletionMaxAgeSeconds) {
+        this.subjectCompletionMaxAgeSeconds = subjectCompletionMaxAgeSeconds;
+    }
+
+    // how much of a schema is normalized away before comparing local and registry schemas; see SchemaFingerprint
+    public SchemaFingerprint.Normalization getDiffNormalization() {
+        return diffNormalization;
+    }
+
+    public void setDiffNormalization(SchemaFingerprint.Normalization diffNormalization) {
+        this.diffNormalization = diffNormalization;
+    }
+
+    // whether compatibility is checked in process against each subject's level and history, rather than by asking the
+    // registry to test every changed subject
+    public boolean isLocalCompatibilityChecks() {
+        return localCompatibilityChecks;
+    }
+
+    public void setLocalCompatibilityChecks(boolean localCompatibilityChecks) {
+        this.localCompatibilityChecks = localCompatibilityChecks;
+    }
+
+    // how many compatibility check results are kept in memory before the least recently used ones are evicted
+    public int getCompatibilityCacheSize() {
+        return compatibilityCacheSize;
+    }
+
+    public void setCompatibilityCacheSize(int compatibilityCacheSize) {
+        this.compatibilityCacheSize = compatibilityCacheSize;
+    }
+
+    // file the compatibility check results are persisted to between runs; unset keeps them in memory only
+    public String getCompatibilityCacheFile() {
+        return compatibilityCacheFile;
+    }
+
+    public void setCompatibilityCacheFile(String compatibilityCacheFile) {
+        this.compatibilityCacheFile = compatibilityCacheFile;
+    }
+
+    // convenience method that returns the snapshot file for this registry, so each environment keeps its own snapshot
+    public Path getSnapshotFile() {
+        return Paths.get(getSnapshotDirectory(), getUrl().replaceAll("[^A-Za-z0-9.-]+", "_") + ".snapshot");
+    }
+
     // convenience method that returns required Confluent auth configs
     public Map<String, String> getAuthConfigs() {
         Map<String, String> authConfigs = new HashMap<>();
@@ -0,0 +1,219 @@
+package com.github.chasdevs.events.services.mediation;
+
+import com.github.chasdevs.events.util.MetricsUtil;
+import com.github.chasdevs.events.util.SchemaFingerprint;
+import com.hotels.avro.compatibility.Compatibility;
+import com.hotels.avro.compatibility.CompatibilityCheckResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU cache of compatibility check results, keyed by the fingerprints of both schemas and the direction of the
+ * check. Schemas that have not changed since they were last checked against each other are never traversed again, which
+ * is the common case for repeated compatibility runs in CI and in the shell.
+ * <p>
+ * Schemas are fingerprinted in full, so any change to either schema, documentation included, is checked afresh. The
+ * cache can be persisted to a file so that results carry over between runs; entries are written in least to most
+ * recently used order, so the bound evicts the same entries after a reload.
+ */
+public class CompatibilityCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompatibilityCache.class);
+
+    private static final String HEADER = "# compatibility cache v1";
+    // stands for a compatible result in the persisted cache, where every other value is an incompatibility message
+    private static final String COMPATIBLE = "";
+
+    /**
+     * Which way a schema is checked against another one.
+     */
+    public enum Direction {
+        // the schema can read data written with the other one
+        CAN_READ,
+        // data written with the schema can be read with the other one
+        CAN_BE_READ_BY
+    }
+
+    // shared by every instance, so the meters add up all of them rather than following whichever was created first
+    private static final Counter HIT_COUNTER = Metrics.counter(MetricsUtil.COMPATIBILITY_CACHE, "result", "hit");
+    private static final Counter MISS_COUNTER = Metrics.counter(MetricsUtil.COMPATIBILITY_CACHE, "result", "miss");
+
+    private final int maxEntries;
+    @Nullable
+    private final Path file;
+    private final LinkedHashMap<Key, String> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean dirty;
+
+    /**
+     * @param maxEntries how many results are kept before the least recently used ones are evicted
+     * @param file file to persist the cache to, or null to keep it in memory only
+     */
+    public CompatibilityCache(int maxEntries, @Nullable Path file) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.file = file;
+        this.entries = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > CompatibilityCache.this.maxEntries;
+            }
+        };
+        load();
+    }
+
+    /**
+     * Checks the schema against the other one, or returns the result of an earlier check of the same pair.
+     *
+     * @return the incompatibilities found, or null if the schemas are compatible
+     */
+    @Nullable
+    public String check(Schema schema, Direction direction, Schema other) {
+        return check(schema, SchemaFingerprint.of(schema, SchemaFingerprint.Normalization.FULL), direction,
+                other, SchemaFingerprint.of(other, SchemaFingerprint.Normalization.FULL));
+    }
+
+    /**
+     * Like {@link #check(Schema, Direction, Schema)}, with the full fingerprints of both schemas worked out by the
+     * caller, e.g. once per run for a schema checked against many others.
+     */
+    @Nullable
+    public String check(Schema schema, long fingerprint, Direction direction, Schema other, long otherFingerprint) {
+        Key key = new Key(fingerprint, otherFingerprint, direction);
+        String result;
+        synchronized(entries) {
+            result = entries.get(key);
+        }
+        if(result != null) {
+            hits.incrementAndGet();
+            HIT_COUNTER.increment();
+        } else {
+            misses.incrementAndGet();
+            MISS_COUNTER.increment();
+            // checked outside the lock so that checks of different pairs run in parallel
+            CompatibilityCheckResult check = direction == Direction.CAN_READ
+                    ? Compatibility.checkThat(schema).canRead(other)
+                    : Compatibility.checkThat(schema).canBeReadBy(other);
+            result = check.isCompatible() ? COMPATIBLE : parseIncompatibilityMessage(check);
+            synchronized(entries) {
+                entries.put(key, result);
+            }
+            dirty = true;
+        }
+        return result.equals(COMPATIBLE) ? null : result;
+    }
+
+    public int size() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Compatibility cache: %d results, %d hits, %d misses", size(), getHitCount(), getMissCount());
+    }
+
+    public void save() {
+        if(!dirty || file == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        synchronized(entries) {
+            entries.forEach((key, result) -> {
+                // keep each entry on a single line of the persisted cache
+                if(!result.contains("\n") && !result.contains("\t")) {
+                    lines.add(String.join("\t", Long.toHexString(key.fingerprint), Long.toHexString(key.otherFingerprint), key.direction.name(), result));
+                }
+            });
+            dirty = false;
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(temp, lines);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.debug("Could not write compatibility cache to " + file, e);
+        }
+    }
+
+    private void load() {
+        if(file == null || !Files.isRegularFile(file)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(file);
+            if(lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+                LOGGER.debug("Ignoring compatibility cache {} with an unknown format", file);
+                return;
+            }
+            for(String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split("\t", 4);
+                entries.put(new Key(Long.parseUnsignedLong(parts[0], 16), Long.parseUnsignedLong(parts[1], 16), Direction.valueOf(parts[2])), parts[3]);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read compatibility cache from " + file + ", rebuilding it", e);
+            entries.clear();
+        }
+    }
+
+    private static String parseIncompatibilityMessage(CompatibilityCheckResult check) {
+        String message = check.getResult()
+                .getIncompatibilities()
+                .stream()
+                .map(incompatibility -> String.format("[%s: %s (%s)]", incompatibility.getType(), incompatibility.getMessage(), incompatibility.getLocation()))
+                .collect(Collectors.joining(", "));
+        return message.isEmpty() ? "[incompatible]" : message;
+    }
+
+    private static class Key {
+        private final long fingerprint;
+        private final long otherFingerprint;
+        private final Direction direction;
+
+        Key(long fingerprint, long otherFingerprint, Direction direction) {
+            this.fingerprint = fingerprint;
+            this.otherFingerprint = otherFingerprint;
+            this.direction = direction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fingerprint == key.fingerprint && otherFingerprint == key.otherFingerprint && direction == key.direction;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint, otherFingerprint, direction);
+        }
+    }
+}
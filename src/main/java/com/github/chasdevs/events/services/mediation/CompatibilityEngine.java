@@ -0,0 +1,213 @@
+package com.github.chasdevs.events.services.mediation;
+
+import com.github.chasdevs.events.clients.registry.SchemaRegistryClient;
+import com.github.chasdevs.events.clients.registry.SchemaRegistryException;
+import com.github.chasdevs.events.util.ParallelUtil;
+import com.github.chasdevs.events.util.SchemaFingerprint;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Checks local schemas against the registry the way the registry itself would when they are registered, but in this
+ * process. The registry is only asked for each subject's compatibility level and, for the transitive levels, the
+ * subject's earlier versions; those requests are made up front and in parallel, after which the checks themselves are
+ * bound by CPU rather than by a round trip per subject. Results are memoized in a {@link CompatibilityCache}, so pairs
+ * of schemas that were checked before are not checked again. Each local schema is fingerprinted once per check, however
+ * many versions it is checked against; registry schemas come with the fingerprints stored in the registry snapshot.
+ */
+public class CompatibilityEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompatibilityEngine.class);
+
+    /**
+     * The registry's compatibility levels. BACKWARD means the new schema can read data written with the earlier one,
+     * FORWARD that the earlier schema can read data written with the new one, and FULL both. The plain levels only
+     * check the latest version; the transitive ones check every version.
+     */
+    public enum Level {
+        NONE(false, false, false),
+        BACKWARD(true, false, false),
+        BACKWARD_TRANSITIVE(true, false, true),
+        FORWARD(false, true, false),
+        FORWARD_TRANSITIVE(false, true, true),
+        FULL(true, true, false),
+        FULL_TRANSITIVE(true, true, true);
+
+        private final boolean backward;
+        private final boolean forward;
+        private final boolean transitive;
+
+        Level(boolean backward, boolean forward, boolean transitive) {
+            this.backward = backward;
+            this.forward = forward;
+            this.transitive = transitive;
+        }
+
+        public boolean isBackward() {
+            return backward;
+        }
+
+        public boolean isForward() {
+            return forward;
+        }
+
+        public boolean isTransitive() {
+            return transitive;
+        }
+    }
+
+    private final SchemaRegistryClient registryClient;
+    private final int maxInFlightRequests;
+    private final CompatibilityCache cache;
+
+    public CompatibilityEngine(SchemaRegistryClient registryClient, int maxInFlightRequests, CompatibilityCache cache) {
+        this.registryClient = registryClient;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.cache = cache;
+    }
+
+    /**
+     * Checks every local schema against its subject in the registry.
+     *
+     * @param localSchemasBySubject the local schemas to check, all of which have been registered before
+     * @param latestSchemasBySubject the latest registered schema of each subject, which is all the plain levels need
+     * @return a message for each subject that is not compatible, or whose level or history could not be fetched
+     */
+    public Map<String, String> check(Map<String, Schema> localSchemasBySubject, Map<String, Schema> latestSchemasBySubject) {
+        Map<String, String> failures = new ConcurrentHashMap<>();
+        check(localSchemasBySubject, latestSchemasBySubject, result -> {
+            if(result.isFailure()) {
+                failures.put(result.getSubject(), result.getMessage());
+            }
+        });
+        return new TreeMap<>(failures);
+    }
+
+    /**
+     * Checks every local schema against its subject in the registry, reporting each subject as soon as it is checked.
+     * The reported duration covers fetching the subject's level and history as well as the check itself.
+     *
+     * @param listener called once per subject, possibly from several threads at once
+     */
+    public void check(Map<String, Schema> localSchemasBySubject, Map<String, Schema> latestSchemasBySubject, Consumer<SubjectResult> listener) {
+        Map<String, Level> levels = new ConcurrentHashMap<>();
+        Map<String, SortedMap<Integer, Schema>> histories = new ConcurrentHashMap<>();
+        Map<String, Long> fetchNanos = new ConcurrentHashMap<>();
+        ParallelUtil.forEach(localSchemasBySubject.keySet(), maxInFlightRequests, subject -> {
+            long start = System.nanoTime();
+            try {
+                Level level = getLevel(subject);
+                if(level.isTransitive()) {
+                    histories.put(subject, registryClient.getSchemaHistory(subject));
+                }
+                fetchNanos.put(subject, System.nanoTime() - start);
+                levels.put(subject, level);
+            } catch (SchemaRegistryException e) {
+                LOGGER.debug("Could not fetch the compatibility level or history of " + subject, e);
+                listener.accept(new SubjectResult(subject, SubjectResult.Action.CHECK, SubjectResult.Result.FAILED,
+                        "Could not fetch the compatibility level or history from the registry: " + e.getMessage(), Duration.ofNanos(System.nanoTime() - start)));
+            }
+        });
+        ParallelUtil.forEach(levels.keySet(), Runtime.getRuntime().availableProcessors(), subject -> {
+            long start = System.nanoTime();
+            // the history is only needed until the subject is checked
+            SortedMap<Integer, Schema> history = histories.remove(subject);
+            Schema localSchema = localSchemasBySubject.get(subject);
+            long fingerprint = SchemaFingerprint.of(localSchema, SchemaFingerprint.Normalization.FULL);
+            String message = history != null
+                    ? checkHistory(levels.get(subject), localSchema, fingerprint, history)
+                    : checkLatest(levels.get(subject), localSchema, fingerprint, latestSchemasBySubject.get(subject));
+            Duration duration = Duration.ofNanos(fetchNanos.get(subject) + System.nanoTime() - start);
+            listener.accept(new SubjectResult(subject, SubjectResult.Action.CHECK,
+                    message == null ? SubjectResult.Result.COMPATIBLE : SubjectResult.Result.INCOMPATIBLE, message, duration));
+        });
+    }
+
+    /**
+     * Checks a single local schema against its subject in the registry.
+     *
+     * @param latestSchema the latest registered schema of the subject
+     * @return why the schema is not compatible, or null if it is
+     */
+    @Nullable
+    public String check(String subject, Schema localSchema, Schema latestSchema) throws SchemaRegistryException {
+        Level level = getLevel(subject);
+        long fingerprint = SchemaFingerprint.of(localSchema, SchemaFingerprint.Normalization.FULL);
+        if(level.isTransitive()) {
+            return checkHistory(level, localSchema, fingerprint, registryClient.getSchemaHistory(subject));
+        }
+        return checkLatest(level, localSchema, fingerprint, latestSchema);
+    }
+
+    /**
+     * Checks the schema against the latest registered schema, which is all the plain levels check.
+     *
+     * @param fingerprint the full fingerprint of the schema
+     */
+    @Nullable
+    String checkLatest(Level level, Schema schema, long fingerprint, Schema latest) {
+        List<String> incompatibilities = getIncompatibilities(level, schema, fingerprint, latest);
+        return incompatibilities.isEmpty() ? null : describe(level, "the latest version", incompatibilities);
+    }
+
+    /**
+     * Checks the schema against every registered version, which is what the transitive levels check.
+     *
+     * @param fingerprint the full fingerprint of the schema
+     */
+    @Nullable
+    String checkHistory(Level level, Schema schema, long fingerprint, SortedMap<Integer, Schema> history) {
+        List<String> messages = new ArrayList<>();
+        history.forEach((version, registered) -> {
+            List<String> incompatibilities = getIncompatibilities(level, schema, fingerprint, registered);
+            if(!incompatibilities.isEmpty()) {
+                messages.add(describe(level, "version " + version, incompatibilities));
+            }
+        });
+        return messages.isEmpty() ? null : String.join("\n", messages);
+    }
+
+    /**
+     * @throws SchemaRegistryException if the level cannot be fetched, or is not one this engine knows how to check
+     */
+    private Level getLevel(String subject) throws SchemaRegistryException {
+        String level = registryClient.getCompatibilityLevel(subject);
+        if(level == null) {
+            return Level.BACKWARD;
+        }
+        try {
+            return Level.valueOf(level.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new SchemaRegistryException("Unknown compatibility level " + level, e);
+        }
+    }
+
+    private List<String> getIncompatibilities(Level level, Schema schema, long fingerprint, Schema registered) {
+        List<String> incompatibilities = new ArrayList<>();
+        long registeredFingerprint = SchemaFingerprint.of(registered, SchemaFingerprint.Normalization.FULL);
+        if(level.isBackward()) {
+            String backward = cache.check(schema, fingerprint, CompatibilityCache.Direction.CAN_READ, registered, registeredFingerprint);
+            if(backward != null) {
+                incompatibilities.add("cannot read it: " + backward);
+            }
+        }
+        if(level.isForward()) {
+            String forward = cache.check(schema, fingerprint, CompatibilityCache.Direction.CAN_BE_READ_BY, registered, registeredFingerprint);
+            if(forward != null) {
+                incompatibilities.add("cannot be read by it: " + forward);
+            }
+        }
+        return incompatibilities;
+    }
+
+    private static String describe(Level level, String version, List<String> incompatibilities) {
+        return String.format("Not %s compatible with %s; the local schema %s", level, version, String.join("; and ", incompatibilities));
+    }
+}
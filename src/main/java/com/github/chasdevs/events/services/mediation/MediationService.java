@@ -1,25 +1,29 @@
 package com.github.chasdevs.events.services.mediation;
 
-import com.hotels.avro.compatibility.Compatibility;
-import com.hotels.avro.compatibility.CompatibilityCheckResult;
 import com.github.chasdevs.events.clients.registry.SchemaRegistryClient;
 import com.github.chasdevs.events.clients.registry.SchemaRegistryException;
+import com.github.chasdevs.events.clients.registry.SchemaRegistrySnapshotException;
+import com.github.chasdevs.events.config.SchemaRegistryConfig;
+import com.github.chasdevs.events.services.repo.RepoItem;
 import com.github.chasdevs.events.services.repo.RepoItemType;
 import com.github.chasdevs.events.services.repo.RepoServiceException;
 import com.github.chasdevs.events.services.repo.RepoService;
 import com.github.chasdevs.events.util.NamingUtil;
+import com.github.chasdevs.events.util.ParallelUtil;
+import com.github.chasdevs.events.util.SchemaFingerprint;
 import com.github.chasdevs.events.util.Util;
 import org.apache.avro.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -27,30 +31,75 @@ import java.util.stream.Collectors;
  * compatibility of local schemas with their remote counterparts.
  */
 @Service
+@Lazy
 public class MediationService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MediationService.class);
 
+    private static final int DEFAULT_COMPATIBILITY_CACHE_SIZE = 10000;
+
     private SchemaRegistryClient registryClient;
     private RepoService repoService;
+    private int maxInFlightRequests;
+    private boolean snapshotLocalSubjectsOnly;
+    private SchemaFingerprint.Normalization diffNormalization;
+    private CompatibilityCache compatibilityCache;
+    @Nullable
+    private CompatibilityEngine compatibilityEngine;
 
     private Map<String, Schema> registrySchemaMap;
+    private Map<String, Long> registryFingerprints;
+    private Map<String, String> unavailableRegistrySubjects;
     private Map<RepoItemType, Map<String, Schema>> localRepoSchemaMap;
 
-    @Autowired
     public MediationService(SchemaRegistryClient registryClient, RepoService repoService) {
         this.registryClient = registryClient;
         this.repoService = repoService;
+        this.maxInFlightRequests = 1;
+        this.diffNormalization = SchemaFingerprint.Normalization.IGNORE_DOCS;
+        this.compatibilityCache = new CompatibilityCache(DEFAULT_COMPATIBILITY_CACHE_SIZE, null);
+    }
+
+    @Autowired
+    public MediationService(SchemaRegistryClient registryClient, RepoService repoService, SchemaRegistryConfig registryConfig) {
+        this(registryClient, repoService);
+        this.maxInFlightRequests = registryConfig.getMaxInFlightRequests();
+        this.snapshotLocalSubjectsOnly = registryConfig.isSnapshotLocalSubjectsOnly();
+        this.diffNormalization = registryConfig.getDiffNormalization();
+        this.compatibilityCache = new CompatibilityCache(registryConfig.getCompatibilityCacheSize(),
+                registryConfig.getCompatibilityCacheFile() == null ? null : Paths.get(registryConfig.getCompatibilityCacheFile()));
+        this.compatibilityEngine = registryConfig.isLocalCompatibilityChecks()
+                ? new CompatibilityEngine(registryClient, maxInFlightRequests, compatibilityCache)
+                : null;
     }
 
     public Map<RepoItemType, Map<String, String>> syncLocalWithRemote() throws MediationServiceException {
-        Map<RepoItemType, Map<String, String>> syncResultsMap = new HashMap<>();
-        buildLocalAndRemoteMaps();
-        for (RepoItemType repoItemType : localRepoSchemaMap.keySet()) {
-            Map<String, String> resultsMapForItemType = getSyncResultsMapForItemType(repoItemType);
-            if (!resultsMapForItemType.isEmpty()) {
-                syncResultsMap.put(repoItemType, resultsMapForItemType);
+        return syncLocalWithRemote(null);
+    }
+
+    /**
+     * Syncs only the given items, e.g. the items impacted by a change, instead of the whole local repo.
+     *
+     * @param scope the items to sync, or null to sync the whole local repo
+     */
+    public Map<RepoItemType, Map<String, String>> syncLocalWithRemote(@Nullable Collection<RepoItem> scope) throws MediationServiceException {
+        Map<RepoItemType, Map<String, String>> syncResultsMap = new EnumMap<>(RepoItemType.class);
+        buildLocalAndRemoteMaps(scope);
+        try {
+            // item types are synced in declaration order, so common schemas are registered before the events that use them
+            for (RepoItemType repoItemType : RepoItemType.values()) {
+                if (!localRepoSchemaMap.containsKey(repoItemType)) {
+                    continue;
+                }
+                Map<String, String> resultsMapForItemType = Collections.synchronizedMap(new TreeMap<>());
+                syncItemType(repoItemType, collectFailures(resultsMapForItemType));
+                if (!resultsMapForItemType.isEmpty()) {
+                    syncResultsMap.put(repoItemType, resultsMapForItemType);
+                }
             }
+        } finally {
+            // once for the whole sync rather than once per registered subject
+            registryClient.saveSnapshot();
         }
         if (repoItemMapHasFailures(syncResultsMap)) {
             throw new MediationServiceException(getPrettyMessageFromSyncResultsMap(syncResultsMap));
@@ -59,6 +108,26 @@ public class MediationService {
         }
     }
 
+    /**
+     * Syncs the local repo, or only the given items, reporting every subject to the listener as soon as it is registered
+     * or found to be unchanged, instead of collecting the results. Failures are reported rather than thrown.
+     *
+     * @param scope the items to sync, or null to sync the whole local repo
+     * @param listener called once per subject, possibly from several threads at once
+     */
+    public void syncLocalWithRemote(@Nullable Collection<RepoItem> scope, Consumer<SubjectResult> listener) throws MediationServiceException {
+        buildLocalAndRemoteMaps(scope);
+        try {
+            for (RepoItemType repoItemType : RepoItemType.values()) {
+                if (localRepoSchemaMap.containsKey(repoItemType)) {
+                    syncItemType(repoItemType, listener);
+                }
+            }
+        } finally {
+            registryClient.saveSnapshot();
+        }
+    }
+
     public String getPrettyMessageFromSyncResultsMap(Map<RepoItemType, Map<String, String>> resultsMap) {
         String response;
         if (resultsMap.isEmpty()) {
@@ -78,14 +147,27 @@ public class MediationService {
     }
 
     public String testCompatibility(String name) throws MediationServiceException {
+        try {
+            return testCompatibilityOf(name);
+        } finally {
+            // whatever was checked is worth remembering, even when the check failed
+            compatibilityCache.save();
+        }
+    }
+
+    private String testCompatibilityOf(String name) throws MediationServiceException {
         boolean compatible;
         Schema localSchema;
         Schema registrySchema;
+        String localMessage = null;
         try {
             localSchema = repoService.getSchema(name);
             registrySchema = registryClient.getLatestSchemaBySubject(NamingUtil.fromLocalToRegistrySubject(name));
-            if (!localSchema.equals(registrySchema)) {
-                if (registrySchema != null) {
+            if (registrySchema == null || SchemaFingerprint.of(localSchema, diffNormalization) != SchemaFingerprint.of(registrySchema, diffNormalization)) {
+                if (registrySchema != null && compatibilityEngine != null) {
+                    localMessage = compatibilityEngine.check(NamingUtil.fromLocalToRegistrySubject(name), localSchema, registrySchema);
+                    compatible = localMessage == null;
+                } else if (registrySchema != null) {
                     compatible = registryClient.testCompatibility(NamingUtil.fromLocalToRegistrySubject(name), localSchema);
                 } else {
                     return String.format("Schema for %s has not been registered yet. No need to test compatibility.", name);
@@ -101,7 +183,7 @@ public class MediationService {
         String message = String.format("Local schema for %s %s compatible with the corresponding schema in the registry", name, (compatible ? "is" : "is NOT"));
 
         if (!compatible) {
-            String betterMessage = this.getAvroIncompatibilityMessage(localSchema, registrySchema);
+            String betterMessage = localMessage != null ? localMessage : this.getAvroIncompatibilityMessage(localSchema, registrySchema);
             throw new MediationServiceException(Util.coalesce(betterMessage, message));
         } else {
             return message;
@@ -109,14 +191,25 @@ public class MediationService {
     }
 
     public Map<RepoItemType, Map<String, String>> testGlobalCompatibility() throws MediationServiceException {
+        return testGlobalCompatibility(null);
+    }
+
+    /**
+     * Tests the compatibility of only the given items, e.g. the items impacted by a change, instead of the whole local repo.
+     *
+     * @param scope the items to test, or null to test the whole local repo
+     */
+    public Map<RepoItemType, Map<String, String>> testGlobalCompatibility(@Nullable Collection<RepoItem> scope) throws MediationServiceException {
         Map<RepoItemType, Map<String, String>> compatibilityResultsMap = new HashMap<>();
-        buildLocalAndRemoteMaps();
+        buildLocalAndRemoteMaps(scope);
         for (RepoItemType repoItemType : localRepoSchemaMap.keySet()) {
-            Map<String, String> resultsMapForItemType = getCompatibilityResultsMapForItemType(repoItemType);
+            Map<String, String> resultsMapForItemType = Collections.synchronizedMap(new TreeMap<>());
+            testItemTypeCompatibility(repoItemType, collectFailures(resultsMapForItemType));
             if (!resultsMapForItemType.isEmpty()) {
                 compatibilityResultsMap.put(repoItemType, resultsMapForItemType);
             }
         }
+        compatibilityCache.save();
         if (repoItemMapHasFailures(compatibilityResultsMap)) {
             throw new MediationServiceException(getPrettyMessageFromCompatibilityResultsMap(compatibilityResultsMap));
         } else {
@@ -124,6 +217,21 @@ public class MediationService {
         }
     }
 
+    /**
+     * Tests the compatibility of the local repo, or only the given items, reporting every subject to the listener as
+     * soon as it is checked, instead of collecting the results. Incompatibilities are reported rather than thrown.
+     *
+     * @param scope the items to test, or null to test the whole local repo
+     * @param listener called once per subject, possibly from several threads at once
+     */
+    public void testGlobalCompatibility(@Nullable Collection<RepoItem> scope, Consumer<SubjectResult> listener) throws MediationServiceException {
+        buildLocalAndRemoteMaps(scope);
+        for (RepoItemType repoItemType : localRepoSchemaMap.keySet()) {
+            testItemTypeCompatibility(repoItemType, listener);
+        }
+        compatibilityCache.save();
+    }
+
     public String getPrettyMessageFromCompatibilityResultsMap(Map<RepoItemType, Map<String, String>> resultsMap) {
         String response;
         if (resultsMap.isEmpty()) {
@@ -145,53 +253,120 @@ public class MediationService {
         return response;
     }
 
-    private Map<String, String> getSyncResultsMapForItemType(RepoItemType repoItemType) {
-        Map<String, String> resultsMapForItemType = new HashMap<>();
+    private void syncItemType(RepoItemType repoItemType, Consumer<SubjectResult> listener) {
+        Map<String, String> unavailableSubjects = getUnavailableRegistrySubjects(repoItemType);
+        unavailableSubjects.forEach((name, message) -> listener.accept(new SubjectResult(name, SubjectResult.Action.REGISTER, SubjectResult.Result.FAILED, message, Duration.ZERO)));
         Map<String, Schema> itemSchemas = localRepoSchemaMap.get(repoItemType);
-        for (String name : itemSchemas.keySet()) {
-            Schema localSchema = itemSchemas.get(name);
-            Schema registrySchema = registrySchemaMap.get(name);
-            if (!localSchema.equals(registrySchema)) {
-                try {
-                    registryClient.register(name, localSchema);
-                } catch (SchemaRegistryException e) {
-                    LOGGER.debug(e.getMessage());
-                    resultsMapForItemType.put(name, e.getMessage());
-                }
+        Map<String, Long> localFingerprints = SchemaFingerprint.ofAll(itemSchemas, diffNormalization);
+        List<String> namesToRegister = new ArrayList<>();
+        for (String name : new TreeSet<>(itemSchemas.keySet())) {
+            if (unavailableSubjects.containsKey(name)) {
+                continue;
+            }
+            if (matchesRegistry(name, localFingerprints.get(name))) {
+                listener.accept(new SubjectResult(name, SubjectResult.Action.SKIP, SubjectResult.Result.UNCHANGED, null, Duration.ZERO));
+            } else {
+                namesToRegister.add(name);
             }
         }
-        return resultsMapForItemType;
+        ParallelUtil.forEach(namesToRegister, maxInFlightRequests, name -> {
+            long start = System.nanoTime();
+            try {
+                registryClient.register(name, itemSchemas.get(name));
+                listener.accept(new SubjectResult(name, SubjectResult.Action.REGISTER, SubjectResult.Result.REGISTERED, null, Duration.ofNanos(System.nanoTime() - start)));
+            } catch (SchemaRegistryException e) {
+                LOGGER.debug(e.getMessage());
+                listener.accept(new SubjectResult(name, SubjectResult.Action.REGISTER, SubjectResult.Result.FAILED, e.getMessage(), Duration.ofNanos(System.nanoTime() - start)));
+            }
+        });
     }
 
     //TODO: Remove entire concept of RepoItemType and cleanup code.
-    private Map<String, String> getCompatibilityResultsMapForItemType(RepoItemType repoItemType) {
-        Map<String, String> resultsMapForItemType = new HashMap<>();
+    private void testItemTypeCompatibility(RepoItemType repoItemType, Consumer<SubjectResult> listener) {
+        Map<String, String> unavailableSubjects = getUnavailableRegistrySubjects(repoItemType);
+        unavailableSubjects.forEach((name, message) -> listener.accept(new SubjectResult(name, SubjectResult.Action.CHECK, SubjectResult.Result.FAILED, message, Duration.ZERO)));
         Map<String, Schema> itemSchemas = localRepoSchemaMap.get(repoItemType);
-        for (String name : itemSchemas.keySet()) {
-            Schema localSchema = itemSchemas.get(name);
-            Schema registrySchema = registrySchemaMap.get(name);
-            if (!localSchema.equals(registrySchema)) {
-                try {
-                    if (registrySchema != null && !registryClient.testCompatibility(name, localSchema)) {
-                        String msg = Util.coalesce(getAvroIncompatibilityMessage(localSchema, registrySchema), "Remote registry says invalid.");
-                        resultsMapForItemType.put(name, msg);
-                    }
-                } catch (SchemaRegistryException e) {
-                    LOGGER.error("Error communicating with schema registry: " + e.getMessage());
+        Map<String, Long> localFingerprints = SchemaFingerprint.ofAll(itemSchemas, diffNormalization);
+        Map<String, Schema> changedSchemas = new TreeMap<>();
+        for (Map.Entry<String, Schema> e : itemSchemas.entrySet()) {
+            if (unavailableSubjects.containsKey(e.getKey())) {
+                continue;
+            }
+            if (!registrySchemaMap.containsKey(e.getKey())) {
+                listener.accept(new SubjectResult(e.getKey(), SubjectResult.Action.SKIP, SubjectResult.Result.NEW, null, Duration.ZERO));
+            } else if (matchesRegistry(e.getKey(), localFingerprints.get(e.getKey()))) {
+                listener.accept(new SubjectResult(e.getKey(), SubjectResult.Action.SKIP, SubjectResult.Result.UNCHANGED, null, Duration.ZERO));
+            } else {
+                changedSchemas.put(e.getKey(), e.getValue());
+            }
+        }
+        if (compatibilityEngine != null) {
+            compatibilityEngine.check(changedSchemas, registrySchemaMap, listener);
+            return;
+        }
+        for (Map.Entry<String, Schema> e : changedSchemas.entrySet()) {
+            String name = e.getKey();
+            Schema localSchema = e.getValue();
+            long start = System.nanoTime();
+            try {
+                if (registryClient.testCompatibility(name, localSchema)) {
+                    listener.accept(new SubjectResult(name, SubjectResult.Action.CHECK, SubjectResult.Result.COMPATIBLE, null, Duration.ofNanos(System.nanoTime() - start)));
+                } else {
+                    String msg = Util.coalesce(getAvroIncompatibilityMessage(localSchema, registrySchemaMap.get(name)), "Remote registry says invalid.");
+                    listener.accept(new SubjectResult(name, SubjectResult.Action.CHECK, SubjectResult.Result.INCOMPATIBLE, msg, Duration.ofNanos(System.nanoTime() - start)));
                 }
+            } catch (SchemaRegistryException ex) {
+                LOGGER.error("Error communicating with schema registry: " + ex.getMessage());
+                listener.accept(new SubjectResult(name, SubjectResult.Action.CHECK, SubjectResult.Result.FAILED, ex.getMessage(), Duration.ofNanos(System.nanoTime() - start)));
             }
         }
-        return resultsMapForItemType;
     }
 
-    private void buildLocalAndRemoteMaps() throws MediationServiceException {
+    /**
+     * Keeps the message of every failed subject, which is all the results maps hold.
+     */
+    private static Consumer<SubjectResult> collectFailures(Map<String, String> resultsMapForItemType) {
+        return result -> {
+            if (result.isFailure()) {
+                resultsMapForItemType.put(result.getSubject(), result.getMessage());
+            }
+        };
+    }
+
+    private void buildLocalAndRemoteMaps(@Nullable Collection<RepoItem> scope) throws MediationServiceException {
+        unavailableRegistrySubjects = Collections.emptyMap();
         try {
-            localRepoSchemaMap = repoService.getLocalRepoSchemaMap();
-            registrySchemaMap = registryClient.getCurrentRegistrySchemaMap();
+            localRepoSchemaMap = scope == null ? repoService.getLocalRepoSchemaMap() : repoService.getLocalRepoSchemaMap(scope);
+            // a scoped run has no use for the rest of the registry
+            if (snapshotLocalSubjectsOnly || scope != null) {
+                Set<String> localSubjects = localRepoSchemaMap.values().stream()
+                        .flatMap(itemSchemas -> itemSchemas.keySet().stream())
+                        .collect(Collectors.toSet());
+                registrySchemaMap = registryClient.getRegistrySchemaMap(localSubjects);
+            } else {
+                registrySchemaMap = registryClient.getCurrentRegistrySchemaMap();
+            }
+        } catch (SchemaRegistrySnapshotException e) {
+            // carry on with the subjects we could fetch; the rest are reported as failures rather than treated as new
+            LOGGER.debug(e.getMessage());
+            registrySchemaMap = e.getSchemas();
+            unavailableRegistrySubjects = e.getFailures();
         } catch (RepoServiceException | SchemaRegistryException e) {
             LOGGER.debug(e.getMessage());
             throw new MediationServiceException("There was a problem building local and/or remote schema map(s)", e);
         }
+        registryFingerprints = SchemaFingerprint.ofAll(registrySchemaMap, diffNormalization);
+    }
+
+    private boolean matchesRegistry(String name, Long localFingerprint) {
+        return localFingerprint != null && localFingerprint.equals(registryFingerprints.get(name));
+    }
+
+    private Map<String, String> getUnavailableRegistrySubjects(RepoItemType repoItemType) {
+        Map<String, Schema> itemSchemas = localRepoSchemaMap.get(repoItemType);
+        return unavailableRegistrySubjects.entrySet().stream()
+                .filter(e -> itemSchemas.containsKey(e.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> "Could not fetch the current schema from the registry: " + e.getValue()));
     }
 
     private boolean repoItemMapHasFailures(Map<RepoItemType, Map<String, String>> repoItemMap) {
@@ -205,27 +380,19 @@ public class MediationService {
 
     @Nullable
     private String getAvroIncompatibilityMessage(Schema localSchema, Schema remoteSchema) {
-        CompatibilityCheckResult forwards = Compatibility.checkThat(localSchema).canRead(remoteSchema);
-        CompatibilityCheckResult backwards = Compatibility.checkThat(localSchema).canBeReadBy(remoteSchema);
+        String forwards = compatibilityCache.check(localSchema, CompatibilityCache.Direction.CAN_READ, remoteSchema);
+        String backwards = compatibilityCache.check(localSchema, CompatibilityCache.Direction.CAN_BE_READ_BY, remoteSchema);
 
         StringBuilder sb = new StringBuilder();
-        if (!backwards.isCompatible()) {
-            sb.append("Not backwards-compatible: ").append(parseIncompatibilityMessage((backwards)));
+        if (backwards != null) {
+            sb.append("Not backwards-compatible: ").append(backwards);
         }
-        if (!forwards.isCompatible()) {
+        if (forwards != null) {
             if (sb.length() > 0) sb.append("\n");    
-            sb.append("Not forwards-compatible: ").append(parseIncompatibilityMessage(forwards));
+            sb.append("Not forwards-compatible: ").append(forwards);
         }
         
         return sb.length() > 0 ? sb.toString() : null;
     }
 
-    private String parseIncompatibilityMessage(CompatibilityCheckResult check) {
-        return check.getResult()
-                .getIncompatibilities()
-                .stream()
-                .map(incompatibility -> String.format("[%s: %s (%s)]", incompatibility.getType(), incompatibility.getMessage(), incompatibility.getLocation()))
-                .collect(Collectors.joining(", "));
-    }
-
 }
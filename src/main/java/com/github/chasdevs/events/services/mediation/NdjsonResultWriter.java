@@ -0,0 +1,71 @@
+package com.github.chasdevs.events.services.mediation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.function.Consumer;
+
+/**
+ * Writes each {@link SubjectResult} as a line of JSON the moment it is reported, e.g.
+ * <pre>
+ * {"subject":"click-event-value","action":"register","result":"registered","durationMs":12.4}
+ * {"subject":"view-event-value","action":"check","result":"incompatible","message":"...","durationMs":0.8}
+ * </pre>
+ * Only counts are kept, so reporting adds nothing per subject to what the run itself holds, which still includes the
+ * local and registry schemas of every subject covered. Results may be reported from several threads at once.
+ */
+public class NdjsonResultWriter implements Consumer<SubjectResult> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final PrintWriter writer;
+    private long count;
+    private long failureCount;
+
+    public NdjsonResultWriter(Writer writer) {
+        this.writer = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer);
+    }
+
+    @Override
+    public void accept(SubjectResult result) {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("subject", result.getSubject());
+        node.put("action", result.getAction().name().toLowerCase());
+        node.put("result", result.getResult().name().toLowerCase());
+        if(result.getMessage() != null) {
+            node.put("message", result.getMessage());
+        }
+        node.put("durationMs", result.getDuration().toNanos() / 1_000_000.0);
+        String line;
+        try {
+            line = MAPPER.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized(this) {
+            writer.println(line);
+            writer.flush();
+            count++;
+            if(result.isFailure()) {
+                failureCount++;
+            }
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d subjects reported, %d failed", count, failureCount);
+    }
+}
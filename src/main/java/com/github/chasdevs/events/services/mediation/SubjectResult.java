@@ -0,0 +1,84 @@
+package com.github.chasdevs.events.services.mediation;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+
+/**
+ * The outcome of syncing or testing the compatibility of a single subject, reported as soon as it is known.
+ */
+public class SubjectResult {
+
+    /**
+     * What was done with the subject.
+     */
+    public enum Action {
+        // the local schema was registered, or registering it was attempted
+        REGISTER,
+        // the local schema was tested for compatibility with the registry
+        CHECK,
+        // nothing needed doing, e.g. because the local schema matches the registry
+        SKIP
+    }
+
+    /**
+     * How it went.
+     */
+    public enum Result {
+        REGISTERED,
+        COMPATIBLE,
+        INCOMPATIBLE,
+        // the local schema matches the registry
+        UNCHANGED,
+        // the subject has not been registered yet, so there is nothing to be compatible with
+        NEW,
+        FAILED
+    }
+
+    private final String subject;
+    private final Action action;
+    private final Result result;
+    @Nullable
+    private final String message;
+    private final Duration duration;
+
+    public SubjectResult(String subject, Action action, Result result, @Nullable String message, Duration duration) {
+        this.subject = subject;
+        this.action = action;
+        this.result = result;
+        this.message = message;
+        this.duration = duration;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return why the subject failed or is incompatible, or null otherwise
+     */
+    @Nullable
+    public String getMessage() {
+        return message;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public boolean isFailure() {
+        return result == Result.FAILED || result == Result.INCOMPATIBLE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s", subject, action, result);
+    }
+}
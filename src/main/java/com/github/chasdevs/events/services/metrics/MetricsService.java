@@ -0,0 +1,178 @@
+package com.github.chasdevs.events.services.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.chasdevs.events.config.MetricsConfig;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the timers and counters recorded through Micrometer's global registry for as long as the application runs,
+ * so that the stats command can report on them, and optionally writes them to a JSON file when the application exits.
+ * See {@link com.github.chasdevs.events.util.MetricsUtil} for the meters themselves.
+ */
+@Service
+public class MetricsService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsService.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // long enough that percentiles and max cover everything recorded since startup, like the counts and totals do,
+    // rather than Micrometer's default of the last two minutes
+    private static final Duration PROCESS_LIFETIME = Duration.ofDays(3650);
+
+    private final MeterRegistry registry;
+    private final double[] percentiles;
+    private final String dumpFile;
+
+    @Autowired
+    public MetricsService(MetricsConfig config) {
+        this(new SimpleMeterRegistry(), config);
+        Metrics.addRegistry(registry);
+    }
+
+    MetricsService(MeterRegistry registry, MetricsConfig config) {
+        this.registry = registry;
+        this.percentiles = config.getPercentiles().stream().mapToDouble(Double::doubleValue).toArray();
+        this.dumpFile = config.getDumpFile();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig statisticConfig) {
+                if(id.getType() != Meter.Type.TIMER) {
+                    return statisticConfig;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentiles(percentiles)
+                        .expiry(PROCESS_LIFETIME)
+                        .bufferLength(1)
+                        .build()
+                        .merge(statisticConfig);
+            }
+        });
+    }
+
+    /**
+     * Renders every meter recorded so far as a table, with timings in milliseconds.
+     */
+    public String getStats() {
+        List<Meter> meters = getMeters();
+        if(meters.isEmpty()) {
+            return "Nothing has been recorded yet";
+        }
+        StringBuilder sb = new StringBuilder();
+        StringBuilder header = new StringBuilder(String.format("%-90s %8s %10s %9s", "meter", "count", "total ms", "mean ms"));
+        for(double percentile : percentiles) {
+            header.append(String.format(" %9s", "p" + formatPercentile(percentile)));
+        }
+        sb.append(header.append(String.format(" %9s", "max ms"))).append("\n");
+        for(Meter meter : meters) {
+            sb.append(String.format("%-90s", describe(meter.getId())));
+            if(meter instanceof Timer) {
+                HistogramSnapshot snapshot = ((Timer) meter).takeSnapshot();
+                sb.append(String.format(" %8d %10.1f %9.2f", snapshot.count(), snapshot.total(TimeUnit.MILLISECONDS), snapshot.mean(TimeUnit.MILLISECONDS)));
+                for(ValueAtPercentile value : snapshot.percentileValues()) {
+                    sb.append(String.format(" %9.2f", value.value(TimeUnit.MILLISECONDS)));
+                }
+                sb.append(String.format(" %9.2f", snapshot.max(TimeUnit.MILLISECONDS)));
+            } else {
+                sb.append(String.format(" %8.0f", getCount(meter)));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders every meter recorded so far as a JSON array, with timings in milliseconds.
+     */
+    public String toJson() throws IOException {
+        ArrayNode json = MAPPER.createArrayNode();
+        for(Meter meter : getMeters()) {
+            ObjectNode node = json.addObject();
+            node.put("name", meter.getId().getName());
+            ObjectNode tags = node.putObject("tags");
+            meter.getId().getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            if(meter instanceof Timer) {
+                HistogramSnapshot snapshot = ((Timer) meter).takeSnapshot();
+                node.put("count", snapshot.count());
+                node.put("totalMs", snapshot.total(TimeUnit.MILLISECONDS));
+                node.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+                node.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+                ObjectNode percentileValues = node.putObject("percentilesMs");
+                for(ValueAtPercentile value : snapshot.percentileValues()) {
+                    percentileValues.put("p" + formatPercentile(value.percentile()), value.value(TimeUnit.MILLISECONDS));
+                }
+            } else {
+                node.put("count", getCount(meter));
+            }
+        }
+        return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(json);
+    }
+
+    @PreDestroy
+    public void dump() {
+        if(dumpFile == null || dumpFile.isBlank()) {
+            return;
+        }
+        Path path = Paths.get(dumpFile);
+        try {
+            if(path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            Files.writeString(path, toJson());
+        } catch (IOException e) {
+            LOGGER.warn("Could not write metrics to {}: {}", path, e.getMessage());
+        }
+    }
+
+    private List<Meter> getMeters() {
+        return registry.getMeters().stream()
+                // the percentiles of every timer are also published as gauges of their own, which are reported with the timer instead
+                .filter(meter -> !(meter instanceof Gauge && meter.getId().getTag("phi") != null))
+                .sorted(Comparator.comparing((Meter meter) -> meter.getId().getName()).thenComparing(meter -> describe(meter.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private static double getCount(Meter meter) {
+        double count = 0;
+        for(Measurement measurement : meter.measure()) {
+            if(measurement.getStatistic() == Statistic.COUNT) {
+                count += measurement.getValue();
+            }
+        }
+        return count;
+    }
+
+    private static String describe(Meter.Id id) {
+        String tags = id.getTags().stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(","));
+        return tags.isEmpty() ? id.getName() : id.getName() + "{" + tags + "}";
+    }
+
+    private static String formatPercentile(double percentile) {
+        String formatted = String.valueOf(percentile * 100);
+        return formatted.endsWith(".0") ? formatted.substring(0, formatted.length() - 2) : formatted;
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.chasdevs.events.services.performance;
+
+import com.github.chasdevs.events.config.PerformanceBudgetConfig;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import com.github.chasdevs.events.services.repo.ValidationContext;
+import com.github.chasdevs.events.services.repo.ValidationRule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Fails validation of items whose estimated cost (see {@link SchemaCost}) is over the performance budget, once the
+ * budget is enforced with {@code performance-budget.enforced}. Estimates of records shared between items are remembered
+ * across items and validation runs, so each is only walked once.
+ */
+@Component
+public class PerformanceBudgetRule implements ValidationRule {
+
+    private static final int MAX_REMEMBERED_RECORDS = 10000;
+
+    private final PerformanceBudgetConfig budget;
+    private final SchemaCost.Estimator estimator;
+
+    @Autowired
+    public PerformanceBudgetRule(PerformanceBudgetConfig budget) {
+        this.budget = budget;
+        this.estimator = new SchemaCost.Estimator(budget, MAX_REMEMBERED_RECORDS);
+    }
+
+    @Override
+    public String getName() {
+        return "performance-budget";
+    }
+
+    @Override
+    public void checkItem(ValidationContext context) throws RepoServiceException {
+        if(!budget.isEnforced()) {
+            return;
+        }
+        String name = context.getRepoItem().getName();
+        List<String> violations = estimator.estimate(name, context.getSchema()).getBudgetViolations(budget);
+        if(!violations.isEmpty()) {
+            throw new RepoServiceException(String.format("%s is over its performance budget: %s", name, String.join("; ", violations)));
+        }
+    }
+}
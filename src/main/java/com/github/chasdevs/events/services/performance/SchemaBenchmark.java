@@ -0,0 +1,357 @@
+package com.github.chasdevs.events.services.performance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.*;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.avro.util.RandomData;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures what records of a schema cost to encode and decode in process, for comparing revisions of a schema before
+ * they ship. Records are generated at random from the schema with a seed, so the same schema and seed always give the
+ * same records, and every record is encoded and decoded on its own, as a producer or consumer handles a message.
+ * <p>
+ * Records are run through Avro's generic API, and through its specific API too when the Java class generated for the
+ * schema (see the generateJava task) can be loaded. Each API runs warm-up iterations first, which are not measured, so
+ * the JIT has compiled the hot paths by the time measuring starts. Throughput is the median over the measured
+ * iterations; allocation is averaged over them, and is only reported when the JVM can measure it per thread.
+ */
+public class SchemaBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Options options;
+    // folds in what every pass produced, so the JIT cannot drop the work as unused
+    private long checksum;
+
+    public SchemaBenchmark(Options options) {
+        if(options.getRecordCount() < 1 || options.getIterations() < 1 || options.getWarmupIterations() < 0) {
+            throw new IllegalArgumentException("At least one record and one measured iteration are needed, and warm-up iterations cannot be negative");
+        }
+        this.options = options;
+    }
+
+    public Result run(Schema schema) throws IOException {
+        List<Object> records = new ArrayList<>(options.getRecordCount());
+        new RandomData(schema, options.getRecordCount(), options.getSeed()).forEach(records::add);
+
+        // encoded once up front, so that decoding is measured on the same bytes whichever API encoded them
+        byte[][] encoded = new byte[records.size()][];
+        DatumWriter<Object> genericWriter = new GenericDatumWriter<>(schema);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = null;
+        long totalBytes = 0;
+        for(int i = 0; i < records.size(); i++) {
+            out.reset();
+            encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+            genericWriter.write(records.get(i), encoder);
+            encoder.flush();
+            encoded[i] = out.toByteArray();
+            totalBytes += encoded[i].length;
+        }
+
+        List<Measurement> measurements = new ArrayList<>();
+        measurements.add(measure("generic", records, encoded, genericWriter, new GenericDatumReader<>(schema, schema, GenericData.get())));
+
+        SpecificData specificData = new SpecificData(options.getClassLoader());
+        Class<?> specificClass = schema.getType() == Schema.Type.RECORD ? specificData.getClass(schema) : null;
+        if(specificClass != null && SpecificRecord.class.isAssignableFrom(specificClass)) {
+            DatumReader<Object> specificReader = new SpecificDatumReader<>(schema, schema, specificData);
+            List<Object> specificRecords = new ArrayList<>(encoded.length);
+            for(byte[] bytes : encoded) {
+                specificRecords.add(specificReader.read(null, DecoderFactory.get().binaryDecoder(bytes, null)));
+            }
+            measurements.add(measure("specific", specificRecords, encoded, new SpecificDatumWriter<>(schema, specificData), specificReader));
+        }
+        return new Result(schema.getFullName(), SchemaNormalization.parsingFingerprint64(schema), options,
+                (double) totalBytes / records.size(), measurements);
+    }
+
+    private Measurement measure(String api, List<Object> records, byte[][] encoded, DatumWriter<Object> writer, DatumReader<Object> reader) throws IOException {
+        Pass pass = new Pass(records, encoded, writer, reader);
+        for(int i = 0; i < options.getWarmupIterations(); i++) {
+            pass.encode();
+            pass.decode();
+        }
+        double[] encodeRates = new double[options.getIterations()];
+        double[] decodeRates = new double[options.getIterations()];
+        long encodeAllocated = 0;
+        long decodeAllocated = 0;
+        for(int i = 0; i < options.getIterations(); i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            pass.encode();
+            long encodeNanos = System.nanoTime() - start;
+            long allocatedBetween = allocatedBytes();
+            start = System.nanoTime();
+            pass.decode();
+            long decodeNanos = System.nanoTime() - start;
+            long allocatedAfter = allocatedBytes();
+
+            encodeRates[i] = records.size() * 1e9 / Math.max(1, encodeNanos);
+            decodeRates[i] = records.size() * 1e9 / Math.max(1, decodeNanos);
+            encodeAllocated += allocatedBetween - allocatedBefore;
+            decodeAllocated += allocatedAfter - allocatedBetween;
+        }
+        long measuredRecords = (long) records.size() * options.getIterations();
+        boolean allocationMeasured = allocatedBytes() >= 0;
+        checksum += pass.checksum;
+        return new Measurement(api, median(encodeRates), median(decodeRates),
+                allocationMeasured ? (double) encodeAllocated / measuredRecords : null,
+                allocationMeasured ? (double) decodeAllocated / measuredRecords : null);
+    }
+
+    /**
+     * @return the bytes allocated by the current thread so far, or -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    /**
+     * Encodes or decodes every record once, reusing encoders, decoders and decoded records between them as a
+     * long-running producer or consumer would.
+     */
+    private static class Pass {
+        private final List<Object> records;
+        private final byte[][] encoded;
+        private final DatumWriter<Object> writer;
+        private final DatumReader<Object> reader;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private BinaryEncoder encoder;
+        private BinaryDecoder decoder;
+        private Object reuse;
+        private long checksum;
+
+        Pass(List<Object> records, byte[][] encoded, DatumWriter<Object> writer, DatumReader<Object> reader) {
+            this.records = records;
+            this.encoded = encoded;
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        void encode() throws IOException {
+            for(Object record : records) {
+                out.reset();
+                encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+                writer.write(record, encoder);
+                encoder.flush();
+                checksum += out.size();
+            }
+        }
+
+        void decode() throws IOException {
+            for(byte[] bytes : encoded) {
+                decoder = DecoderFactory.get().binaryDecoder(bytes, decoder);
+                reuse = reader.read(reuse, decoder);
+                checksum += System.identityHashCode(reuse);
+            }
+        }
+    }
+
+    public static class Options {
+
+        private int recordCount = 1000;
+        private int warmupIterations = 5;
+        private int iterations = 10;
+        private long seed;
+        private ClassLoader classLoader = SchemaBenchmark.class.getClassLoader();
+
+        // number of random records encoded and decoded in each iteration
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        public void setRecordCount(int recordCount) {
+            this.recordCount = recordCount;
+        }
+
+        // iterations run before measuring starts, and not measured
+        public int getWarmupIterations() {
+            return warmupIterations;
+        }
+
+        public void setWarmupIterations(int warmupIterations) {
+            this.warmupIterations = warmupIterations;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public void setIterations(int iterations) {
+            this.iterations = iterations;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        // class loader the generated Java classes are looked up in for the specific API
+        public ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        public void setClassLoader(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+    }
+
+    /**
+     * Throughput and allocation of one API, in records per second and bytes per record.
+     */
+    public static class Measurement {
+        private final String api;
+        private final double encodeRecordsPerSecond;
+        private final double decodeRecordsPerSecond;
+        @Nullable
+        private final Double encodeAllocatedBytesPerRecord;
+        @Nullable
+        private final Double decodeAllocatedBytesPerRecord;
+
+        Measurement(String api, double encodeRecordsPerSecond, double decodeRecordsPerSecond,
+                    @Nullable Double encodeAllocatedBytesPerRecord, @Nullable Double decodeAllocatedBytesPerRecord) {
+            this.api = api;
+            this.encodeRecordsPerSecond = encodeRecordsPerSecond;
+            this.decodeRecordsPerSecond = decodeRecordsPerSecond;
+            this.encodeAllocatedBytesPerRecord = encodeAllocatedBytesPerRecord;
+            this.decodeAllocatedBytesPerRecord = decodeAllocatedBytesPerRecord;
+        }
+
+        public String getApi() {
+            return api;
+        }
+
+        public double getEncodeRecordsPerSecond() {
+            return encodeRecordsPerSecond;
+        }
+
+        public double getDecodeRecordsPerSecond() {
+            return decodeRecordsPerSecond;
+        }
+
+        @Nullable
+        public Double getEncodeAllocatedBytesPerRecord() {
+            return encodeAllocatedBytesPerRecord;
+        }
+
+        @Nullable
+        public Double getDecodeAllocatedBytesPerRecord() {
+            return decodeAllocatedBytesPerRecord;
+        }
+    }
+
+    public static class Result {
+        private final String schemaName;
+        private final long fingerprint;
+        private final Options options;
+        private final double encodedBytesPerRecord;
+        private final List<Measurement> measurements;
+
+        Result(String schemaName, long fingerprint, Options options, double encodedBytesPerRecord, List<Measurement> measurements) {
+            this.schemaName = schemaName;
+            this.fingerprint = fingerprint;
+            this.options = options;
+            this.encodedBytesPerRecord = encodedBytesPerRecord;
+            this.measurements = Collections.unmodifiableList(measurements);
+        }
+
+        public String getSchemaName() {
+            return schemaName;
+        }
+
+        // parsing canonical form fingerprint of the schema, telling apart the revisions being compared
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public double getEncodedBytesPerRecord() {
+            return encodedBytesPerRecord;
+        }
+
+        public List<Measurement> getMeasurements() {
+            return measurements;
+        }
+
+        /**
+         * Renders the result as a table, one row per API.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%s (fingerprint %016x): %d random records with seed %d, %d warm-up and %d measured iterations, %.1f bytes per record encoded%n",
+                    schemaName, fingerprint, options.getRecordCount(), options.getSeed(), options.getWarmupIterations(), options.getIterations(), encodedBytesPerRecord));
+            sb.append(String.format("%-10s %16s %16s %18s %18s", "api", "encode rec/s", "decode rec/s", "encode alloc B/rec", "decode alloc B/rec"));
+            for(Measurement measurement : measurements) {
+                sb.append(String.format("%n%-10s %16.0f %16.0f %18s %18s", measurement.api, measurement.encodeRecordsPerSecond,
+                        measurement.decodeRecordsPerSecond, formatBytes(measurement.encodeAllocatedBytesPerRecord),
+                        formatBytes(measurement.decodeAllocatedBytesPerRecord)));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Renders the result as JSON, for keeping alongside the results of other revisions of the schema.
+         */
+        public String toJson() throws IOException {
+            ObjectNode root = MAPPER.createObjectNode();
+            root.put("schema", schemaName);
+            root.put("fingerprint", String.format("%016x", fingerprint));
+            root.put("records", options.getRecordCount());
+            root.put("seed", options.getSeed());
+            root.put("warmupIterations", options.getWarmupIterations());
+            root.put("iterations", options.getIterations());
+            root.put("encodedBytesPerRecord", encodedBytesPerRecord);
+            ArrayNode apis = root.putArray("apis");
+            for(Measurement measurement : measurements) {
+                ObjectNode node = apis.addObject();
+                node.put("api", measurement.api);
+                node.put("encodeRecordsPerSecond", measurement.encodeRecordsPerSecond);
+                node.put("decodeRecordsPerSecond", measurement.decodeRecordsPerSecond);
+                node.put("encodeAllocatedBytesPerRecord", measurement.encodeAllocatedBytesPerRecord);
+                node.put("decodeAllocatedBytesPerRecord", measurement.decodeAllocatedBytesPerRecord);
+            }
+            return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        }
+
+        private static String formatBytes(@Nullable Double bytes) {
+            return bytes == null ? "n/a" : String.format("%.1f", bytes);
+        }
+    }
+}
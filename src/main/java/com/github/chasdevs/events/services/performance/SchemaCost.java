@@ -0,0 +1,266 @@
+package com.github.chasdevs.events.services.performance;
+
+import com.github.chasdevs.events.config.PerformanceBudgetConfig;
+import com.google.common.cache.CacheBuilder;
+import org.apache.avro.Schema;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimated cost of a record of a schema, worked out from the schema's structure alone, without generating or encoding
+ * any records. Sizes assume every string and bytes value, array and map has the lengths set in
+ * {@link PerformanceBudgetConfig}, and that every union branch is equally likely. The decode cost counts the values
+ * read from the wire, with strings and map entries counting twice for the allocation they need and each record and
+ * union counting once on top of its contents; it is only meant for ranking schemas against each other.
+ * <p>
+ * A recursive reference to a record that is already being walked counts as absent, as it is in the record it ends.
+ */
+public class SchemaCost {
+
+    private static final double INT_BYTES = 3;
+    private static final double LONG_BYTES = 6;
+
+    private final String name;
+    private final double encodedBytes;
+    private final double decodeCost;
+    private final int nestingDepth;
+    private final int maxUnionBranches;
+    private final int fieldCount;
+    private final int optionalFieldCount;
+
+    private SchemaCost(String name, double encodedBytes, double decodeCost, int nestingDepth, int maxUnionBranches, int fieldCount, int optionalFieldCount) {
+        this.name = name;
+        this.encodedBytes = encodedBytes;
+        this.decodeCost = decodeCost;
+        this.nestingDepth = nestingDepth;
+        this.maxUnionBranches = maxUnionBranches;
+        this.fieldCount = fieldCount;
+        this.optionalFieldCount = optionalFieldCount;
+    }
+
+    /**
+     * Estimates the cost of a single schema, without remembering anything for later schemas.
+     *
+     * @param name the local name of the item the schema belongs to
+     */
+    public static SchemaCost estimate(String name, Schema schema, PerformanceBudgetConfig config) {
+        return new Estimator(config).estimate(name, schema);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    public double getDecodeCost() {
+        return decodeCost;
+    }
+
+    public int getNestingDepth() {
+        return nestingDepth;
+    }
+
+    public int getMaxUnionBranches() {
+        return maxUnionBranches;
+    }
+
+    // fields of every record reachable from the schema, counted once per place they are used
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public double getOptionalFieldRatio() {
+        return fieldCount == 0 ? 0 : (double) optionalFieldCount / fieldCount;
+    }
+
+    /**
+     * Describes every threshold of the budget the schema is over, e.g. "nesting depth 9 is over 6", or returns an
+     * empty list if it is within budget.
+     */
+    public List<String> getBudgetViolations(PerformanceBudgetConfig budget) {
+        List<String> violations = new ArrayList<>();
+        if(encodedBytes > budget.getMaxEncodedBytes()) {
+            violations.add(String.format("estimated encoded size %.0f bytes is over %.0f", encodedBytes, budget.getMaxEncodedBytes()));
+        }
+        if(decodeCost > budget.getMaxDecodeCost()) {
+            violations.add(String.format("estimated decode cost %.0f is over %.0f", decodeCost, budget.getMaxDecodeCost()));
+        }
+        if(nestingDepth > budget.getMaxNestingDepth()) {
+            violations.add(String.format("nesting depth %d is over %d", nestingDepth, budget.getMaxNestingDepth()));
+        }
+        if(maxUnionBranches > budget.getMaxUnionBranches()) {
+            violations.add(String.format("union of %d branches is over %d", maxUnionBranches, budget.getMaxUnionBranches()));
+        }
+        if(getOptionalFieldRatio() > budget.getMaxOptionalFieldRatio()) {
+            violations.add(String.format("optional field ratio %.2f is over %.2f", getOptionalFieldRatio(), budget.getMaxOptionalFieldRatio()));
+        }
+        return violations;
+    }
+
+    /**
+     * Estimates the cost of schemas with the same assumptions, remembering the estimate of every record that is not
+     * recursive, so a record shared between schemas, such as {@code example.common.Meta}, is walked once. Records are
+     * remembered by their definition, as Schema.equals compares them, which covers everything an estimate depends on.
+     * Estimators can be used from several threads at once.
+     */
+    public static class Estimator {
+        private final int stringBytes;
+        private final int collectionSize;
+        private final Map<Schema, Estimate> records;
+
+        public Estimator(PerformanceBudgetConfig config) {
+            this(config, new ConcurrentHashMap<>());
+        }
+
+        /**
+         * @param maxRecords how many record estimates are kept before the least recently used ones are evicted
+         */
+        public Estimator(PerformanceBudgetConfig config, int maxRecords) {
+            this(config, CacheBuilder.newBuilder().maximumSize(maxRecords).<Schema, Estimate>build().asMap());
+        }
+
+        private Estimator(PerformanceBudgetConfig config, Map<Schema, Estimate> records) {
+            this.stringBytes = config.getAssumedStringBytes();
+            this.collectionSize = config.getAssumedCollectionSize();
+            this.records = records;
+        }
+
+        /**
+         * @param name the local name of the item the schema belongs to
+         */
+        public SchemaCost estimate(String name, Schema schema) {
+            Estimate estimate = estimate(schema, new HashSet<>());
+            return new SchemaCost(name, estimate.bytes, estimate.cost, estimate.depth, estimate.unionBranches, estimate.fields, estimate.optionalFields);
+        }
+
+        /**
+         * @return how many record estimates are remembered
+         */
+        public int getRecordCount() {
+            return records.size();
+        }
+
+        /**
+         * @param recordsBeingWalked the full names of the records the schema is nested in
+         */
+        private Estimate estimate(Schema schema, Set<String> recordsBeingWalked) {
+            switch(schema.getType()) {
+                case NULL:
+                    return Estimate.NOTHING;
+                case BOOLEAN:
+                case ENUM:
+                    return Estimate.of(1, 1);
+                case INT:
+                    return Estimate.of(INT_BYTES, 1);
+                case LONG:
+                    return Estimate.of(LONG_BYTES, 1);
+                case FLOAT:
+                    return Estimate.of(4, 1);
+                case DOUBLE:
+                    return Estimate.of(8, 1);
+                case FIXED:
+                    return Estimate.of(schema.getFixedSize(), 1);
+                case STRING:
+                case BYTES:
+                    return Estimate.of(1 + stringBytes, 2);
+                case UNION:
+                    Estimate branches = Estimate.NOTHING;
+                    for(Schema branch : schema.getTypes()) {
+                        branches = branches.plus(estimate(branch, recordsBeingWalked));
+                    }
+                    int size = schema.getTypes().size();
+                    return new Estimate(1 + branches.bytes / size, 1 + branches.cost / size, branches.depth,
+                            Math.max(size, branches.unionBranches), branches.fields, branches.optionalFields, branches.recursive);
+                case ARRAY:
+                    Estimate element = estimate(schema.getElementType(), recordsBeingWalked);
+                    return element.nested(2 + collectionSize * element.bytes, 1 + collectionSize * element.cost);
+                case MAP:
+                    Estimate value = estimate(schema.getValueType(), recordsBeingWalked);
+                    return value.nested(2 + collectionSize * (1 + stringBytes + value.bytes), 1 + collectionSize * (2 + 2 + value.cost));
+                case RECORD:
+                    Estimate known = records.get(schema);
+                    if(known != null) {
+                        return known;
+                    }
+                    if(!recordsBeingWalked.add(schema.getFullName())) {
+                        return Estimate.RECURSION;
+                    }
+                    Estimate fields = Estimate.NOTHING;
+                    int optionalFields = 0;
+                    for(Schema.Field field : schema.getFields()) {
+                        if(isOptional(field.schema())) {
+                            optionalFields++;
+                        }
+                        fields = fields.plus(estimate(field.schema(), recordsBeingWalked));
+                    }
+                    recordsBeingWalked.remove(schema.getFullName());
+                    Estimate record = new Estimate(fields.bytes, 1 + fields.cost, fields.depth + 1, fields.unionBranches,
+                            schema.getFields().size() + fields.fields, optionalFields + fields.optionalFields, fields.recursive);
+                    // a recursive record's estimate depends on where the walk reached it from
+                    if(!record.recursive) {
+                        records.put(schema, record);
+                    }
+                    return record;
+                default:
+                    throw new IllegalArgumentException("Unknown schema type " + schema.getType());
+            }
+        }
+
+        private static boolean isOptional(Schema schema) {
+            return schema.getType() == Schema.Type.UNION && schema.getTypes().stream().anyMatch(type -> type.getType() == Schema.Type.NULL);
+        }
+    }
+
+    /**
+     * The estimate of a schema and everything nested in it.
+     */
+    private static class Estimate {
+        private static final Estimate NOTHING = of(0, 0);
+        // a reference to a record that is already being walked
+        private static final Estimate RECURSION = new Estimate(0, 0, 0, 0, 0, 0, true);
+
+        private final double bytes;
+        private final double cost;
+        // nesting of records, arrays and maps, counting the schema itself
+        private final int depth;
+        private final int unionBranches;
+        // fields of every record nested in the schema, counted once per place they are used
+        private final int fields;
+        private final int optionalFields;
+        // whether a recursive reference was cut short somewhere in the schema
+        private final boolean recursive;
+
+        Estimate(double bytes, double cost, int depth, int unionBranches, int fields, int optionalFields, boolean recursive) {
+            this.bytes = bytes;
+            this.cost = cost;
+            this.depth = depth;
+            this.unionBranches = unionBranches;
+            this.fields = fields;
+            this.optionalFields = optionalFields;
+            this.recursive = recursive;
+        }
+
+        static Estimate of(double bytes, double cost) {
+            return new Estimate(bytes, cost, 0, 0, 0, 0, false);
+        }
+
+        /**
+         * Adds up two schemas read one after the other, like the fields of a record.
+         */
+        Estimate plus(Estimate other) {
+            return new Estimate(bytes + other.bytes, cost + other.cost, Math.max(depth, other.depth), Math.max(unionBranches, other.unionBranches),
+                    fields + other.fields, optionalFields + other.optionalFields, recursive || other.recursive);
+        }
+
+        /**
+         * Wraps the schema in an array or map of the given size and cost.
+         */
+        Estimate nested(double bytes, double cost) {
+            return new Estimate(bytes, cost, depth + 1, unionBranches, fields, optionalFields, recursive);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.chasdevs.events.services.performance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.chasdevs.events.config.LocalRepoConfig;
+import com.github.chasdevs.events.config.PerformanceBudgetConfig;
+import com.github.chasdevs.events.services.repo.RepoItem;
+import com.github.chasdevs.events.services.repo.RepoService;
+import com.github.chasdevs.events.services.repo.RepoServiceException;
+import com.github.chasdevs.events.util.ParallelUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Estimates the cost of every schema in the local repo (see {@link SchemaCost}) and ranks them, costliest to decode
+ * first, so the schemas that will hurt producers and consumers most stand out before they ship. Schemas are parsed and
+ * estimated in parallel, with as many threads as validation uses, and records shared between them are walked once.
+ */
+@Service
+public class SchemaCostAnalyzer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final RepoService repoService;
+    private final PerformanceBudgetConfig budget;
+    private final int parallelism;
+
+    @Autowired
+    public SchemaCostAnalyzer(RepoService repoService, PerformanceBudgetConfig budget, LocalRepoConfig localRepoConfig) {
+        this.repoService = repoService;
+        this.budget = budget;
+        this.parallelism = localRepoConfig.getValidationParallelism();
+    }
+
+    public Report analyze() throws RepoServiceException {
+        return analyze(repoService.listAll());
+    }
+
+    public Report analyze(Collection<RepoItem> items) {
+        Map<String, SchemaCost> costs = new ConcurrentHashMap<>();
+        Map<String, String> errors = new ConcurrentHashMap<>();
+        SchemaCost.Estimator estimator = new SchemaCost.Estimator(budget);
+        ParallelUtil.forEach(items, parallelism, item -> {
+            try {
+                costs.put(item.getName(), estimator.estimate(item.getName(), repoService.getSchema(item)));
+            } catch (RepoServiceException e) {
+                errors.put(item.getName(), e.getMessage());
+            }
+        });
+        List<SchemaCost> ranked = costs.values().stream()
+                .sorted(Comparator.comparingDouble(SchemaCost::getDecodeCost).reversed()
+                        .thenComparing(Comparator.comparingDouble(SchemaCost::getEncodedBytes).reversed())
+                        .thenComparing(SchemaCost::getName))
+                .collect(Collectors.toList());
+        return new Report(ranked, new TreeMap<>(errors), budget);
+    }
+
+    public static class Report {
+        private final List<SchemaCost> ranked;
+        private final Map<String, String> errors;
+        private final PerformanceBudgetConfig budget;
+
+        Report(List<SchemaCost> ranked, Map<String, String> errors, PerformanceBudgetConfig budget) {
+            this.ranked = Collections.unmodifiableList(ranked);
+            this.errors = Collections.unmodifiableMap(errors);
+            this.budget = budget;
+        }
+
+        // costliest to decode first
+        public List<SchemaCost> getRanked() {
+            return ranked;
+        }
+
+        // schemas that could not be parsed, by name
+        public Map<String, String> getErrors() {
+            return errors;
+        }
+
+        public List<SchemaCost> getOverBudget() {
+            return ranked.stream().filter(cost -> !cost.getBudgetViolations(budget).isEmpty()).collect(Collectors.toList());
+        }
+
+        /**
+         * Renders the costliest schemas as a table, followed by any schemas that could not be analyzed.
+         *
+         * @param limit how many schemas to list at most
+         */
+        public String toString(int limit) {
+            StringBuilder sb = new StringBuilder(String.format("%4s %-50s %9s %9s %5s %6s %6s %6s  %s",
+                    "rank", "schema", "bytes", "decode", "depth", "union", "fields", "opt%", "budget"));
+            for(int i = 0; i < Math.min(limit, ranked.size()); i++) {
+                SchemaCost cost = ranked.get(i);
+                List<String> violations = cost.getBudgetViolations(budget);
+                sb.append(String.format("%n%4d %-50s %9.0f %9.0f %5d %6d %6d %6.0f  %s", i + 1, cost.getName(), cost.getEncodedBytes(),
+                        cost.getDecodeCost(), cost.getNestingDepth(), cost.getMaxUnionBranches(), cost.getFieldCount(),
+                        cost.getOptionalFieldRatio() * 100, violations.isEmpty() ? "ok" : String.join("; ", violations)));
+            }
+            sb.append(String.format("%n%d schema(s) analyzed, %d over budget", ranked.size(), getOverBudget().size()));
+            errors.forEach((name, error) -> sb.append(String.format("%n%s could not be analyzed: %s", name, error)));
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return toString(ranked.size());
+        }
+
+        public String toJson(int limit) throws IOException {
+            ObjectNode root = MAPPER.createObjectNode();
+            ArrayNode schemas = root.putArray("schemas");
+            for(SchemaCost cost : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                ObjectNode node = schemas.addObject();
+                node.put("schema", cost.getName());
+                node.put("encodedBytes", cost.getEncodedBytes());
+                node.put("decodeCost", cost.getDecodeCost());
+                node.put("nestingDepth", cost.getNestingDepth());
+                node.put("maxUnionBranches", cost.getMaxUnionBranches());
+                node.put("fieldCount", cost.getFieldCount());
+                node.put("optionalFieldRatio", cost.getOptionalFieldRatio());
+                ArrayNode violations = node.putArray("budgetViolations");
+                cost.getBudgetViolations(budget).forEach(violations::add);
+            }
+            ObjectNode errorsNode = root.putObject("errors");
+            errors.forEach(errorsNode::put);
+            return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        }
+    }
+}
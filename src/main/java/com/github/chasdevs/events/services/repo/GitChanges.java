@@ -0,0 +1,87 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.util.Constants;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the IDL files that changed since a git ref by reading the {@code .git} directory the repo lives in, without
+ * needing a git executable. Changes are taken from where the current branch forked off the ref, the way a pull request
+ * shows them, up to the working tree, so committed, uncommitted and untracked changes all count.
+ */
+public class GitChanges {
+
+    /**
+     * @param directory any directory within the git working tree
+     * @param ref a branch, tag or commit, e.g. origin/master
+     * @return the absolute paths of the IDL files that were added, modified, renamed or deleted since the ref
+     */
+    public static Set<Path> getChangedFiles(Path directory, String ref) throws RepoServiceException {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(directory.toAbsolutePath().toFile());
+        if(builder.getGitDir() == null) {
+            throw new RepoServiceException(String.format("%s is not within a git repository", directory));
+        }
+        try(Repository repository = builder.setMustExist(true).build(); Git git = new Git(repository)) {
+            ObjectId since = repository.resolve(ref);
+            if(since == null) {
+                throw new RepoServiceException(String.format("Unknown git ref %s", ref));
+            }
+            Path workTree = repository.getWorkTree().toPath().toAbsolutePath().normalize();
+            Set<Path> changedFiles = new TreeSet<>();
+            CanonicalTreeParser baseTree = new CanonicalTreeParser();
+            try(RevWalk walk = new RevWalk(repository); ObjectReader reader = repository.newObjectReader()) {
+                baseTree.reset(reader, getForkPoint(repository, walk, since).getTree());
+            }
+            for(DiffEntry entry : git.diff().setOldTree(baseTree).setPathFilter(PathSuffixFilter.create(Constants.AVDL_EXTENSION)).call()) {
+                addPath(changedFiles, workTree, entry.getOldPath());
+                addPath(changedFiles, workTree, entry.getNewPath());
+            }
+            for(String untracked : git.status().call().getUntracked()) {
+                if(untracked.endsWith(Constants.AVDL_EXTENSION)) {
+                    addPath(changedFiles, workTree, untracked);
+                }
+            }
+            return changedFiles;
+        } catch (IOException | GitAPIException e) {
+            throw new RepoServiceException(String.format("Could not read the changes since %s from git: %s", ref, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns where HEAD forked off the given commit, so that changes made on the ref since then are not counted, or the
+     * commit itself if the two share no history.
+     */
+    private static RevCommit getForkPoint(Repository repository, RevWalk walk, ObjectId since) throws IOException {
+        RevCommit sinceCommit = walk.parseCommit(since);
+        ObjectId head = repository.resolve(org.eclipse.jgit.lib.Constants.HEAD);
+        if(head == null) {
+            return sinceCommit;
+        }
+        walk.setRevFilter(RevFilter.MERGE_BASE);
+        walk.markStart(sinceCommit);
+        walk.markStart(walk.parseCommit(head));
+        RevCommit forkPoint = walk.next();
+        return forkPoint != null ? walk.parseCommit(forkPoint) : sinceCommit;
+    }
+
+    private static void addPath(Set<Path> changedFiles, Path workTree, String path) {
+        if(!DiffEntry.DEV_NULL.equals(path)) {
+            changedFiles.add(workTree.resolve(path).normalize());
+        }
+    }
+}
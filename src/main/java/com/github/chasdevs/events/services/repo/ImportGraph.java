@@ -0,0 +1,109 @@
+package com.github.chasdevs.events.services.repo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * Which IDL files import which, kept in both directions so that the files affected by a change can be found without
+ * re-reading the repo. Paths are stored absolute and normalized, the same way {@link ParsedProtocolCache} keys them.
+ * <p>
+ * The graph is updated one file at a time, so keeping it current only costs a re-read of the files that changed.
+ */
+public class ImportGraph {
+
+    private final Map<Path, Set<Path>> importsByFile = new HashMap<>();
+    private final Map<Path, Set<Path>> importersByFile = new HashMap<>();
+    private final Map<Path, FileTime> lastModifiedByFile = new HashMap<>();
+
+    /**
+     * Re-reads the imports of the file, or drops the file from the graph if it no longer exists. Files importing a
+     * deleted file keep their edge to it, so they are still found as its dependents.
+     */
+    public synchronized void update(Path file) throws IOException {
+        Path key = normalize(file);
+        removeEdges(key);
+        lastModifiedByFile.remove(key);
+        if(!Files.isRegularFile(key)) {
+            return;
+        }
+        lastModifiedByFile.put(key, Files.readAttributes(key, BasicFileAttributes.class).lastModifiedTime());
+        Set<Path> imports = new LinkedHashSet<>(ParsedProtocolCache.getImports(key));
+        importsByFile.put(key, imports);
+        for(Path imported : imports) {
+            importersByFile.computeIfAbsent(imported, i -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Brings the graph in line with the given set of files: files that are new or were modified since they were last
+     * read are re-read, and files no longer in the set are dropped.
+     *
+     * @param files every file that should be part of the graph
+     */
+    public synchronized void refresh(Collection<Path> files) throws IOException {
+        Set<Path> keys = new HashSet<>();
+        for(Path file : files) {
+            Path key = normalize(file);
+            keys.add(key);
+            FileTime lastModified = Files.isRegularFile(key) ? Files.readAttributes(key, BasicFileAttributes.class).lastModifiedTime() : null;
+            if(lastModified == null || !lastModified.equals(lastModifiedByFile.get(key))) {
+                update(key);
+            }
+        }
+        for(Path key : new ArrayList<>(importsByFile.keySet())) {
+            if(!keys.contains(key)) {
+                removeEdges(key);
+                lastModifiedByFile.remove(key);
+            }
+        }
+    }
+
+    public synchronized Set<Path> getImports(Path file) {
+        return new LinkedHashSet<>(importsByFile.getOrDefault(normalize(file), Collections.emptySet()));
+    }
+
+    /**
+     * @return every file that imports the given file, directly or through other imports, not including the file itself
+     */
+    public synchronized Set<Path> getDependents(Path file) {
+        Path start = normalize(file);
+        Set<Path> dependents = new TreeSet<>();
+        Deque<Path> toVisit = new ArrayDeque<>(Collections.singleton(start));
+        while(!toVisit.isEmpty()) {
+            for(Path importer : importersByFile.getOrDefault(toVisit.pop(), Collections.emptySet())) {
+                if(!importer.equals(start) && dependents.add(importer)) {
+                    toVisit.push(importer);
+                }
+            }
+        }
+        return dependents;
+    }
+
+    public synchronized int size() {
+        return importsByFile.size();
+    }
+
+    private void removeEdges(Path key) {
+        Set<Path> previousImports = importsByFile.remove(key);
+        if(previousImports == null) {
+            return;
+        }
+        for(Path imported : previousImports) {
+            Set<Path> importers = importersByFile.get(imported);
+            if(importers != null) {
+                importers.remove(key);
+                if(importers.isEmpty()) {
+                    importersByFile.remove(imported);
+                }
+            }
+        }
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -0,0 +1,276 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.util.AvroParser;
+import com.github.chasdevs.events.util.MetricsUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Schema;
+import org.apache.avro.compiler.idl.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of parsed Avro IDL protocols keyed by file path. Each entry remembers the content stamp (size and last modified
+ * time) of the file and of every file it imports, so an entry is reused until any of those files change. Parse failures
+ * are cached the same way, so an invalid file is not re-parsed by every check that touches it.
+ * <p>
+ * The cache is safe to share between threads and lives as long as its owning {@link RepoService}, which means it is
+ * shared across commands within the interactive shell.
+ */
+public class ParsedProtocolCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsedProtocolCache.class);
+
+    private static final Pattern IMPORT_PATTERN = Pattern.compile("import\\s+(?:idl|protocol|schema)\\s+\"([^\"]+)\"\\s*;");
+
+    // shared by every instance, so the meters add up all of them rather than following whichever was created first
+    private static final Counter HIT_COUNTER = Metrics.counter(MetricsUtil.PARSE_CACHE, "result", "hit");
+    private static final Counter MISS_COUNTER = Metrics.counter(MetricsUtil.PARSE_CACHE, "result", "miss");
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public Protocol get(Path pathToIdl) throws IOException, ParseException {
+        Path key = pathToIdl.toAbsolutePath().normalize();
+        Entry entry = entries.get(key);
+        if(entry != null && entry.isCurrent()) {
+            hits.incrementAndGet();
+            HIT_COUNTER.increment();
+        } else {
+            misses.incrementAndGet();
+            MISS_COUNTER.increment();
+            LOGGER.debug("Parsing {}", key);
+            entry = parse(key);
+            entries.put(key, entry);
+        }
+        return entry.getProtocol();
+    }
+
+    /**
+     * Returns a key for the declaration of each named type in the file's protocol, by full name. A type declared in a
+     * file imported by several items, such as {@code example.common.Meta}, gets equal keys for every item importing the
+     * same version of that file, although each item's protocol has a copy of the type of its own; types declared in
+     * different files, or in different versions of a file, never do. Only files already in the cache are looked at, so
+     * a type whose declaring file has not been parsed yet is put down to the file that imports it, which at worst means
+     * it is not recognised as shared.
+     *
+     * @return the keys, or an empty map if the file is not in the cache or could not be parsed
+     */
+    public Map<String, Object> getDeclarations(Path pathToIdl) {
+        Path key = pathToIdl.toAbsolutePath().normalize();
+        Entry entry = entries.get(key);
+        if(entry == null || entry.protocol == null) {
+            return Collections.emptyMap();
+        }
+        return entry.getDeclarations(key, entries);
+    }
+
+    public void invalidate(Path pathToIdl) {
+        entries.remove(pathToIdl.toAbsolutePath().normalize());
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Parsed schema cache: %d files, %d hits, %d misses", size(), getHitCount(), getMissCount());
+    }
+
+    private Entry parse(Path pathToIdl) throws IOException {
+        // stamps are taken before parsing so that a file changing mid-parse is picked up on the next lookup
+        Map<Path, FileStamp> stamps = new HashMap<>();
+        collectStamps(pathToIdl, stamps);
+        try {
+            return new Entry(AvroParser.protocolFromIdl(pathToIdl), null, stamps);
+        } catch (ParseException | AvroRuntimeException e) {
+            return new Entry(null, e, stamps);
+        }
+    }
+
+    private void collectStamps(Path path, Map<Path, FileStamp> stamps) throws IOException {
+        if(stamps.containsKey(path)) {
+            return;
+        }
+        // a missing import is stamped too, so creating it later invalidates the entry
+        stamps.put(path, FileStamp.of(path));
+        if(!Files.isRegularFile(path)) {
+            return;
+        }
+        for(Path imported : getImports(path)) {
+            collectStamps(imported, stamps);
+        }
+    }
+
+    /**
+     * Returns the files directly imported by the given IDL file, resolved the same way the IDL compiler resolves them
+     * (relative to the importing file's directory).
+     */
+    static List<Path> getImports(Path pathToIdl) throws IOException {
+        List<Path> imports = new ArrayList<>();
+        Matcher matcher = IMPORT_PATTERN.matcher(Files.readString(pathToIdl));
+        while(matcher.find()) {
+            imports.add(pathToIdl.getParent().resolve(matcher.group(1)).toAbsolutePath().normalize());
+        }
+        return imports;
+    }
+
+    private static class Entry {
+
+        private final Protocol protocol;
+        private final Exception failure;
+        private final Map<Path, FileStamp> stamps;
+        private volatile Map<String, Object> declarations;
+
+        Entry(Protocol protocol, Exception failure, Map<Path, FileStamp> stamps) {
+            this.protocol = protocol;
+            this.failure = failure;
+            this.stamps = stamps;
+        }
+
+        Protocol getProtocol() throws ParseException {
+            if(failure instanceof ParseException) {
+                throw (ParseException) failure;
+            } else if(failure != null) {
+                throw (AvroRuntimeException) failure;
+            }
+            return protocol;
+        }
+
+        Map<String, Object> getDeclarations(Path path, Map<Path, Entry> entries) {
+            if(declarations == null) {
+                // the file itself and every file it imports that was parsed from the same version this entry was
+                List<Entry> candidates = new ArrayList<>();
+                for(Path stamped : stamps.keySet()) {
+                    Entry candidate = stamped.equals(path) ? this : entries.get(stamped);
+                    if(candidate != null && candidate.protocol != null && stamps.entrySet().containsAll(candidate.stamps.entrySet())) {
+                        candidates.add(candidate);
+                    }
+                }
+                Map<String, Object> declarations = new HashMap<>();
+                for(Schema type : protocol.getTypes()) {
+                    // every file with the type either declares it or imports the one that does, along with all its imports
+                    Entry declaring = this;
+                    for(Entry candidate : candidates) {
+                        if(candidate.stamps.size() < declaring.stamps.size() && candidate.protocol.getType(type.getFullName()) != null) {
+                            declaring = candidate;
+                        }
+                    }
+                    declarations.put(type.getFullName(), new Declaration(type.getFullName(), declaring));
+                }
+                this.declarations = declarations;
+            }
+            return declarations;
+        }
+
+        boolean isCurrent() {
+            for(Map.Entry<Path, FileStamp> stamp : stamps.entrySet()) {
+                if(!stamp.getValue().matches(stamp.getKey())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A named type as declared in one parse of one file.
+     */
+    private static class Declaration {
+
+        private final String fullName;
+        private final Entry declaredIn;
+
+        Declaration(String fullName, Entry declaredIn) {
+            this.fullName = fullName;
+            this.declaredIn = declaredIn;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof Declaration)) {
+                return false;
+            }
+            Declaration that = (Declaration) o;
+            return declaredIn == that.declaredIn && fullName.equals(that.fullName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(declaredIn) + fullName.hashCode();
+        }
+    }
+
+    private static class FileStamp {
+
+        private static final FileStamp ABSENT = new FileStamp(-1, FileTime.fromMillis(0));
+
+        private final long size;
+        private final FileTime lastModified;
+
+        private FileStamp(long size, FileTime lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        static FileStamp of(Path path) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new FileStamp(attributes.size(), attributes.lastModifiedTime());
+            } catch (IOException e) {
+                return ABSENT;
+            }
+        }
+
+        boolean matches(Path path) {
+            return equals(of(path));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp that = (FileStamp) o;
+            return size == that.size && lastModified.equals(that.lastModified);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.util.Constants;
+import com.github.chasdevs.events.util.MetricsUtil;
+import com.github.chasdevs.events.util.NamingUtil;
+import com.github.chasdevs.events.util.PrefixIndex;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Index of every item in the local repo, persisted to a file in the repo root so that a new process does not need to
+ * walk the whole tree to find an item.
+ * <p>
+ * The index records the last modified time of every directory it has seen. On refresh, only directories whose last
+ * modified time has changed (i.e. entries were added, removed or renamed) are listed again, and only newly discovered
+ * subdirectories are walked. Lookups by name are served from an in-memory map, and completions of a partly typed name
+ * from a {@link PrefixIndex} over the names.
+ * <p>
+ * The index file is written to a temporary file and moved into place, which changes the stamp of the directory it is
+ * in. That directory is still listed again when its stamp changes, but only rewrites the index if its entries did.
+ */
+public class RepoIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepoIndex.class);
+
+    private static final String HEADER = "# events repo index v2";
+    private static final String DIRECTORY_RECORD = "D";
+    private static final String FILE_RECORD = "F";
+    private static final Path ROOT = Path.of("");
+
+    private final Path rootRepoPath;
+    @Nullable
+    private final Path indexFile;
+    // the directory the index file is in, relative to the repo root, or null if it is outside the repo
+    @Nullable
+    private final Path indexDirectory;
+
+    private final Map<Path, FileTime> directoryStamps = new HashMap<>();
+    private final Map<Path, Entry> entriesByPath = new HashMap<>();
+    private Map<String, Entry> entriesByName = new HashMap<>();
+    private PrefixIndex names = PrefixIndex.empty();
+
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * @param rootRepoPath root of the local repo
+     * @param indexFile file to persist the index to, or null to keep the index in memory only
+     */
+    public RepoIndex(Path rootRepoPath, @Nullable Path indexFile) {
+        this.rootRepoPath = rootRepoPath;
+        this.indexFile = indexFile;
+        Path absoluteRoot = rootRepoPath.toAbsolutePath().normalize();
+        Path absoluteIndexDirectory = indexFile == null ? null : indexFile.toAbsolutePath().normalize().getParent();
+        this.indexDirectory = absoluteIndexDirectory != null && absoluteIndexDirectory.startsWith(absoluteRoot)
+                ? absoluteRoot.relativize(absoluteIndexDirectory)
+                : null;
+    }
+
+    /**
+     * Returns the item with the given name (case insensitive). Items already in the index are returned without
+     * touching the file system beyond confirming the file still exists; anything else triggers a refresh first.
+     */
+    @Nullable
+    public synchronized RepoItem find(String name) throws IOException {
+        if(!loaded) {
+            refresh();
+        }
+        Entry entry = entriesByName.get(name.toLowerCase());
+        if(entry == null || !Files.isRegularFile(rootRepoPath.resolve(entry.relativePath))) {
+            refresh();
+            entry = entriesByName.get(name.toLowerCase());
+        }
+        return entry == null ? null : toRepoItem(entry);
+    }
+
+    public synchronized List<RepoItem> list(RepoItemType repoItemType) throws IOException {
+        refresh();
+        return entriesByPath.values().stream()
+                .filter(entry -> entry.repoItemType == repoItemType)
+                .sorted(Comparator.comparing(entry -> entry.relativePath.toString()))
+                .map(this::toRepoItem)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the names of the items starting with the given prefix (case insensitive), in alphabetical order. The index
+     * is refreshed first, which only lists directories again if entries were added, removed or renamed in them, and
+     * otherwise costs a single stat per directory.
+     */
+    public synchronized List<String> complete(String prefix) throws IOException {
+        refresh();
+        return names.startingWith(prefix);
+    }
+
+    /**
+     * Brings the index up to date with the file system by re-listing only the directories that have changed. The time
+     * this takes is recorded as {@link MetricsUtil#REPO_SCAN}, tagged with whether anything had changed.
+     */
+    public synchronized void refresh() throws IOException {
+        if(!loaded) {
+            load();
+            loaded = true;
+        }
+        Timer.Sample sample = MetricsUtil.start();
+        String outcome = MetricsUtil.FAILURE;
+        boolean changed = false;
+        try {
+            if(!directoryStamps.containsKey(ROOT)) {
+                scanDirectory(ROOT, true);
+                changed = true;
+            }
+            for(Path directory : new ArrayList<>(directoryStamps.keySet())) {
+                if(!directoryStamps.containsKey(directory)) {
+                    continue; // removed while handling an earlier directory
+                }
+                BasicFileAttributes attributes = stamp(rootRepoPath.resolve(directory));
+                if(attributes == null || !attributes.isDirectory()) {
+                    removeDirectory(directory);
+                    changed = true;
+                } else if(!attributes.lastModifiedTime().equals(directoryStamps.get(directory))) {
+                    // moving the index file into place is not a change worth writing the index for
+                    if(scanDirectory(directory, false) || !directory.equals(indexDirectory)) {
+                        changed = true;
+                    }
+                }
+            }
+            outcome = MetricsUtil.SUCCESS;
+        } finally {
+            MetricsUtil.stop(sample, MetricsUtil.REPO_SCAN, "changed", String.valueOf(changed), MetricsUtil.OUTCOME, outcome);
+        }
+        if(changed) {
+            buildNameIndex();
+            dirty = true;
+        }
+        flush();
+    }
+
+    /**
+     * Persists the index if anything has changed since it was last written.
+     */
+    public synchronized void flush() {
+        if(!dirty || indexFile == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        directoryStamps.entrySet().stream()
+                .sorted(Comparator.comparing(e -> e.getKey().toString()))
+                .forEach(e -> lines.add(String.join("\t", DIRECTORY_RECORD, e.getKey().toString(), e.getValue().toInstant().toString())));
+        entriesByPath.values().stream()
+                .sorted(Comparator.comparing(e -> e.relativePath.toString()))
+                .forEach(e -> lines.add(String.join("\t", FILE_RECORD, e.repoItemType.getLabel(), e.relativePath.toString(),
+                        String.valueOf(e.size), e.lastModified.toInstant().toString())));
+        try {
+            Path parent = indexFile.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+            Files.write(temp, lines);
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            if(indexDirectory != null && directoryStamps.containsKey(indexDirectory)) {
+                // so that this process does not list the directory again only because of the move
+                directoryStamps.put(indexDirectory, Files.getLastModifiedTime(parent));
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not write repo index to " + indexFile, e);
+        }
+    }
+
+    private void load() {
+        if(indexFile == null || !Files.isRegularFile(indexFile)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(indexFile);
+            if(lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+                LOGGER.debug("Ignoring repo index {} with an unknown format", indexFile);
+                return;
+            }
+            for(String line : lines.subList(1, lines.size())) {
+                String[] parts = line.split("\t");
+                if(DIRECTORY_RECORD.equals(parts[0])) {
+                    directoryStamps.put(Path.of(parts[1]), FileTime.from(Instant.parse(parts[2])));
+                } else if(FILE_RECORD.equals(parts[0])) {
+                    Entry entry = new Entry(getRepoItemType(parts[1]), Path.of(parts[2]));
+                    entry.size = Long.parseLong(parts[3]);
+                    entry.lastModified = FileTime.from(Instant.parse(parts[4]));
+                    entriesByPath.put(entry.relativePath, entry);
+                }
+            }
+            buildNameIndex();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.debug("Could not read repo index from " + indexFile + ", rebuilding it", e);
+            directoryStamps.clear();
+            entriesByPath.clear();
+            entriesByName = new HashMap<>();
+            names = PrefixIndex.empty();
+        }
+    }
+
+    /**
+     * @return whether any item or subdirectory was added, removed or changed
+     */
+    private boolean scanDirectory(Path directory, boolean recursive) throws IOException {
+        Path absoluteDirectory = rootRepoPath.resolve(directory);
+        directoryStamps.put(directory, Files.getLastModifiedTime(absoluteDirectory));
+        boolean changed = false;
+        Set<Path> seenFiles = new HashSet<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(absoluteDirectory)) {
+            for(Path child : children) {
+                Path relativeChild = rootRepoPath.relativize(child);
+                if(Files.isDirectory(child)) {
+                    if(recursive || !directoryStamps.containsKey(relativeChild)) {
+                        scanDirectory(relativeChild, true);
+                        changed = true;
+                    }
+                } else if(child.getFileName().toString().endsWith(Constants.AVDL_EXTENSION)) {
+                    RepoItemType repoItemType = getRepoItemType(relativeChild);
+                    if(repoItemType != null) {
+                        seenFiles.add(relativeChild);
+                        Entry entry = entriesByPath.get(relativeChild);
+                        if(entry == null || entry.repoItemType != repoItemType) {
+                            entry = new Entry(repoItemType, relativeChild);
+                            entriesByPath.put(relativeChild, entry);
+                            changed = true;
+                        }
+                        BasicFileAttributes attributes = stamp(child);
+                        if(attributes != null && !entry.matches(attributes)) {
+                            entry.size = attributes.size();
+                            entry.lastModified = attributes.lastModifiedTime();
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return entriesByPath.keySet().removeIf(path -> directory.equals(parentOf(path)) && !seenFiles.contains(path)) || changed;
+    }
+
+    private void removeDirectory(Path directory) {
+        directoryStamps.keySet().removeIf(path -> isWithin(path, directory));
+        entriesByPath.keySet().removeIf(path -> isWithin(path, directory));
+    }
+
+    private void buildNameIndex() {
+        // the first item for a given name wins, with item types in declaration order, as when walking each type's tree
+        Map<String, Entry> nameIndex = new HashMap<>();
+        entriesByPath.values().stream()
+                .sorted(Comparator.comparing((Entry e) -> e.repoItemType).thenComparing(e -> e.relativePath.toString()))
+                .forEach(e -> nameIndex.putIfAbsent(getItemName(e.relativePath).toLowerCase(), e));
+        entriesByName = nameIndex;
+        names = new PrefixIndex(nameIndex.values().stream().map(e -> getItemName(e.relativePath)).collect(Collectors.toList()));
+    }
+
+    @Nullable
+    private RepoItemType getRepoItemType(Path relativePath) {
+        for(RepoItemType repoItemType : RepoItemType.values()) {
+            Path basePath = ROOT.resolve(repoItemType.getDirectory());
+            boolean excluded = Arrays.stream(repoItemType.getExcludedSubdirectories())
+                    .anyMatch(subdirectory -> isWithin(relativePath, basePath.resolve(subdirectory)));
+            if(isWithin(relativePath, basePath) && !excluded) {
+                return repoItemType;
+            }
+        }
+        return null;
+    }
+
+    private RepoItemType getRepoItemType(String label) {
+        return Arrays.stream(RepoItemType.values())
+                .filter(type -> type.getLabel().equals(label))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown repo item type " + label));
+    }
+
+    private RepoItem toRepoItem(Entry entry) {
+        return new RepoItem(getItemName(entry.relativePath), entry.repoItemType, rootRepoPath.resolve(entry.relativePath));
+    }
+
+    private static String getItemName(Path relativePath) {
+        return NamingUtil.fromFileToSubject(relativePath.getFileName().toString().replace(Constants.AVDL_EXTENSION, ""));
+    }
+
+    private static boolean isWithin(Path relativePath, Path directory) {
+        // the empty path is the repo root, which Path#startsWith does not treat as a prefix of other relative paths
+        return directory.equals(ROOT) || relativePath.startsWith(directory);
+    }
+
+    private static Path parentOf(Path relativePath) {
+        Path parent = relativePath.getParent();
+        return parent == null ? ROOT : parent;
+    }
+
+    @Nullable
+    private static BasicFileAttributes stamp(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Entry {
+
+        private final RepoItemType repoItemType;
+        private final Path relativePath;
+        private long size = -1;
+        private FileTime lastModified = FileTime.fromMillis(0);
+
+        Entry(RepoItemType repoItemType, Path relativePath) {
+            this.repoItemType = repoItemType;
+            this.relativePath = relativePath;
+        }
+
+        boolean matches(@Nullable BasicFileAttributes attributes) {
+            return attributes != null && attributes.size() == size && attributes.lastModifiedTime().equals(lastModified);
+        }
+    }
+}
@@ -2,22 +2,28 @@ package com.github.chasdevs.events.services.repo;
 
 import com.github.chasdevs.events.config.LocalRepoConfig;
 import com.github.chasdevs.events.util.AvroParser;
-import com.github.chasdevs.events.util.Constants;
-import com.github.chasdevs.events.util.FileUtil;
+import com.github.chasdevs.events.util.MetricsUtil;
 import com.github.chasdevs.events.util.NamingUtil;
+import com.github.chasdevs.events.util.ParallelUtil;
+import io.micrometer.core.instrument.Timer;
 import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Schema;
 import org.apache.avro.compiler.idl.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
 /**
@@ -30,21 +36,49 @@ public class RepoService {
 
     private final Path rootRepoPath;
     private final int allowedNamespaceDepth;
+    private final int validationParallelism;
+    private final ParsedProtocolCache protocolCache = new ParsedProtocolCache();
+    private final RepoIndex repoIndex;
+    private final ValidationPipeline validationPipeline;
+    private ImportGraph importGraph;
 
-    @Autowired
     public RepoService(LocalRepoConfig localRepoConfig) {
+        this(localRepoConfig, Collections.emptyList());
+    }
+
+    /**
+     * @param validationRules rules applied when validating, after the built-in ones; see {@link ValidationPipeline}
+     */
+    @Autowired
+    public RepoService(LocalRepoConfig localRepoConfig, ObjectProvider<ValidationRule> validationRules) {
+        this(localRepoConfig, validationRules.orderedStream().collect(Collectors.toList()));
+    }
+
+    public RepoService(LocalRepoConfig localRepoConfig, List<ValidationRule> validationRules) {
         rootRepoPath = Paths.get(localRepoConfig.getRootPath());
         if(Files.notExists(rootRepoPath)) {
             throw new IllegalArgumentException("The provided local repo path " + rootRepoPath + " does not exist.");
         }
         allowedNamespaceDepth = localRepoConfig.getAllowedNamespaceDepth();
+        validationParallelism = localRepoConfig.getValidationParallelism();
+        validationPipeline = new ValidationPipeline(validationRules);
+        String indexFile = localRepoConfig.getIndexFile();
+        repoIndex = new RepoIndex(rootRepoPath, indexFile == null || indexFile.isBlank() ? null : rootRepoPath.resolve(indexFile));
     }
 
     public RepoItem getItem(String name) throws RepoServiceException {
-        return listAll().stream()
-                .filter(item -> item.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElseThrow(() -> new RepoServiceException(String.format("Could not find any schemas with the name %s", name)));
+        RepoItem repoItem;
+        try {
+            repoItem = repoIndex.find(name);
+        } catch (IOException e) {
+            String error = "Could not retrieve local repo listings";
+            LOGGER.debug(error, e.getMessage());
+            throw new RepoServiceException(error, e);
+        }
+        if(repoItem == null) {
+            throw new RepoServiceException(String.format("Could not find any schemas with the name %s", name));
+        }
+        return repoItem;
     }
 
     public List<RepoItem> list(RepoItemType repoItemType) throws RepoServiceException {
@@ -59,6 +93,20 @@ public class RepoService {
         return allItems;
     }
 
+    /**
+     * Returns the names of the items starting with the given prefix, ignoring case, for completing a partly typed name.
+     * Unlike {@link #listAll()}, no item is built for names that do not match.
+     */
+    public List<String> completeNames(String prefix) throws RepoServiceException {
+        try {
+            return repoIndex.complete(prefix);
+        } catch (IOException e) {
+            String error = "Could not retrieve local repo listings";
+            LOGGER.debug(error, e.getMessage());
+            throw new RepoServiceException(error, e);
+        }
+    }
+
     public Schema getSchema(String name) throws RepoServiceException {
         RepoItem repoItem = getItem(name);
         Schema schema = getSchema(repoItem);
@@ -69,91 +117,246 @@ public class RepoService {
         }
     }
 
-    public void validateLocalRepo() throws RepoServiceException{
-        Map<RepoItemType, Map<String, String>> itemsWithValidationErrorsByType = getMapOfValidationErrors();
-        if(!itemsWithValidationErrorsByType.isEmpty()) {
-            throw new RepoServiceException(getPrettyValidationErrorMessage(itemsWithValidationErrorsByType));
+    /**
+     * Like {@link #getSchema(String)}, for an item that has already been looked up, e.g. one of {@link #listAll()}.
+     */
+    public Schema getSchema(RepoItem repoItem) throws RepoServiceException {
+        Schema schema;
+        try {
+            schema = AvroParser.schemaFromProtocol(protocolCache.get(repoItem.getPathToFile()), NamingUtil.fromSubjectToFile(repoItem.getName()));
+        } catch (IOException | ParseException e) {
+            String error = String.format("Could not retrieve or parse schema for %s %s", repoItem.getRepoItemType().getLogLabel(), repoItem.getName());
+            LOGGER.debug(error, e.getMessage());
+            throw new RepoServiceException(error, e);
         }
+        return requireNamedSchema(schema, repoItem);
+    }
+
+    public ValidationSummary validateLocalRepo() throws RepoServiceException{
+        return validateAll(listAll());
+    }
+
+    /**
+     * Validates the named item and every item that imports it, directly or transitively, rather than the whole repo.
+     *
+     * @param name
+     */
+    public ValidationSummary validateImpactOf(String name) throws RepoServiceException {
+        return validateAll(getImpactedItems(name));
+    }
+
+    /**
+     * Validates only the items changed since the git ref and the items importing them, rather than the whole repo.
+     *
+     * @param ref
+     */
+    public ValidationSummary validateChangesSince(String ref) throws RepoServiceException {
+        return validateAll(getItemsChangedSince(ref));
     }
 
     public Map<RepoItemType, Map<String, Schema>> getLocalRepoSchemaMap() throws RepoServiceException {
+        return getLocalRepoSchemaMap(listAll());
+    }
+
+    public Map<RepoItemType, Map<String, Schema>> getLocalRepoSchemaMap(Collection<RepoItem> items) throws RepoServiceException {
         Map<RepoItemType, Map<String, Schema>> repoItemSchemasByItemType = new HashMap<>();
-        for(RepoItemType repoItemType : RepoItemType.values()) {
-            Map<String, Schema> itemSchemas = new HashMap<>();
-            for(RepoItem item : list(repoItemType)) {
-                itemSchemas.put(NamingUtil.fromLocalToRegistrySubject(item.getName()), getSchema(item.getName()));
-            }
-            if(!itemSchemas.isEmpty()) {
-                repoItemSchemasByItemType.put(repoItemType, itemSchemas);
-            }
+        for(RepoItem item : items) {
+            repoItemSchemasByItemType.computeIfAbsent(item.getRepoItemType(), type -> new HashMap<>())
+                    .put(NamingUtil.fromLocalToRegistrySubject(item.getName()), getSchema(item));
         }
+        repoIndex.flush();
         return repoItemSchemasByItemType;
     }
 
+    /**
+     * Returns the named item followed by every item that imports it, directly or transitively, sorted by type and name.
+     * These are all the items whose schema can change when the named item's file changes.
+     *
+     * @param name
+     */
+    public List<RepoItem> getImpactedItems(String name) throws RepoServiceException {
+        RepoItem repoItem = getItem(name);
+        Set<Path> impactedFiles = getImportGraph().getDependents(repoItem.getPathToFile());
+        List<RepoItem> impactedItems = new ArrayList<>();
+        impactedItems.add(repoItem);
+        listAll().stream()
+                .filter(item -> impactedFiles.contains(item.getPathToFile().toAbsolutePath().normalize()))
+                .sorted(Comparator.comparing(RepoItem::getRepoItemType).thenComparing(RepoItem::getName))
+                .forEach(impactedItems::add);
+        return impactedItems;
+    }
+
+    /**
+     * Returns the items whose IDL files changed since the git ref, followed by every item that imports them, sorted by
+     * type and name. Changes are read from the git repository the local repo lives in; see {@link GitChanges}.
+     *
+     * @param ref a branch, tag or commit, e.g. origin/master
+     */
+    public List<RepoItem> getItemsChangedSince(String ref) throws RepoServiceException {
+        Path root = rootRepoPath.toAbsolutePath().normalize();
+        List<Path> changedFiles = GitChanges.getChangedFiles(root, ref).stream()
+                .filter(file -> file.startsWith(root))
+                .collect(Collectors.toList());
+        if(changedFiles.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return getItemsAffectedBy(changedFiles).stream()
+                .sorted(Comparator.comparing(RepoItem::getRepoItemType).thenComparing(RepoItem::getName))
+                .collect(Collectors.toList());
+    }
+
+    private ValidationSummary validateAll(List<RepoItem> items) throws RepoServiceException {
+        Map<RepoItem, String> validationErrors = new ConcurrentHashMap<>();
+        LongAdder cpuNanos = new LongAdder();
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+        long start = System.nanoTime();
+        ValidationPipeline.Run run = validationPipeline.newRun();
+        ParallelUtil.forEach(items, validationParallelism, item -> {
+            long cpuStart = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+            try {
+                validate(item, run);
+            } catch (RepoServiceException e) {
+                validationErrors.put(item, e.getMessage());
+            } finally {
+                if(cpuTimeSupported) {
+                    cpuNanos.add(threadMXBean.getCurrentThreadCpuTime() - cpuStart);
+                }
+            }
+        });
+        ValidationSummary summary = new ValidationSummary(items.size(), validationParallelism, System.nanoTime() - start, cpuTimeSupported ? cpuNanos.sum() : -1);
+        LOGGER.debug(summary.toString());
+        repoIndex.flush();
+
+        Map<RepoItemType, Map<String, String>> itemsWithValidationErrorsByType = getMapOfValidationErrors(validationErrors);
+        if(!itemsWithValidationErrorsByType.isEmpty()) {
+            throw new RepoServiceException(getPrettyValidationErrorMessage(itemsWithValidationErrorsByType));
+        }
+        return summary;
+    }
+
     public void validate(String name) throws RepoServiceException {
         RepoItem repoItem = getItem(name);
-        validate(repoItem);
+        validate(repoItem, validationPipeline.newRun());
     }
 
-    private void validate(RepoItem repoItem) throws RepoServiceException {
-        parseForValidation(repoItem);
-        Schema schema = getSchema(repoItem);
-        validateNamespaceAndLocationMatch(schema, repoItem);
-        validateLocationDepth(repoItem);
-        validateEnumsHaveRequiredDefaultValue(repoItem);
+    /**
+     * Validates only the given items, for callers that already know which part of the repo changed.
+     *
+     * @param items
+     * @return the validation error of each invalid item, sorted by name
+     */
+    public Map<String, String> validateItems(Collection<RepoItem> items) {
+        Map<String, String> validationErrors = new ConcurrentHashMap<>();
+        ValidationPipeline.Run run = validationPipeline.newRun();
+        ParallelUtil.forEach(items, validationParallelism, item -> {
+            try {
+                validate(item, run);
+            } catch (RepoServiceException e) {
+                validationErrors.put(item.getName(), e.getMessage());
+            }
+        });
+        repoIndex.flush();
+        return new TreeMap<>(validationErrors);
     }
 
-    private Schema getSchema(RepoItem repoItem) throws RepoServiceException {
-        Schema schema;
+    /**
+     * Returns the graph of imports between files in the local repo, building it on first use and afterwards only
+     * re-reading files that changed since they were last read.
+     */
+    public synchronized ImportGraph getImportGraph() throws RepoServiceException {
+        if(importGraph == null) {
+            importGraph = new ImportGraph();
+        }
+        List<Path> files = listAll().stream().map(RepoItem::getPathToFile).collect(Collectors.toList());
         try {
-            schema = AvroParser.schemaFromIdl(repoItem.getPathToFile(), NamingUtil.fromSubjectToFile(repoItem.getName()));
-        } catch (IOException | ParseException e) {
-            String error = String.format("Could not retrieve or parse schema for %s %s", repoItem.getRepoItemType().getLogLabel(), repoItem.getName());
+            importGraph.refresh(files);
+        } catch (IOException e) {
+            String error = "Could not read the imports of the local repo";
             LOGGER.debug(error, e.getMessage());
             throw new RepoServiceException(error, e);
         }
-        if(schema == null) {
-            String error = String.format("An Avro record with the name %s does not exist within %s", NamingUtil.fromSubjectToFile(repoItem.getName()), repoItem.getPathToFile());
-            throw new RepoServiceException(error);
-        }
-        return schema;
+        return importGraph;
     }
 
-    private void validateEnumsHaveRequiredDefaultValue(RepoItem repoItem) throws RepoServiceException {
-        Schema schema = getSchema(repoItem);
-        if(schema.getType().equals(Schema.Type.ENUM)) {
-            if(!schema.hasEnumSymbol(Constants.ENUM_REQUIRED_DEFAULT_VALUE)) {
-                String error = String.format("Enum %s does not have required symbol %s in its list of values", repoItem.getName(), Constants.ENUM_REQUIRED_DEFAULT_VALUE);
-                throw new RepoServiceException(error);
-            }
-            if(!Constants.ENUM_REQUIRED_DEFAULT_VALUE.equals(schema.getEnumDefault())) {
-                String error = String.format("Enum %s does not have required symbol %s listed as its default value", repoItem.getName(), Constants.ENUM_REQUIRED_DEFAULT_VALUE);
-                throw new RepoServiceException(error);
-            }
+    /**
+     * Returns the items defined in the changed files or in any file that imports them, after refreshing the import
+     * graph and parsed schema cache for the changed files. A deleted file is only represented by the items that import it.
+     *
+     * @param changedFiles
+     */
+    public List<RepoItem> getItemsAffectedBy(Collection<Path> changedFiles) throws RepoServiceException {
+        // the changed files are re-read below, so a graph that was already built needs no refresh
+        ImportGraph graph;
+        synchronized(this) {
+            graph = importGraph != null ? importGraph : getImportGraph();
         }
+        Set<Path> affectedFiles = new HashSet<>();
+        for(Path changedFile : changedFiles) {
+            Path file = changedFile.toAbsolutePath().normalize();
+            updateImportGraph(graph, file);
+            affectedFiles.add(file);
+            affectedFiles.addAll(graph.getDependents(file));
+        }
+        affectedFiles.forEach(protocolCache::invalidate);
+        return listAll().stream()
+                .filter(item -> affectedFiles.contains(item.getPathToFile().toAbsolutePath().normalize()))
+                .collect(Collectors.toList());
     }
 
-    private void validateNamespaceAndLocationMatch(Schema schema, RepoItem repoItem) throws RepoServiceException {
-        String namespace = schema.getNamespace();
-        Path relativePath = rootRepoPath.relativize(repoItem.getPathToFile().getParent());
-        String namespaceFromPath = relativePath.toString().isEmpty() ? Constants.BASE_SCHEMA_NAMESPACE : Constants.BASE_SCHEMA_NAMESPACE + "." + relativePath.toString().replace("/",".");
-        if(!namespace.equals(namespaceFromPath)) {
-            String error = String.format("%s's namespace (%s) does not match its location in the local repo (%s)", repoItem.getName(), namespace, relativePath);
-            throw new RepoServiceException(error);
+    public Path getRootRepoPath() {
+        return rootRepoPath;
+    }
+
+    public int getAllowedNamespaceDepth() {
+        return allowedNamespaceDepth;
+    }
+
+    public ParsedProtocolCache getProtocolCache() {
+        return protocolCache;
+    }
+
+    /**
+     * Validates the item as part of the run, which checks the named types shared between the items of the run once.
+     */
+    private void validate(RepoItem repoItem, ValidationPipeline.Run run) throws RepoServiceException {
+        Schema schema = timedParse(repoItem);
+        Path directory = repoItem.getPathToFile().getParent();
+        run.validate(new ValidationContext(repoItem, schema, rootRepoPath.relativize(directory),
+                getBasePath(repoItem.getRepoItemType()).relativize(directory), allowedNamespaceDepth,
+                protocolCache.getDeclarations(repoItem.getPathToFile())));
+    }
+
+    /**
+     * Times parsing an item for validation as {@link MetricsUtil#VALIDATION_RULE}, tagged as the parse rule, so that it
+     * can be compared with the rules themselves.
+     */
+    private Schema timedParse(RepoItem repoItem) throws RepoServiceException {
+        Timer.Sample sample = MetricsUtil.start();
+        String outcome = MetricsUtil.FAILURE;
+        try {
+            Schema schema = parseForValidation(repoItem);
+            outcome = MetricsUtil.SUCCESS;
+            return schema;
+        } finally {
+            MetricsUtil.stop(sample, MetricsUtil.VALIDATION_RULE, "rule", "parse",
+                    MetricsUtil.ITEM_TYPE, repoItem.getRepoItemType().getLabel(), MetricsUtil.OUTCOME, outcome);
         }
     }
 
-    private void validateLocationDepth(RepoItem repoItem) throws RepoServiceException {
-        Path relativePath = getBasePath(repoItem.getRepoItemType()).relativize(repoItem.getPathToFile().getParent());
-        if(relativePath.toString().split("/").length > allowedNamespaceDepth) {
-            String error = String.format("%s in its current location (%s) is nested beyond the allowed subdirectory depth of %s", repoItem.getName(), repoItem.getPathToFile(), allowedNamespaceDepth);
+    private Schema requireNamedSchema(Schema schema, RepoItem repoItem) throws RepoServiceException {
+        if(schema == null) {
+            String error = String.format("An Avro record with the name %s does not exist within %s", NamingUtil.fromSubjectToFile(repoItem.getName()), repoItem.getPathToFile());
             throw new RepoServiceException(error);
         }
+        return schema;
     }
 
-    private void parseForValidation(RepoItem repoItem) throws RepoServiceException {
+    private Schema parseForValidation(RepoItem repoItem) throws RepoServiceException {
+        Schema schema;
         try {
-            AvroParser.schemaFromIdl(repoItem.getPathToFile(), NamingUtil.fromSubjectToFile(repoItem.getName()));
+            schema = AvroParser.schemaFromProtocol(protocolCache.get(repoItem.getPathToFile()), NamingUtil.fromSubjectToFile(repoItem.getName()));
         } catch (ParseException | AvroRuntimeException e) {
             String error = String.format("Invalid AVDL file for %s %s: %s", repoItem.getRepoItemType().getLogLabel(), repoItem.getName(), e.getMessage());
             throw new RepoServiceException(error, e);
@@ -161,36 +364,26 @@ public class RepoService {
             String error = String.format("Could not open AVDL file for %s %s in order to parse it", repoItem.getRepoItemType().getLogLabel(), repoItem.getName());
             throw new RepoServiceException(error, e);
         }
+        return requireNamedSchema(schema, repoItem);
     }
 
-    private boolean doesItemExist(String name, RepoItemType repoItemType) throws RepoServiceException {
-        Path itemPath = getItemPath(name, repoItemType);
-        return (itemPath != null && Files.exists(itemPath) && !Files.isDirectory(itemPath));
-    }
-
-    private Path getItemPath(String name, RepoItemType repoItemType) throws RepoServiceException {
-        return getItemPaths(repoItemType)
-                .stream()
-                .filter(i -> i.endsWith(NamingUtil.fromSubjectToFile(name) + Constants.AVDL_EXTENSION))
-                .findFirst()
-                .orElse(null);
+    private void updateImportGraph(ImportGraph graph, Path file) throws RepoServiceException {
+        try {
+            graph.update(file);
+        } catch (IOException e) {
+            String error = String.format("Could not read the imports of %s", file);
+            LOGGER.debug(error, e.getMessage());
+            throw new RepoServiceException(error, e);
+        }
     }
 
     private Path getBasePath(RepoItemType repoItemType) {
         return rootRepoPath.resolve(repoItemType.getDirectory());
     }
 
-    private List<Path> getExcludedSubdirectoryPaths(RepoItemType repoItemType) {
-        Path basePath = getBasePath(repoItemType);
-        return Arrays.asList(repoItemType.getExcludedSubdirectories())
-                .stream()
-                .map(basePath::resolve)
-                .collect(Collectors.toList());
-    }
-
-    private List<Path> getItemPaths(RepoItemType repoItemType) throws RepoServiceException {
+    private List<RepoItem> getItems(RepoItemType repoItemType) throws RepoServiceException {
         try {
-            return FileUtil.getDescendents(getBasePath(repoItemType), getExcludedSubdirectoryPaths(repoItemType));
+            return repoIndex.list(repoItemType);
         } catch (IOException e) {
             String error = String.format("Could not retrieve local %s listings", repoItemType.getLogLabel());
             LOGGER.debug(error, e.getMessage());
@@ -198,29 +391,12 @@ public class RepoService {
         }
     }
 
-    private List<RepoItem> getItems(RepoItemType repoItemType) throws RepoServiceException {
-        return getItemPaths(repoItemType).stream().map(path -> new RepoItem(getItemNameFromFilePath(path), repoItemType, path)).collect(Collectors.toList());
-    }
-
-    private String getItemNameFromFilePath(Path path) {
-        return NamingUtil.fromFileToSubject(path.getFileName().toString().replace(Constants.AVDL_EXTENSION, ""));
-    }
-
-    private Map<RepoItemType, Map<String, String>> getMapOfValidationErrors() throws RepoServiceException {
-        Map<RepoItemType, Map<String, String>> itemsWithValidationErrorsByType = new HashMap<>();
-        for(RepoItemType repoItemType : RepoItemType.values()) {
-            Map<String, String> itemsWithValidationErrors = new HashMap<>();
-            for(RepoItem item : list(repoItemType)) {
-                try {
-                    validate(item);
-                } catch (RepoServiceException e) {
-                    itemsWithValidationErrors.put(item.getName(), e.getMessage());
-                }
-            }
-            if(!itemsWithValidationErrors.isEmpty()) {
-                itemsWithValidationErrorsByType.put(repoItemType, itemsWithValidationErrors);
-            }
-        }
+    // sorted by item type and then by name, so the report is identical however the validation work was scheduled
+    private Map<RepoItemType, Map<String, String>> getMapOfValidationErrors(Map<RepoItem, String> validationErrors) {
+        Map<RepoItemType, Map<String, String>> itemsWithValidationErrorsByType = new EnumMap<>(RepoItemType.class);
+        validationErrors.forEach((item, error) -> itemsWithValidationErrorsByType
+                .computeIfAbsent(item.getRepoItemType(), type -> new TreeMap<>())
+                .putIfAbsent(item.getName(), error));
         return itemsWithValidationErrorsByType;
     }
 
@@ -0,0 +1,178 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.config.LocalRepoConfig;
+import com.github.chasdevs.events.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the local repo for changes to AVDL files and revalidates the changed files along with every file that imports
+ * them. Changes arriving within the debounce window of each other are handled as a single batch, so an editor saving
+ * several files at once (or one file in several writes) triggers a single revalidation.
+ * <p>
+ * Watching runs on a background thread and reports each batch to the consumer it was started with.
+ */
+@Service
+public class RepoWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepoWatcher.class);
+
+    private final RepoService repoService;
+    private final long debounceMs;
+
+    private WatchService watchService;
+    private Thread watchThread;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    @Autowired
+    public RepoWatcher(RepoService repoService, LocalRepoConfig localRepoConfig) {
+        this.repoService = repoService;
+        this.debounceMs = localRepoConfig.getWatchDebounceMs();
+    }
+
+    /**
+     * Starts watching the local repo, reporting the result of each revalidation to the given consumer.
+     *
+     * @param reporter
+     * @return false if the repo was already being watched
+     */
+    public synchronized boolean start(Consumer<String> reporter) throws RepoServiceException {
+        if(isRunning()) {
+            return false;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerDirectories(repoService.getRootRepoPath());
+        } catch (IOException e) {
+            stop();
+            throw new RepoServiceException("Could not watch the local repo for changes", e);
+        }
+        // built up front, so that the first save is not slowed down by reading every file in the repo
+        repoService.getImportGraph();
+        WatchService service = watchService;
+        watchThread = new Thread(() -> watch(service, reporter), "repo-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        return true;
+    }
+
+    /**
+     * @return false if the repo was not being watched
+     */
+    @PreDestroy
+    public synchronized boolean stop() {
+        if(watchService == null) {
+            return false;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.debug("Could not close the repo watch service", e);
+        }
+        watchService = null;
+        watchThread = null;
+        watchedDirectories.clear();
+        return true;
+    }
+
+    public synchronized boolean isRunning() {
+        return watchThread != null && watchThread.isAlive();
+    }
+
+    private void watch(WatchService service, Consumer<String> reporter) {
+        try {
+            while(true) {
+                Set<Path> changedFiles = new TreeSet<>();
+                collectChanges(service.take(), changedFiles);
+                WatchKey key;
+                while((key = service.poll(debounceMs, TimeUnit.MILLISECONDS)) != null) {
+                    collectChanges(key, changedFiles);
+                }
+                if(!changedFiles.isEmpty()) {
+                    reporter.accept(revalidate(changedFiles));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("Stopped watching the local repo");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Revalidates the items affected by the changed files and describes the outcome.
+     */
+    String revalidate(Collection<Path> changedFiles) {
+        long start = System.nanoTime();
+        StringBuilder sb = new StringBuilder();
+        try {
+            List<RepoItem> items = repoService.getItemsAffectedBy(changedFiles);
+            Map<String, String> validationErrors = repoService.validateItems(items);
+            sb.append(String.format("%s changed: revalidated %d schema(s) in %d ms",
+                    changedFiles.stream().map(path -> path.getFileName().toString()).collect(Collectors.joining(", ")),
+                    items.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            items.stream()
+                    .map(RepoItem::getName)
+                    .sorted()
+                    .forEach(name -> sb.append(String.format("\n    %s: %s", name, validationErrors.getOrDefault(name, "valid"))));
+        } catch (RepoServiceException e) {
+            sb.append("Could not revalidate the local repo: ").append(e.getMessage());
+        }
+        return sb.toString();
+    }
+
+    private synchronized void collectChanges(WatchKey key, Set<Path> changedFiles) {
+        Path directory = watchedDirectories.get(key);
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.kind() == OVERFLOW) {
+                // events were lost, so fall back to every file under the watched directory
+                addAvdlFiles(directory, changedFiles);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if(event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                registerDirectories(path);
+                addAvdlFiles(path, changedFiles);
+            } else if(path.toString().endsWith(Constants.AVDL_EXTENSION)) {
+                changedFiles.add(path);
+            }
+        }
+        if(!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private synchronized void registerDirectories(Path root) {
+        if(watchService == null) {
+            return;
+        }
+        try(Stream<Path> directories = Files.walk(root)) {
+            for(Path directory : directories.filter(Files::isDirectory).collect(Collectors.toList())) {
+                watchedDirectories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not watch " + root, e);
+        }
+    }
+
+    private void addAvdlFiles(Path root, Set<Path> files) {
+        try(Stream<Path> paths = Files.walk(root)) {
+            paths.filter(path -> path.toString().endsWith(Constants.AVDL_EXTENSION)).forEach(files::add);
+        } catch (IOException e) {
+            LOGGER.debug("Could not list " + root, e);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.util.Constants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Generates a synthetic local repo of any size, for measuring how the CLI behaves at a scale that is hard to reproduce
+ * with real schemas. The generated repo is valid and follows the same layout rules as a real one: common schemas live
+ * in the common directory and are imported by events, and every namespace matches its location.
+ * <p>
+ * Output is deterministic for a given set of options, seed included, so runs against a generated repo can be compared.
+ */
+public class SyntheticRepoGenerator {
+
+    private static final String[] PRIMITIVE_TYPES = {"string", "int", "long", "double", "float", "boolean"};
+    private static final String[] DIRECTORY_NAMES = {"account", "billing", "catalog", "checkout", "content", "growth", "search", "video"};
+
+    private final Options options;
+
+    public SyntheticRepoGenerator(Options options) {
+        if(options.getSchemaCount() < 1) {
+            throw new IllegalArgumentException("At least one schema must be generated");
+        }
+        if(options.getMinFields() < 1 || options.getMaxFields() < options.getMinFields()) {
+            throw new IllegalArgumentException("Field counts must be at least 1, with the maximum no lower than the minimum");
+        }
+        this.options = options;
+    }
+
+    /**
+     * Writes the repo under the given root, which must not exist yet or be an empty directory.
+     *
+     * @param root
+     * @return the paths of the generated files, in the order they were generated
+     */
+    public List<Path> generate(Path root) throws IOException {
+        if(Files.isDirectory(root)) {
+            try(Stream<Path> children = Files.list(root)) {
+                if(children.findAny().isPresent()) {
+                    throw new IllegalArgumentException("The target directory " + root + " is not empty");
+                }
+            }
+        }
+        Random random = new Random(options.getSeed());
+        int commonCount = Math.max(1, (int) Math.round(options.getSchemaCount() * options.getCommonRatio()));
+        int eventCount = Math.max(0, options.getSchemaCount() - commonCount);
+
+        List<Path> generated = new ArrayList<>();
+        Path commonDirectory = Files.createDirectories(root.resolve(RepoItemType.COMMON.getDirectory()));
+        for(int i = 0; i < commonCount; i++) {
+            Path file = commonDirectory.resolve(getCommonName(i) + Constants.AVDL_EXTENSION);
+            Files.writeString(file, getCommonIdl(i, random));
+            generated.add(file);
+        }
+        for(int i = 0; i < eventCount; i++) {
+            List<String> directories = getEventDirectories(random);
+            Path directory = Files.createDirectories(root.resolve(String.join("/", directories)));
+            Path file = directory.resolve(getEventName(i) + Constants.AVDL_EXTENSION);
+            Files.writeString(file, getEventIdl(i, directories, commonCount, random));
+            generated.add(file);
+        }
+        return generated;
+    }
+
+    private String getCommonName(int index) {
+        return "Common" + index;
+    }
+
+    private String getEventName(int index) {
+        return "Event" + index;
+    }
+
+    private List<String> getEventDirectories(Random random) {
+        int depth = random.nextInt(options.getNamespaceDepth() + 1);
+        List<String> directories = new ArrayList<>();
+        for(int level = 0; level < depth; level++) {
+            directories.add(DIRECTORY_NAMES[random.nextInt(DIRECTORY_NAMES.length)]);
+        }
+        return directories;
+    }
+
+    private String getCommonIdl(int index, Random random) {
+        String name = getCommonName(index);
+        String namespace = Constants.BASE_SCHEMA_NAMESPACE + "." + RepoItemType.COMMON.getDirectory();
+        StringBuilder sb = new StringBuilder("protocol Events {\n\n");
+        appendEnum(sb, namespace, name + "Kind");
+        sb.append("  @namespace(\"").append(namespace).append("\")\n");
+        sb.append("  record ").append(name).append(" {\n");
+        sb.append("    ").append(name).append("Kind kind;\n");
+        appendFields(sb, getFieldCount(random) - 1, Collections.singletonList(namespace + "." + name), random);
+        return sb.append("  }\n}\n").toString();
+    }
+
+    private String getEventIdl(int index, List<String> directories, int commonCount, Random random) {
+        String name = getEventName(index);
+        String namespace = directories.isEmpty()
+                ? Constants.BASE_SCHEMA_NAMESPACE
+                : Constants.BASE_SCHEMA_NAMESPACE + "." + String.join(".", directories);
+        String pathToRoot = directories.isEmpty() ? "." : String.join("/", Collections.nCopies(directories.size(), ".."));
+
+        Set<String> imported = new TreeSet<>(Comparator.comparingInt(common -> Integer.parseInt(common.substring("Common".length()))));
+        int fanOut = Math.min(options.getImportFanOut(), commonCount);
+        while(imported.size() < fanOut) {
+            imported.add(getCommonName(random.nextInt(commonCount)));
+        }
+
+        StringBuilder sb = new StringBuilder("protocol Events {\n\n");
+        for(String common : imported) {
+            sb.append("  import idl \"").append(pathToRoot).append("/").append(RepoItemType.COMMON.getDirectory())
+                    .append("/").append(common).append(Constants.AVDL_EXTENSION).append("\";\n");
+        }
+        sb.append("\n");
+        sb.append("  @namespace(\"").append(namespace).append("\")\n");
+        sb.append("  record ").append(name).append(" {\n");
+        List<String> commonTypes = new ArrayList<>();
+        for(String common : imported) {
+            String type = Constants.BASE_SCHEMA_NAMESPACE + "." + RepoItemType.COMMON.getDirectory() + "." + common;
+            sb.append("    ").append(type).append(" ").append(Character.toLowerCase(common.charAt(0))).append(common.substring(1)).append(";\n");
+            commonTypes.add(type);
+        }
+        appendFields(sb, getFieldCount(random), commonTypes, random);
+        return sb.append("  }\n}\n").toString();
+    }
+
+    private void appendEnum(StringBuilder sb, String namespace, String name) {
+        sb.append("  @namespace(\"").append(namespace).append("\")\n");
+        sb.append("  enum ").append(name).append(" {\n");
+        sb.append("    FIRST,\n    SECOND,\n    THIRD,\n    ").append(Constants.ENUM_REQUIRED_DEFAULT_VALUE).append("\n");
+        sb.append("  } = ").append(Constants.ENUM_REQUIRED_DEFAULT_VALUE).append(";\n\n");
+    }
+
+    /**
+     * Appends fields of randomly chosen shapes. Enum fields refer to the kind enum of one of the given common types.
+     */
+    private void appendFields(StringBuilder sb, int fieldCount, List<String> commonTypes, Random random) {
+        for(int i = 0; i < fieldCount; i++) {
+            String type = PRIMITIVE_TYPES[random.nextInt(PRIMITIVE_TYPES.length)];
+            String field = "field" + i;
+            double roll = random.nextDouble();
+            if(roll < options.getEnumDensity() && !commonTypes.isEmpty()) {
+                sb.append("    ").append(commonTypes.get(random.nextInt(commonTypes.size()))).append("Kind ").append(field).append(";\n");
+            } else if((roll -= options.getEnumDensity()) < options.getMapDensity()) {
+                sb.append("    map<").append(type).append("> ").append(field).append(";\n");
+            } else if((roll -= options.getMapDensity()) < options.getUnionDensity()) {
+                sb.append("    union { null, ").append(type).append(" } ").append(field).append(" = null;\n");
+            } else {
+                sb.append("    ").append(type).append(" ").append(field).append(";\n");
+            }
+        }
+    }
+
+    private int getFieldCount(Random random) {
+        return options.getMinFields() + random.nextInt(options.getMaxFields() - options.getMinFields() + 1);
+    }
+
+    /**
+     * Shape of a generated repo. Densities are the chance of any one generated field being of that kind, and should not
+     * add up to more than 1.
+     */
+    public static class Options {
+
+        private int schemaCount = 1000;
+        private long seed;
+        private double commonRatio = 0.1;
+        private int namespaceDepth = 2;
+        private int minFields = 3;
+        private int maxFields = 12;
+        private double unionDensity = 0.2;
+        private double enumDensity = 0.1;
+        private double mapDensity = 0.05;
+        private int importFanOut = 2;
+
+        public int getSchemaCount() {
+            return schemaCount;
+        }
+
+        public void setSchemaCount(int schemaCount) {
+            this.schemaCount = schemaCount;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        // share of the generated schemas that are common schemas rather than events
+        public double getCommonRatio() {
+            return commonRatio;
+        }
+
+        public void setCommonRatio(double commonRatio) {
+            this.commonRatio = commonRatio;
+        }
+
+        // deepest subdirectory an event is placed in; keep it within the local repo's allowed namespace depth
+        public int getNamespaceDepth() {
+            return namespaceDepth;
+        }
+
+        public void setNamespaceDepth(int namespaceDepth) {
+            this.namespaceDepth = namespaceDepth;
+        }
+
+        public int getMinFields() {
+            return minFields;
+        }
+
+        public void setMinFields(int minFields) {
+            this.minFields = minFields;
+        }
+
+        public int getMaxFields() {
+            return maxFields;
+        }
+
+        public void setMaxFields(int maxFields) {
+            this.maxFields = maxFields;
+        }
+
+        public double getUnionDensity() {
+            return unionDensity;
+        }
+
+        public void setUnionDensity(double unionDensity) {
+            this.unionDensity = unionDensity;
+        }
+
+        public double getEnumDensity() {
+            return enumDensity;
+        }
+
+        public void setEnumDensity(double enumDensity) {
+            this.enumDensity = enumDensity;
+        }
+
+        public double getMapDensity() {
+            return mapDensity;
+        }
+
+        public void setMapDensity(double mapDensity) {
+            this.mapDensity = mapDensity;
+        }
+
+        // number of common schemas imported by each event
+        public int getImportFanOut() {
+            return importFanOut;
+        }
+
+        public void setImportFanOut(int importFanOut) {
+            this.importFanOut = importFanOut;
+        }
+    }
+}
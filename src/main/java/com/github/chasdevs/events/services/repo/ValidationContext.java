@@ -0,0 +1,68 @@
+package com.github.chasdevs.events.services.repo;
+
+import org.apache.avro.Schema;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * What validation rules know about the item being validated: its parsed schema and where its file lives, worked out
+ * once per item so that no rule has to parse the file or resolve its paths again.
+ */
+public class ValidationContext {
+
+    private final RepoItem repoItem;
+    private final Schema schema;
+    private final Path locationInRepo;
+    private final Path locationInItemTypeDirectory;
+    private final int allowedNamespaceDepth;
+    private final Map<String, ?> declarations;
+
+    /**
+     * @param locationInRepo the directory of the item's file, relative to the root of the local repo
+     * @param locationInItemTypeDirectory the directory of the item's file, relative to the directory of its item type
+     */
+    public ValidationContext(RepoItem repoItem, Schema schema, Path locationInRepo, Path locationInItemTypeDirectory, int allowedNamespaceDepth) {
+        this(repoItem, schema, locationInRepo, locationInItemTypeDirectory, allowedNamespaceDepth, Collections.emptyMap());
+    }
+
+    /**
+     * @param declarations where each named type of the item was declared, by full name; see
+     * {@link ParsedProtocolCache#getDeclarations}
+     */
+    public ValidationContext(RepoItem repoItem, Schema schema, Path locationInRepo, Path locationInItemTypeDirectory, int allowedNamespaceDepth,
+                             Map<String, ?> declarations) {
+        this.repoItem = repoItem;
+        this.schema = schema;
+        this.locationInRepo = locationInRepo;
+        this.locationInItemTypeDirectory = locationInItemTypeDirectory;
+        this.allowedNamespaceDepth = allowedNamespaceDepth;
+        this.declarations = declarations;
+    }
+
+    public RepoItem getRepoItem() {
+        return repoItem;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public Path getLocationInRepo() {
+        return locationInRepo;
+    }
+
+    public Path getLocationInItemTypeDirectory() {
+        return locationInItemTypeDirectory;
+    }
+
+    public int getAllowedNamespaceDepth() {
+        return allowedNamespaceDepth;
+    }
+
+    // keys that are equal for the same declaration of a named type, whichever item it was parsed for
+    public Map<String, ?> getDeclarations() {
+        return declarations;
+    }
+}
@@ -0,0 +1,330 @@
+package com.github.chasdevs.events.services.repo;
+
+import com.github.chasdevs.events.util.Constants;
+import com.github.chasdevs.events.util.MetricsUtil;
+import org.apache.avro.Schema;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies every {@link ValidationRule} to an item in a single walk over its schema: rules first check the item as a
+ * whole, then every named type reachable from the item's schema, however deeply nested, is checked. The first rule an
+ * item breaks fails its validation.
+ * <p>
+ * Named types are checked by {@link Run}s, which remember the outcome for each type by where it was declared. A type
+ * shared by many items, such as {@code example.common.Meta}, is checked and walked once per run no matter how many
+ * items use it; every item using a type that breaks a rule fails with the path to it. Items that declare a type of the
+ * same full name themselves, e.g. inline, each have their own declaration checked. Declarations are told apart by the
+ * file they come from, as {@link ParsedProtocolCache#getDeclarations} keys them, so the types themselves are never
+ * compared; a type without a known declaration is only recognised as the same schema instance.
+ * <p>
+ * The built-in rules check that an item's namespace matches its location, that it is not nested too deep, and that
+ * enums list {@link Constants#ENUM_REQUIRED_DEFAULT_VALUE} as their default. Each rule is timed as
+ * {@link MetricsUtil#VALIDATION_RULE}, summed over the walk of an item.
+ */
+public class ValidationPipeline {
+
+    private final List<ValidationRule> rules;
+
+    /**
+     * @param customRules rules to apply after the built-in ones
+     */
+    public ValidationPipeline(List<ValidationRule> customRules) {
+        List<ValidationRule> allRules = new ArrayList<>(getDefaultRules());
+        allRules.addAll(customRules);
+        this.rules = Collections.unmodifiableList(allRules);
+    }
+
+    public static List<ValidationRule> getDefaultRules() {
+        return List.of(new NamespaceMatchesLocation(), new LocationDepth(), new EnumDefault());
+    }
+
+    public List<ValidationRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Starts a run, which shares the outcome of checking each named type between all the items validated with it.
+     */
+    public Run newRun() {
+        return new Run();
+    }
+
+    /**
+     * Validates a single item in a run of its own.
+     */
+    public void validate(ValidationContext context) throws RepoServiceException {
+        newRun().validate(context);
+    }
+
+    /**
+     * Validates any number of items, possibly from several threads at once, checking each named type once. Two items
+     * reaching an unchecked type at the same moment may both check it, which is harmless since rules depend on the
+     * type alone.
+     */
+    public class Run {
+
+        private final Map<Object, Optional<Violation>> violationsByDeclaration = new ConcurrentHashMap<>();
+
+        public void validate(ValidationContext context) throws RepoServiceException {
+            long[] nanos = new long[rules.size()];
+            boolean[] ran = new boolean[rules.size()];
+            int failedRule = -1;
+            try {
+                for(int i = 0; i < rules.size(); i++) {
+                    failedRule = i;
+                    long start = System.nanoTime();
+                    ran[i] = true;
+                    rules.get(i).checkItem(context);
+                    nanos[i] += System.nanoTime() - start;
+                }
+                failedRule = -1;
+                Violation violation = null;
+                for(Schema namedType : getNamedTypes(context.getSchema())) {
+                    violation = check(namedType, context, new HashMap<>(), nanos).violation;
+                    if(violation != null) {
+                        break;
+                    }
+                }
+                if(violation != null) {
+                    failedRule = violation.rule;
+                    throw new RepoServiceException(violation.describe(context));
+                }
+            } finally {
+                String itemType = context.getRepoItem().getRepoItemType().getLabel();
+                for(int i = 0; i < rules.size(); i++) {
+                    if(ran[i]) {
+                        MetricsUtil.record(nanos[i], MetricsUtil.VALIDATION_RULE, "rule", rules.get(i).getName(),
+                                MetricsUtil.ITEM_TYPE, itemType, MetricsUtil.OUTCOME, i == failedRule ? MetricsUtil.FAILURE : MetricsUtil.SUCCESS);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return how many named types have been checked so far in this run
+         */
+        public int getCheckedTypeCount() {
+            return violationsByDeclaration.size();
+        }
+
+        /**
+         * Checks the named type and, depth first in field order, the named types it uses, stopping at the first broken
+         * rule. A type that is already being checked further up, as in a recursive type, is not checked again; an
+         * outcome that relied on skipping it is only remembered once the walk is back at the skipped type, since until
+         * then it does not cover the whole of the type.
+         *
+         * @param checking the depth of each type being checked further up, by full name
+         */
+        private Outcome check(Schema namedType, ValidationContext context, Map<String, Integer> checking, long[] nanos) {
+            String fullName = namedType.getFullName();
+            Object declaration = getDeclaration(namedType, context);
+            Optional<Violation> known = violationsByDeclaration.get(declaration);
+            if(known != null) {
+                return new Outcome(known.orElse(null), Outcome.COMPLETE);
+            }
+            Integer checkingDepth = checking.get(fullName);
+            if(checkingDepth != null) {
+                return new Outcome(null, checkingDepth);
+            }
+            int depth = checking.size();
+            checking.put(fullName, depth);
+            try {
+                for(int i = 0; i < rules.size(); i++) {
+                    long start = System.nanoTime();
+                    try {
+                        rules.get(i).checkNamedType(namedType);
+                    } catch (RepoServiceException e) {
+                        return remember(declaration, new Violation(namedType, i, e.getMessage()));
+                    } finally {
+                        nanos[i] += System.nanoTime() - start;
+                    }
+                }
+                int skippedDepth = Outcome.COMPLETE;
+                if(namedType.getType() == Schema.Type.RECORD) {
+                    for(Schema.Field field : namedType.getFields()) {
+                        for(Schema fieldType : getNamedTypes(field.schema())) {
+                            Outcome outcome = check(fieldType, context, checking, nanos);
+                            if(outcome.violation != null) {
+                                return remember(declaration, outcome.violation.within(field.name()));
+                            }
+                            skippedDepth = Math.min(skippedDepth, outcome.skippedDepth);
+                        }
+                    }
+                }
+                if(skippedDepth < depth) {
+                    return new Outcome(null, skippedDepth);
+                }
+                violationsByDeclaration.put(declaration, Optional.empty());
+                return new Outcome(null, Outcome.COMPLETE);
+            } finally {
+                checking.remove(fullName);
+            }
+        }
+
+        private Outcome remember(Object declaration, Violation violation) {
+            violationsByDeclaration.put(declaration, Optional.of(violation));
+            return new Outcome(violation, Outcome.COMPLETE);
+        }
+
+        private Object getDeclaration(Schema namedType, ValidationContext context) {
+            Object declaration = context.getDeclarations().get(namedType.getFullName());
+            return declaration != null ? declaration : new Instance(namedType);
+        }
+    }
+
+    /**
+     * @return the named types a schema consists of: the schema itself if it is named, or the named types within its
+     * unions, arrays and maps otherwise
+     */
+    private static List<Schema> getNamedTypes(Schema schema) {
+        switch(schema.getType()) {
+            case RECORD:
+            case ENUM:
+            case FIXED:
+                return Collections.singletonList(schema);
+            case UNION:
+                List<Schema> namedTypes = new ArrayList<>();
+                schema.getTypes().forEach(type -> namedTypes.addAll(getNamedTypes(type)));
+                return namedTypes;
+            case ARRAY:
+                return getNamedTypes(schema.getElementType());
+            case MAP:
+                return getNamedTypes(schema.getValueType());
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * A named type without a known declaration as a key, which is only the same as itself; unlike Schema's own equals
+     * and hashCode, it never walks the type.
+     */
+    private static class Instance {
+        private final Schema namedType;
+
+        Instance(Schema namedType) {
+            this.namedType = namedType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Instance && ((Instance) o).namedType == namedType;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(namedType);
+        }
+    }
+
+    private static class Outcome {
+        private static final int COMPLETE = Integer.MAX_VALUE;
+
+        @Nullable
+        private final Violation violation;
+        // the depth of the shallowest type being checked further up that was skipped, or COMPLETE if none was
+        private final int skippedDepth;
+
+        Outcome(@Nullable Violation violation, int skippedDepth) {
+            this.violation = violation;
+            this.skippedDepth = skippedDepth;
+        }
+    }
+
+    /**
+     * A named type that broke a rule, and the path of fields leading to it from the type it was found through.
+     */
+    private static class Violation {
+        private final Schema namedType;
+        private final int rule;
+        private final String message;
+        private final List<String> path;
+
+        Violation(Schema namedType, int rule, String message) {
+            this(namedType, rule, message, Collections.emptyList());
+        }
+
+        private Violation(Schema namedType, int rule, String message, List<String> path) {
+            this.namedType = namedType;
+            this.rule = rule;
+            this.message = message;
+            this.path = path;
+        }
+
+        Violation within(String field) {
+            List<String> outerPath = new ArrayList<>(path.size() + 1);
+            outerPath.add(field);
+            outerPath.addAll(path);
+            return new Violation(namedType, rule, message, outerPath);
+        }
+
+        /**
+         * Names the item itself if its own schema broke the rule, or the nested type and the path to it otherwise, e.g.
+         * {@code Enum example.common.Status at example.ClickEvent.meta.status does not have ...}
+         */
+        String describe(ValidationContext context) {
+            String kind = namedType.getType().getName().substring(0, 1).toUpperCase() + namedType.getType().getName().substring(1);
+            if(path.isEmpty()) {
+                return String.format("%s %s %s", kind, context.getRepoItem().getName(), message);
+            }
+            return String.format("%s %s at %s.%s %s", kind, namedType.getFullName(), context.getSchema().getFullName(), String.join(".", path), message);
+        }
+    }
+
+    private static class NamespaceMatchesLocation implements ValidationRule {
+        @Override
+        public String getName() {
+            return "namespace-matches-location";
+        }
+
+        @Override
+        public void checkItem(ValidationContext context) throws RepoServiceException {
+            String namespace = context.getSchema().getNamespace();
+            String location = context.getLocationInRepo().toString();
+            String namespaceFromPath = location.isEmpty() ? Constants.BASE_SCHEMA_NAMESPACE : Constants.BASE_SCHEMA_NAMESPACE + "." + location.replace("/", ".");
+            if(!namespaceFromPath.equals(namespace)) {
+                String error = String.format("%s's namespace (%s) does not match its location in the local repo (%s)", context.getRepoItem().getName(), namespace, location);
+                throw new RepoServiceException(error);
+            }
+        }
+    }
+
+    private static class LocationDepth implements ValidationRule {
+        @Override
+        public String getName() {
+            return "location-depth";
+        }
+
+        @Override
+        public void checkItem(ValidationContext context) throws RepoServiceException {
+            if(context.getLocationInItemTypeDirectory().toString().split("/").length > context.getAllowedNamespaceDepth()) {
+                String error = String.format("%s in its current location (%s) is nested beyond the allowed subdirectory depth of %s",
+                        context.getRepoItem().getName(), context.getRepoItem().getPathToFile(), context.getAllowedNamespaceDepth());
+                throw new RepoServiceException(error);
+            }
+        }
+    }
+
+    private static class EnumDefault implements ValidationRule {
+        @Override
+        public String getName() {
+            return "enum-default";
+        }
+
+        @Override
+        public void checkNamedType(Schema namedType) throws RepoServiceException {
+            if(namedType.getType() != Schema.Type.ENUM) {
+                return;
+            }
+            if(!namedType.hasEnumSymbol(Constants.ENUM_REQUIRED_DEFAULT_VALUE)) {
+                throw new RepoServiceException(String.format("does not have required symbol %s in its list of values", Constants.ENUM_REQUIRED_DEFAULT_VALUE));
+            }
+            if(!Constants.ENUM_REQUIRED_DEFAULT_VALUE.equals(namedType.getEnumDefault())) {
+                throw new RepoServiceException(String.format("does not have required symbol %s listed as its default value", Constants.ENUM_REQUIRED_DEFAULT_VALUE));
+            }
+        }
+    }
+}
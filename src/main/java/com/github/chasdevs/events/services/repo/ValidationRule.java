@@ -0,0 +1,35 @@
+package com.github.chasdevs.events.services.repo;
+
+import org.apache.avro.Schema;
+
+/**
+ * A check applied to every item when the local repo is validated. Each item is parsed once and its named types are
+ * walked once, with every rule applied along the way, so adding a rule adds neither a parse nor a walk. Named types
+ * shared between items are only checked for the first item using them. Declare a rule as a bean to have it applied
+ * alongside the built-in ones in {@link ValidationPipeline}.
+ * <p>
+ * Items are validated in parallel, so rules must be safe to call from several threads at once.
+ */
+public interface ValidationRule {
+
+    /**
+     * Identifies the rule in metrics, e.g. {@code enum-default}.
+     */
+    String getName();
+
+    /**
+     * Checks the item as a whole, e.g. its location, before any of its named types are visited.
+     */
+    default void checkItem(ValidationContext context) throws RepoServiceException {
+    }
+
+    /**
+     * Checks a named type, i.e. a record, enum or fixed, reachable from the item's schema, however deeply nested. The
+     * outcome is shared by every item using the type, so it must depend on the type alone.
+     *
+     * @throws RepoServiceException with a message completing a sentence about the type, e.g. "does not have required
+     * symbol OUTDATED_SCHEMA in its list of values", which is prefixed with the type and the path to it
+     */
+    default void checkNamedType(Schema namedType) throws RepoServiceException {
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.chasdevs.events.services.repo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing summary of a validation run over the local repo. CPU time is the sum across all validating threads, so
+ * comparing it to wall clock time shows how much the run benefited from parallelism.
+ */
+public class ValidationSummary {
+
+    private final int itemCount;
+    private final int parallelism;
+    private final long wallClockNanos;
+    private final long cpuNanos;
+
+    public ValidationSummary(int itemCount, int parallelism, long wallClockNanos, long cpuNanos) {
+        this.itemCount = itemCount;
+        this.parallelism = parallelism;
+        this.wallClockNanos = wallClockNanos;
+        this.cpuNanos = cpuNanos;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getWallClockNanos() {
+        return wallClockNanos;
+    }
+
+    /**
+     * @return total CPU time spent validating, or -1 if the JVM does not support measuring thread CPU time
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    @Override
+    public String toString() {
+        String cpu = cpuNanos < 0 ? "unavailable" : TimeUnit.NANOSECONDS.toMillis(cpuNanos) + " ms";
+        return String.format("Validated %d schemas with parallelism %d in %d ms wall clock, CPU time %s",
+                itemCount, parallelism, TimeUnit.NANOSECONDS.toMillis(wallClockNanos), cpu);
+    }
+}
@@ -1,5 +1,7 @@
 package com.github.chasdevs.events.util;
 
+import io.micrometer.core.instrument.Timer;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Protocol;
 import org.apache.avro.Schema;
 import org.apache.avro.compiler.idl.Idl;
@@ -9,17 +11,32 @@ import java.io.IOException;
 import java.nio.file.Path;
 
 /**
- * Simple utility class for parsing schemas and protocols from specified file paths.
+ * Simple utility class for parsing schemas and protocols from specified file paths. Every parse of an IDL file is timed
+ * as {@link MetricsUtil#PARSE}.
  */
 public class AvroParser {
 
     public static Protocol protocolFromIdl(Path pathToIdl) throws IOException, ParseException {
-        Idl idl = new Idl(pathToIdl.toFile());
-        Protocol protocol = idl.CompilationUnit();
-        return protocol;
+        Timer.Sample sample = MetricsUtil.start();
+        String outcome = MetricsUtil.FAILURE;
+        try {
+            Idl idl = new Idl(pathToIdl.toFile());
+            Protocol protocol = idl.CompilationUnit();
+            outcome = MetricsUtil.SUCCESS;
+            return protocol;
+        } catch (ParseException | AvroRuntimeException e) {
+            outcome = "invalid";
+            throw e;
+        } finally {
+            MetricsUtil.stop(sample, MetricsUtil.PARSE, MetricsUtil.OUTCOME, outcome);
+        }
     }
 
     public static Schema schemaFromIdl(Path pathToIdl, String type) throws IOException, ParseException {
-        return protocolFromIdl(pathToIdl).getTypes().stream().filter(t -> t.getName().equals(type)).findFirst().orElse(null);
+        return schemaFromProtocol(protocolFromIdl(pathToIdl), type);
+    }
+
+    public static Schema schemaFromProtocol(Protocol protocol, String type) {
+        return protocol.getTypes().stream().filter(t -> t.getName().equals(type)).findFirst().orElse(null);
     }
 }
\ No newline at end of file
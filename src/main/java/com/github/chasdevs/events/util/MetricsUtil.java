@@ -0,0 +1,49 @@
+package com.github.chasdevs.events.util;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Names and tags of the meters recorded throughout the application, and helpers for timing work with them. Meters are
+ * recorded in Micrometer's global registry, so static utilities can be timed too; see MetricsService for where they
+ * end up.
+ */
+public class MetricsUtil {
+
+    public static final String REGISTRY_CALLS = "events.registry.calls";
+    public static final String PARSE = "events.parse";
+    public static final String REPO_SCAN = "events.repo.scan";
+    public static final String VALIDATION_RULE = "events.validation.rule";
+    public static final String PARSE_CACHE = "events.parse.cache";
+    public static final String COMPATIBILITY_CACHE = "events.compatibility.cache";
+
+    public static final String OUTCOME = "outcome";
+    public static final String ITEM_TYPE = "item.type";
+
+    public static final String SUCCESS = "success";
+    public static final String FAILURE = "failure";
+
+    public static Timer.Sample start() {
+        return Timer.start(Metrics.globalRegistry);
+    }
+
+    /**
+     * Records the time since the sample was started with the timer of the given name and tags.
+     *
+     * @param tags alternating tag keys and values
+     */
+    public static void stop(Timer.Sample sample, String name, String... tags) {
+        sample.stop(Metrics.timer(name, tags));
+    }
+
+    /**
+     * Records time measured elsewhere, e.g. summed over several calls, with the timer of the given name and tags.
+     *
+     * @param tags alternating tag keys and values
+     */
+    public static void record(long nanos, String name, String... tags) {
+        Metrics.timer(name, tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.chasdevs.events.util;
+
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Small utility for running work across a bounded pool of threads without leaking the pool to callers.
+ */
+public class ParallelUtil {
+
+    /**
+     * Applies the action to every item using at most the given number of threads. A parallelism of 1 or less runs
+     * everything on the calling thread. Any exception thrown by the action is rethrown once all threads have stopped.
+     *
+     * @param items
+     * @param parallelism
+     * @param action
+     */
+    public static <T> void forEach(Collection<T> items, int parallelism, Consumer<T> action) {
+        if(parallelism <= 1 || items.size() <= 1) {
+            items.forEach(action);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> items.parallelStream().forEach(action)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel work to complete", e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
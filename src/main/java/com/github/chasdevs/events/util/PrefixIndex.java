@@ -0,0 +1,50 @@
+package com.github.chasdevs.events.util;
+
+import java.util.*;
+
+/**
+ * Immutable set of names that can be searched by prefix, ignoring case. Names are kept in an array sorted by their
+ * lower case form, so a search is a binary search for the first match followed by a scan over the matches alone,
+ * however many names there are.
+ */
+public class PrefixIndex {
+
+    private static final PrefixIndex EMPTY = new PrefixIndex(Collections.emptyList());
+
+    private final String[] keys;
+    private final String[] names;
+
+    /**
+     * @param names names to index; of names differing only in case, the first one is kept
+     */
+    public PrefixIndex(Collection<String> names) {
+        SortedMap<String, String> namesByKey = new TreeMap<>();
+        names.forEach(name -> namesByKey.putIfAbsent(name.toLowerCase(), name));
+        this.keys = namesByKey.keySet().toArray(new String[0]);
+        this.names = namesByKey.values().toArray(new String[0]);
+    }
+
+    public static PrefixIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the names starting with the given prefix, ignoring case, in alphabetical order.
+     */
+    public List<String> startingWith(String prefix) {
+        String key = prefix.toLowerCase();
+        int from = Arrays.binarySearch(keys, key);
+        if(from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while(to < keys.length && keys[to].startsWith(key)) {
+            to++;
+        }
+        return Collections.unmodifiableList(Arrays.asList(names).subList(from, to));
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.chasdevs.events.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.CacheBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Computes 64-bit fingerprints of schemas, so deciding whether a local schema differs from its registry counterpart is a
+ * single comparison rather than a deep walk of both schemas.
+ * <p>
+ * Fingerprints are remembered for as long as the schema instance they were computed for is in use, so a schema shared
+ * between runs, diffs and compatibility checks is serialized at most once per normalization. Schemas must therefore not
+ * be changed once fingerprinted, which holds for every schema parsed from the local repo or the registry.
+ */
+public class SchemaFingerprint {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // weak keys are compared by identity, so schemas that are equal but differ in docs keep fingerprints of their own
+    private static final ConcurrentMap<Schema, Map<Normalization, Long>> FINGERPRINTS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .<Schema, Map<Normalization, Long>>build()
+            .asMap();
+
+    /**
+     * How much of a schema is normalized away before it is fingerprinted. Changes that are normalized away are treated
+     * as no change at all, so they are never registered.
+     */
+    public enum Normalization {
+        // every part of the schema, documentation included
+        FULL,
+        // everything except documentation; unlike Schema.equals, aliases and enum defaults still count as changes
+        IGNORE_DOCS,
+        // only what is needed to read data, leaving out documentation, defaults, aliases and custom properties
+        PARSING_CANONICAL_FORM
+    }
+
+    public static long of(Schema schema, Normalization normalization) {
+        return getFingerprints(schema).computeIfAbsent(normalization, n -> compute(schema, n));
+    }
+
+    /**
+     * Records a fingerprint computed earlier, e.g. one persisted along with the schema, so that it is not computed again
+     * for this instance of the schema.
+     */
+    public static void remember(Schema schema, Normalization normalization, long fingerprint) {
+        getFingerprints(schema).put(normalization, fingerprint);
+    }
+
+    private static Map<Normalization, Long> getFingerprints(Schema schema) {
+        return FINGERPRINTS.computeIfAbsent(schema, s -> new ConcurrentHashMap<>());
+    }
+
+    private static long compute(Schema schema, Normalization normalization) {
+        switch (normalization) {
+            case FULL:
+                return fingerprint(schema.toString());
+            case IGNORE_DOCS:
+                return fingerprint(withoutDocs(schema));
+            default:
+                return SchemaNormalization.parsingFingerprint64(schema);
+        }
+    }
+
+    /**
+     * Fingerprints every schema in the map. Schemas shared by several keys, like registry subjects that share a schema
+     * id, are only fingerprinted once.
+     *
+     * @param schemas
+     * @param normalization
+     * @return the fingerprint of each key's schema
+     */
+    public static <K> Map<K, Long> ofAll(Map<K, Schema> schemas, Normalization normalization) {
+        Map<K, Long> fingerprints = new HashMap<>();
+        schemas.forEach((key, schema) -> {
+            if(schema != null) {
+                fingerprints.put(key, of(schema, normalization));
+            }
+        });
+        return fingerprints;
+    }
+
+    private static long fingerprint(String json) {
+        return SchemaNormalization.fingerprint64(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String withoutDocs(Schema schema) {
+        try {
+            JsonNode json = MAPPER.readTree(schema.toString());
+            removeDocs(json);
+            return MAPPER.writeValueAsString(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void removeDocs(JsonNode json) {
+        if(json.isObject()) {
+            ((ObjectNode) json).remove("doc");
+            Iterator<Map.Entry<String, JsonNode>> fields = json.fields();
+            while(fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                // default values are data, so a record default with a "doc" field must be left alone
+                if(!field.getKey().equals("default")) {
+                    removeDocs(field.getValue());
+                }
+            }
+        } else if(json.isArray()) {
+            json.forEach(SchemaFingerprint::removeDocs);
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.github.chasdevs.events.clients.registry
 
+import com.github.chasdevs.events.config.SchemaRegistryConfig
+import com.github.chasdevs.events.util.SchemaFingerprint
 import com.github.chasdevs.events.util.TestUtility
 import io.confluent.kafka.schemaregistry.client.SchemaMetadata
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException
 import org.apache.avro.Schema
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.nio.file.Files
+
+import static com.github.chasdevs.events.util.SchemaFingerprint.Normalization.FULL
+import static com.github.chasdevs.events.util.SchemaFingerprint.Normalization.IGNORE_DOCS
+
 class ConfluentSchemaRegistryClientSpec extends Specification {
 
     @Subject
@@ -129,4 +137,215 @@ class ConfluentSchemaRegistryClientSpec extends Specification {
             map == [(subject): schema]
     }
 
+    def "confirm a registry snapshot is fetched concurrently and parses each schema id once"() {
+        given:
+            registryClient = new ConfluentSchemaRegistryClient(theirClient, new SchemaRegistryConfig(maxInFlightRequests: 4))
+            def subjects = (1..20).collect { "event-$it-value".toString() }
+            def theirMetaData = new SchemaMetadata(id, version, schema.toString())
+        when:
+            def map = registryClient.getCurrentRegistrySchemaMap()
+        then:
+            1 * theirClient.getAllSubjects() >> subjects
+            20 * theirClient.getLatestSchemaMetadata(_) >> theirMetaData
+            map.keySet() == subjects as Set
+            map.values().every { it.is(map["event-1-value"]) }
+    }
+
+    def "confirm a partially fetched registry snapshot reports the failed subjects"() {
+        given:
+            registryClient = new ConfluentSchemaRegistryClient(theirClient, new SchemaRegistryConfig(maxInFlightRequests: 2, requestTimeoutMs: 200))
+            def theirMetaData = new SchemaMetadata(id, version, schema.toString())
+            // delay outside of the mock, whose invocations are serialised
+            def slowMetaData = new SchemaMetadata(id, version, schema.toString()) {
+                String getSchema() { Thread.sleep(2000); super.getSchema() }
+            }
+        when:
+            registryClient.getCurrentRegistrySchemaMap()
+        then:
+            1 * theirClient.getAllSubjects() >> ["ok-value", "broken-value", "slow-value"]
+            1 * theirClient.getLatestSchemaMetadata("ok-value") >> theirMetaData
+            1 * theirClient.getLatestSchemaMetadata("broken-value") >> { throw new RestClientException("boom", 500, 50001) }
+            1 * theirClient.getLatestSchemaMetadata("slow-value") >> slowMetaData
+            def e = thrown(SchemaRegistrySnapshotException)
+            e.schemas == ["ok-value": schema]
+            e.failures.keySet() == ["broken-value", "slow-value"] as Set
+            e.failures["slow-value"] == "Timed out after 200 ms"
+    }
+
+    def "confirm the request timeout only counts while a request is running, not while it is queued"() {
+        given:
+            registryClient = new ConfluentSchemaRegistryClient(theirClient, new SchemaRegistryConfig(maxInFlightRequests: 4, requestTimeoutMs: 400))
+            def subjects = (1..40).collect { "event-$it-value".toString() }
+            // each request takes most of the timeout, and the whole snapshot takes several times the timeout
+            def slowMetaData = new SchemaMetadata(id, version, schema.toString()) {
+                String getSchema() { Thread.sleep(150); super.getSchema() }
+            }
+        when:
+            def map = registryClient.getCurrentRegistrySchemaMap()
+        then:
+            1 * theirClient.getAllSubjects() >> subjects
+            40 * theirClient.getLatestSchemaMetadata(_) >> slowMetaData
+            map.keySet() == subjects as Set
+    }
+
+    def "confirm a registry snapshot of specific subjects skips unregistered subjects"() {
+        given:
+            def theirMetaData = new SchemaMetadata(id, version, schema.toString())
+        when:
+            def map = registryClient.getRegistrySchemaMap(["click-event", "new-event"])
+        then:
+            0 * theirClient.getAllSubjects()
+            1 * theirClient.getLatestSchemaMetadata("click-event") >> theirMetaData
+            1 * theirClient.getLatestSchemaMetadata("new-event") >> { throw new RestClientException("Subject not found", 404, 40401) }
+            map == [(subject): schema]
+    }
+
+    def "confirm subjects without a compatibility level of their own fall back to the global level, fetched once"() {
+        when:
+            def levels = ["first-value", "second-value"].collect { registryClient.getCompatibilityLevel(it) }
+        then:
+            1 * theirClient.getCompatibility("first-value") >> { throw new RestClientException("Subject not found", 404, 40401) }
+            1 * theirClient.getCompatibility("second-value") >> { throw new RestClientException("Subject not found", 404, 40401) }
+            1 * theirClient.getCompatibility(null) >> "FULL"
+            levels == ["FULL", "FULL"]
+    }
+
+    def "confirm a persisted registry snapshot only re-fetches subjects whose version changed"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 0)
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            def firstRunClient = Stub(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient) {
+                getAllSubjects() >> ["unchanged-value", "changed-value"]
+                getLatestSchemaMetadata(_) >> new SchemaMetadata(id, 1, schema.toString())
+            }
+            new ConfluentSchemaRegistryClient(firstRunClient, config).getCurrentRegistrySchemaMap()
+        when:
+            def map = new ConfluentSchemaRegistryClient(theirClient, config).getCurrentRegistrySchemaMap()
+        then:
+            1 * theirClient.getAllSubjects() >> ["unchanged-value", "changed-value"]
+            1 * theirClient.getAllVersions("unchanged-value") >> [1]
+            1 * theirClient.getAllVersions("changed-value") >> [1, 2]
+            0 * theirClient.getLatestSchemaMetadata("unchanged-value")
+            1 * theirClient.getLatestSchemaMetadata("changed-value") >> new SchemaMetadata(8, 2, updatedSchema.toString())
+            map == ["unchanged-value": schema, "changed-value": updatedSchema]
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm a fresh registry snapshot is served without contacting the registry"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 300)
+            def firstRunClient = Stub(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient) {
+                getAllSubjects() >> [subject]
+                getLatestSchemaMetadata(subject) >> new SchemaMetadata(id, version, schema.toString())
+            }
+            new ConfluentSchemaRegistryClient(firstRunClient, config).getCurrentRegistrySchemaMap()
+        when:
+            def map = new ConfluentSchemaRegistryClient(theirClient, config).getCurrentRegistrySchemaMap()
+        then:
+            0 * theirClient._
+            map == [(subject): schema]
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm a persisted registry snapshot stores the fingerprints of its schemas for later runs"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 300)
+            def firstRunClient = Stub(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient) {
+                getAllSubjects() >> [subject]
+                getLatestSchemaMetadata(subject) >> new SchemaMetadata(id, version, schema.toString())
+            }
+            new ConfluentSchemaRegistryClient(firstRunClient, config).getCurrentRegistrySchemaMap()
+            def file = Files.list(snapshotDirectory).find { !it.toString().endsWith(".tmp") }
+            def stored = Long.toHexString(SchemaFingerprint.of(schema, FULL))
+            // a fingerprint the next run could only know from the snapshot
+            Files.write(file, Files.readAllLines(file).collect { it.replace("\t${stored},", "\tabc,") })
+        when:
+            def map = new ConfluentSchemaRegistryClient(theirClient, config).getCurrentRegistrySchemaMap()
+        then:
+            SchemaFingerprint.of(map[subject], FULL) == 0xabc
+            SchemaFingerprint.of(map[subject], IGNORE_DOCS) == SchemaFingerprint.of(schema, IGNORE_DOCS)
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm a subject that could not be fetched is still covered by the next run while the listing is fresh"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 300)
+            def firstRunClient = Stub(io.confluent.kafka.schemaregistry.client.SchemaRegistryClient) {
+                getAllSubjects() >> ["ok-value", "broken-value"]
+                getLatestSchemaMetadata("ok-value") >> new SchemaMetadata(id, version, schema.toString())
+                getLatestSchemaMetadata("broken-value") >> { throw new RestClientException("boom", 500, 50001) }
+            }
+            try {
+                new ConfluentSchemaRegistryClient(firstRunClient, config).getCurrentRegistrySchemaMap()
+            } catch (SchemaRegistrySnapshotException ignored) {
+            }
+        when:
+            def map = new ConfluentSchemaRegistryClient(theirClient, config).getCurrentRegistrySchemaMap()
+        then:
+            1 * theirClient.getAllSubjects() >> ["ok-value", "broken-value"]
+            1 * theirClient.getLatestSchemaMetadata("broken-value") >> new SchemaMetadata(id, version, schema.toString())
+            0 * theirClient.getLatestSchemaMetadata("ok-value")
+            map == ["ok-value": schema, "broken-value": schema]
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm registering a subject makes the snapshot fetch it and the subject listing again"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 300)
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            registryClient = new ConfluentSchemaRegistryClient(theirClient, config)
+        when:
+            registryClient.getCurrentRegistrySchemaMap()
+            registryClient.register("changed-value", updatedSchema)
+            registryClient.register("new-value", schema)
+            def map = registryClient.getCurrentRegistrySchemaMap()
+        then:
+            2 * theirClient.getAllSubjects() >>> [["unchanged-value", "changed-value"], ["unchanged-value", "changed-value", "new-value"]]
+            1 * theirClient.getLatestSchemaMetadata("unchanged-value") >> new SchemaMetadata(id, 1, schema.toString())
+            1 * theirClient.getLatestSchemaMetadata("changed-value") >> new SchemaMetadata(id, 1, schema.toString())
+            1 * theirClient.register("changed-value", updatedSchema) >> 8
+            1 * theirClient.getLatestSchemaMetadata("changed-value") >> new SchemaMetadata(8, 2, updatedSchema.toString())
+            1 * theirClient.register("new-value", schema) >> id
+            1 * theirClient.getLatestSchemaMetadata("new-value") >> new SchemaMetadata(id, 1, schema.toString())
+            map == ["unchanged-value": schema, "changed-value": updatedSchema, "new-value": schema]
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+    def "confirm registering only writes the snapshot once it is saved"() {
+        given:
+            def snapshotDirectory = Files.createTempDirectory("registry-snapshot")
+            def config = new SchemaRegistryConfig(url: "http://localhost:8081", snapshotEnabled: true,
+                    snapshotDirectory: snapshotDirectory.toString(), snapshotMaxAgeSeconds: 300)
+            theirClient.getAllSubjects() >> [subject]
+            theirClient.getLatestSchemaMetadata(subject) >> new SchemaMetadata(id, version, schema.toString())
+            registryClient = new ConfluentSchemaRegistryClient(theirClient, config)
+            registryClient.getCurrentRegistrySchemaMap()
+            def file = Files.list(snapshotDirectory).find { !it.toString().endsWith(".tmp") }
+            def written = Files.readAllLines(file)
+        when:
+            registryClient.register(subject, schema)
+        then:
+            Files.readAllLines(file) == written
+        when:
+            registryClient.saveSnapshot()
+        then:
+            Files.readAllLines(file).size() == 1
+        cleanup:
+            Files.walk(snapshotDirectory).sorted(Comparator.reverseOrder()).forEach({ i -> Files.delete(i) })
+    }
+
 }
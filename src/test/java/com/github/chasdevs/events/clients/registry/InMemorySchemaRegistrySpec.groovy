@@ -0,0 +1,149 @@
+package com.github.chasdevs.events.clients.registry
+
+import com.github.chasdevs.events.config.FakeRegistryConfig
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException
+import org.apache.avro.Schema
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+import static com.github.chasdevs.events.util.TestUtility.record
+
+class InMemorySchemaRegistrySpec extends Specification {
+
+    @Subject
+    ConfluentSchemaRegistryClient registryClient
+
+    FakeRegistryConfig config
+    InMemorySchemaRegistry registry
+
+    Schema original = record('{"name": "count", "type": "int"}')
+    Schema withDefault = record('{"name": "count", "type": "int"}, {"name": "label", "type": "string", "default": ""}')
+    Schema withoutDefault = record('{"name": "count", "type": "int"}, {"name": "label", "type": "string"}')
+
+    def setup() {
+        config = new FakeRegistryConfig()
+        registry = new InMemorySchemaRegistry(config)
+        registryClient = new ConfluentSchemaRegistryClient(registry)
+    }
+
+    def "registering versions a subject and reuses ids for identical schemas"() {
+        when:
+            def firstId = registryClient.register("click-event", original)
+            def sameId = registryClient.register("click-event", original)
+            def otherSubjectId = registryClient.register("view-event", original)
+            def secondId = registryClient.register("click-event", withDefault)
+        then:
+            sameId == firstId
+            otherSubjectId == firstId
+            secondId != firstId
+            registryClient.getAllVersionsBySubject("click-event") == [1, 2]
+            registryClient.getLatestSchemaMetaData("click-event") == new SchemaMetaData(secondId, 2, withDefault.toString())
+            registryClient.getSchemaVersionBySubjectAndSchema("click-event", original) == 1
+            registryClient.getAllSubjects() == ["click-event", "view-event"]
+    }
+
+    def "compatibility is checked backwards against the latest version"() {
+        given:
+            registryClient.register("click-event", original)
+        expect:
+            registryClient.testCompatibility("click-event", withDefault)
+            !registryClient.testCompatibility("click-event", withoutDefault)
+    }
+
+    def "registering an incompatible schema is rejected"() {
+        given:
+            registryClient.register("click-event", original)
+        when:
+            registryClient.register("click-event", withoutDefault)
+        then:
+            def e = thrown(SchemaRegistryException)
+            (e.cause as RestClientException).status == 409
+    }
+
+    def "missing subjects are reported the way the registry reports them"() {
+        when:
+            registryClient.getLatestSchemaMetaData("missing-event")
+        then:
+            def e = thrown(SchemaRegistryException)
+            e.message == "No results found"
+            (e.cause as RestClientException).status == 404
+            (e.cause as RestClientException).errorCode == 40401
+    }
+
+    def "subjects missing from the registry are skipped in a partial snapshot"() {
+        given:
+            registryClient.register("click-event", original)
+        expect:
+            registryClient.getRegistrySchemaMap(["click-event", "missing-event"]) == ["click-event": original]
+    }
+
+    def "injected errors are reported as communication failures"() {
+        given:
+            config.getCalls().put("getAllSubjects", new FakeRegistryConfig.CallBehavior(FakeRegistryConfig.LatencyDistribution.FIXED, 0, 0, 1.0))
+        when:
+            registryClient.getAllSubjects()
+        then:
+            def e = thrown(SchemaRegistryException)
+            e.message == "An error occurred when communicating with the Confluent schema registry"
+            (e.cause as RestClientException).status == 500
+    }
+
+    def "calls wait for their configured latency"() {
+        given:
+            config.setDefaults(new FakeRegistryConfig.CallBehavior(distribution, 20, 10, 0))
+            registryClient.register("click-event", original)
+        when:
+            long start = System.nanoTime()
+            5.times { registryClient.getLatestSchemaBySubject("click-event") }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000
+        then:
+            elapsedMs >= minimumMs
+        where:
+            distribution                                    | minimumMs
+            FakeRegistryConfig.LatencyDistribution.FIXED    | 100
+            FakeRegistryConfig.LatencyDistribution.UNIFORM  | 50
+    }
+
+    def "concurrent calls wait for their latency at the same time rather than one after another"() {
+        given:
+            config.setDefaults(new FakeRegistryConfig.CallBehavior(FakeRegistryConfig.LatencyDistribution.FIXED, 200, 0, 0))
+            registry.preload("click-event", original)
+            def executor = Executors.newFixedThreadPool(8)
+        when:
+            long start = System.nanoTime()
+            (1..8).collect { executor.submit({ registry.getLatestSchemaMetadata("click-event") } as Callable) }*.get()
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000
+        then:
+            elapsedMs >= 200
+            elapsedMs < 800
+        cleanup:
+            executor.shutdownNow()
+    }
+
+    def "latencies and errors follow the seed"() {
+        given:
+            config.setSeed(42)
+            config.setDefaults(new FakeRegistryConfig.CallBehavior(FakeRegistryConfig.LatencyDistribution.FIXED, 0, 0, 0.5))
+        when:
+            def first = outcomes(new InMemorySchemaRegistry(config))
+            def second = outcomes(new InMemorySchemaRegistry(config))
+        then:
+            first == second
+            first.contains(true)
+            first.contains(false)
+    }
+
+    private static List<Boolean> outcomes(InMemorySchemaRegistry registry) {
+        (1..20).collect {
+            try {
+                registry.getAllSubjects()
+                true
+            } catch (RestClientException ignored) {
+                false
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.chasdevs.events.command
+
+import org.jline.reader.impl.DefaultParser
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class CommandBatchSpec extends Specification {
+
+    def "commands are split on separate and embedded separators"() {
+        when:
+            def batch = CommandBatch.parse(args)
+        then:
+            batch.commands*.toString() == commands
+            batch.commands*.onlyIfPreviousSucceeded == conditional
+        where:
+            args                                                  | commands                                       | conditional
+            ["validate", "--name", "click-event"]                 | ["validate --name click-event"]                | [false]
+            ["validate", "&&", "sync", "--force"]                 | ["validate", "sync --force"]                   | [false, true]
+            ["validate;", "list"]                                 | ["validate", "list"]                           | [false, false]
+            ["validate; test-compatibility ;list"]                | ["validate", "test-compatibility", "list"]     | [false, false, false]
+            [";", "validate", ";", ";"]                           | ["validate"]                                   | [false]
+    }
+
+    def "commands after a failure only run when they are not chained with &&"() {
+        given:
+            def batch = CommandBatch.parse(["validate", "&&", "sync", ";", "list", "&&", "print"])
+            def ran = []
+        when:
+            def exitCode = batch.run({ words ->
+                ran << words.join(" ")
+                words[0] == "validate" ? 2 : words[0] == "print" ? 3 : 0
+            })
+        then:
+            ran == ["validate", "list", "print"]
+            exitCode == 2
+    }
+
+    def "a batch that succeeds exits with 0"() {
+        expect:
+            CommandBatch.parse(["validate", "&&", "list"]).run({ 0 }) == 0
+    }
+
+    def "script files hold one command per line, skipping comments"() {
+        given:
+            def script = Files.createTempFile("events", ".txt")
+            script.text = "# checks before a release\nvalidate --name 'click event'\n\ntest-compatibility\n"
+        when:
+            def batch = CommandBatch.parse(["@" + script, "&&", "sync"], new DefaultParser())
+        then:
+            batch.commands*.words == [["validate", "--name", "click event"], ["test-compatibility"], ["sync"]]
+            batch.commands*.onlyIfPreviousSucceeded == [false, false, true]
+        cleanup:
+            Files.deleteIfExists(script)
+    }
+}
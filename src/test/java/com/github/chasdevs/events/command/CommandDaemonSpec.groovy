@@ -0,0 +1,117 @@
+package com.github.chasdevs.events.command
+
+import com.github.chasdevs.events.config.DaemonConfig
+import org.jline.reader.impl.DefaultParser
+import org.springframework.shell.ExitRequest
+import org.springframework.shell.Shell
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+class CommandDaemonSpec extends Specification {
+
+    @Subject
+    CommandDaemon commandDaemon
+
+    Shell shell
+    Path stateDirectory
+    Path workingDirectory
+
+    def setup() {
+        shell = Mock()
+        stateDirectory = Files.createTempDirectory("events-daemon")
+        workingDirectory = Path.of("").toRealPath()
+        commandDaemon = new CommandDaemon(shell, new DefaultParser(), new DaemonConfig(), "default", workingDirectory, stateDirectory)
+    }
+
+    def cleanup() {
+        commandDaemon.stop()
+        stateDirectory.toFile().deleteDir()
+    }
+
+    def "results are rendered the way the shell prints them"() {
+        when:
+            def response = commandDaemon.execute(["list"])
+        then:
+            1 * shell.evaluate({ it.words() == ["list"] }) >> ["first", "second"]
+            response.output == "first\nsecond\n"
+            response.exitCode == 0
+    }
+
+    def "errors go to stderr with a failing exit code"() {
+        when:
+            def failed = commandDaemon.execute(["validate"])
+            def exited = commandDaemon.execute(["exit"])
+        then:
+            1 * shell.evaluate({ it.words() == ["validate"] }) >> new SchemaCommandException("Invalid schema")
+            1 * shell.evaluate({ it.words() == ["exit"] }) >> new ExitRequest(3)
+            failed.error == "Invalid schema"
+            failed.exitCode == 1
+            exited.exitCode == 3
+    }
+
+    def "commands that print as they go are not run"() {
+        when:
+            def response = commandDaemon.execute(["watch"])
+        then:
+            0 * shell.evaluate(_)
+            response.exitCode == 1
+    }
+
+    def "a batch answers with the output of every command that ran"() {
+        when:
+            def response = commandDaemon.execute(["validate", "&&", "test-compatibility;", "list"])
+        then:
+            1 * shell.evaluate({ it.words() == ["validate"] }) >> new SchemaCommandException("Invalid schema")
+            0 * shell.evaluate({ it.words() == ["test-compatibility"] })
+            1 * shell.evaluate({ it.words() == ["list"] }) >> ["first"]
+            response.output == "first\n"
+            response.error == "Invalid schema\n"
+            response.exitCode == 1
+    }
+
+    def "commands are served over the socket until the daemon is stopped"() {
+        given:
+            def serving = CompletableFuture.supplyAsync({ commandDaemon.serve({}) })
+            def state = awaitState()
+        when:
+            def validated = request(state, state.getProperty("token"), workingDirectory.toString(), "validate", "--name", "click-event")
+            def wrongDirectory = request(state, state.getProperty("token"), "/elsewhere", "validate")
+            def wrongToken = request(state, "guess", workingDirectory.toString(), "validate")
+            def toTerminal = request(state, state.getProperty("token"), workingDirectory.toString(), "validate;", "test-compatibility", "--report", "-")
+            commandDaemon.stop()
+        then:
+            1 * shell.evaluate({ it.words() == ["validate", "--name", "click-event"] }) >> "All valid\nreally"
+            validated == ["oAll valid", "oreally", "x0"]
+            wrongDirectory == ["rThis daemon serves " + workingDirectory]
+            wrongToken == []
+            toTerminal == ["r--report - streams to the terminal, so it runs in its own process"]
+            0 * shell.evaluate({ it.words() == ["validate"] })
+            serving.get(5, TimeUnit.SECONDS)
+            !Files.exists(commandDaemon.getStateFile())
+    }
+
+    private Properties awaitState() {
+        def stateFile = commandDaemon.getStateFile()
+        for(int i = 0; i < 100 && !commandDaemon.isRunning(); i++) {
+            Thread.sleep(50)
+        }
+        def state = new Properties()
+        stateFile.withReader { state.load(it) }
+        state
+    }
+
+    private static List<String> request(Properties state, String token, String directory, String... args) {
+        new Socket(InetAddress.getLoopbackAddress(), state.getProperty("port") as int).withCloseable { socket ->
+            def out = new PrintWriter(new OutputStreamWriter(socket.outputStream, StandardCharsets.UTF_8))
+            ([token, directory, "default"] + args.toList() + [""]).each { out.println(it) }
+            out.flush()
+            socket.inputStream.newReader("UTF-8").readLines()
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.chasdevs.events.command
+
+import com.github.chasdevs.events.clients.registry.SchemaRegistryClient
+import com.github.chasdevs.events.clients.registry.SchemaRegistryException
+import com.github.chasdevs.events.services.repo.RepoService
+import org.springframework.shell.CompletionContext
+import spock.lang.Specification
+
+import java.time.Duration
+
+class RepoItemNameValuesProviderSpec extends Specification {
+
+    RepoService repoService = Mock()
+    SchemaRegistryClient registryClient = Mock()
+
+    def complete(RepoItemNameValuesProvider provider, List<String> words) {
+        def context = new CompletionContext(words, words.size() - 1, words.last().length())
+        provider.complete(null, context, new String[0])*.value()
+    }
+
+    def "confirm local names are completed from the typed prefix without listing the repo"() {
+        given:
+            def provider = new RepoItemNameValuesProvider(repoService, { registryClient }, Duration.ofMinutes(1))
+        when:
+            def proposals = complete(provider, ["print", "Cli"])
+        then:
+            1 * repoService.completeNames("Cli") >> ["click-event"]
+            0 * repoService.listAll()
+            0 * registryClient._
+            proposals == ["click-event"]
+    }
+
+    def "confirm remote names are completed from a cached list of value subjects"() {
+        given:
+            def provider = new RepoItemNameValuesProvider(repoService, { registryClient }, Duration.ofMinutes(1))
+        when:
+            def first = complete(provider, ["print", "--remote", "c"])
+            def second = complete(provider, ["print", "--remote", "M"])
+        then:
+            1 * registryClient.getAllSubjects() >> ["click-event-value", "meta-value", "click-event-key"]
+            0 * repoService._
+            first == ["click-event"]
+            second == ["meta"]
+    }
+
+    def "confirm the subject list is listed again once it is too old, and an unreachable registry completes nothing"() {
+        given:
+            def provider = new RepoItemNameValuesProvider(repoService, { registryClient }, Duration.ZERO)
+        when:
+            def first = complete(provider, ["print", "--remote", ""])
+            def second = complete(provider, ["print", "--remote", ""])
+        then:
+            2 * registryClient.getAllSubjects() >>> [["meta-value"]] >> { throw new SchemaRegistryException("down") }
+            first == ["meta"]
+            second.isEmpty()
+    }
+}
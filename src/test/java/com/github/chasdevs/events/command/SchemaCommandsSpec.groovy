@@ -3,13 +3,21 @@ package com.github.chasdevs.events.command
 import com.github.chasdevs.events.clients.registry.SchemaRegistryClient
 import com.github.chasdevs.events.config.SchemaRegistryConfig
 import com.github.chasdevs.events.services.mediation.MediationService
+import com.github.chasdevs.events.services.mediation.SubjectResult
+import com.github.chasdevs.events.services.repo.RepoItem
 import com.github.chasdevs.events.services.repo.RepoItemType
 import com.github.chasdevs.events.services.repo.RepoService
+import com.github.chasdevs.events.services.repo.RepoWatcher
 import com.github.chasdevs.events.util.NamingUtil
+import groovy.json.JsonSlurper
 import org.apache.avro.Schema
+import org.jline.terminal.Terminal
+import org.springframework.beans.factory.ObjectProvider
 import spock.lang.Specification
 import spock.lang.Subject
 
+import java.time.Duration
+
 class SchemaCommandsSpec extends Specification{
 
     @Subject
@@ -19,6 +27,8 @@ class SchemaCommandsSpec extends Specification{
     SchemaRegistryClient registryClient
     SchemaRegistryConfig registryConfig
     MediationService mediationService
+    RepoWatcher repoWatcher
+    Terminal terminal
 
     String eventName = "click-event"
 
@@ -27,7 +37,9 @@ class SchemaCommandsSpec extends Specification{
         registryClient = Mock()
         registryConfig = Mock()
         mediationService = Mock()
-        eventCommands = new SchemaCommands(repoService, registryClient, registryConfig, mediationService)
+        repoWatcher = Mock()
+        terminal = Mock()
+        eventCommands = new SchemaCommands(repoService, registryClient, registryConfig, mediationService, repoWatcher, terminal)
     }
 
     def cleanup() {
@@ -60,11 +72,12 @@ class SchemaCommandsSpec extends Specification{
         then:
             1 * repoService.getSchema(eventName) >> schemaToRegister
             1 * registryClient.register(registrySubjectName, schemaToRegister)
+            1 * registryClient.saveSnapshot()
     }
 
     def "confirm interactions when validating an event"() {
         when:
-            eventCommands.validate(eventName)
+            eventCommands.validate(eventName, null, null)
         then:
             1 * repoService.validate(eventName)
             0 * repoService.validateLocalRepo()
@@ -72,25 +85,53 @@ class SchemaCommandsSpec extends Specification{
 
     def "confirm interactions when validating the local repo"() {
         when:
-            eventCommands.validate(null)
+            eventCommands.validate(null, null, null)
         then:
             1 * repoService.validateLocalRepo()
             0 * repoService.validate(_)
     }
 
+    def "confirm the registry is only looked up by commands that need it"() {
+        given:
+            ObjectProvider<SchemaRegistryClient> registryClientProvider = Mock()
+            ObjectProvider<MediationService> mediationServiceProvider = Mock()
+            def commands = new SchemaCommands(repoService, registryClientProvider, registryConfig, mediationServiceProvider, repoWatcher, terminal)
+        when:
+            commands.validate(null, null, null)
+            commands.print(eventName, false)
+        then:
+            1 * repoService.getSchema(eventName) >> Schema.create(Schema.Type.BOOLEAN)
+            0 * registryClientProvider.getObject()
+            0 * mediationServiceProvider.getObject()
+        when:
+            commands.testCompatibility(eventName, false, null, null, null)
+        then:
+            1 * mediationServiceProvider.getObject() >> mediationService
+            1 * mediationService.testCompatibility(eventName)
+    }
+
     def "confirm interactions when syncing the local repo with the schema registry correctly"() {
         given:
             def resultsMap = [(RepoItemType.EVENT):["click-event":true]]
         when:
-            eventCommands.sync(true)
+            eventCommands.sync(true, false, null, null, null)
         then:
             1 * mediationService.syncLocalWithRemote() >> resultsMap
             1 * mediationService.getPrettyMessageFromSyncResultsMap(resultsMap)
     }
 
+    def "confirm interactions when syncing the local repo with a refreshed registry snapshot"() {
+        when:
+            eventCommands.sync(true, true, null, null, null)
+        then:
+            1 * registryClient.discardSnapshot()
+        then:
+            1 * mediationService.syncLocalWithRemote() >> [:]
+    }
+
     def "confirm interactions when syncing the local repo without the force flag"() {
         when:
-            eventCommands.sync(false)
+            eventCommands.sync(false, false, null, null, null)
         then:
             0 * mediationService.syncLocalWithRemote()
             0 * mediationService.getPrettyMessageFromSyncResultsMap(_)
@@ -98,7 +139,7 @@ class SchemaCommandsSpec extends Specification{
 
     def "confirm interactions when testing compatibility of an event"() {
         when:
-            eventCommands.testCompatibility(eventName)
+            eventCommands.testCompatibility(eventName, false, null, null, null)
         then:
             1 * mediationService.testCompatibility(eventName)
             0 * mediationService.testGlobalCompatibility()
@@ -108,11 +149,120 @@ class SchemaCommandsSpec extends Specification{
         given:
             def resultsMap = [(RepoItemType.EVENT):["click-event":true]]
         when:
-            eventCommands.testCompatibility(null)
+            eventCommands.testCompatibility(null, false, null, null, null)
         then:
             1 * mediationService.testGlobalCompatibility() >> resultsMap
             1 * mediationService.getPrettyMessageFromCompatibilityResultsMap(resultsMap)
             0 * mediationService.testCompatibility(_)
     }
 
+    def "confirm interactions when starting and stopping the repo watcher"() {
+        when:
+            def started = eventCommands.watch(false)
+        then:
+            1 * repoWatcher.start(_) >> true
+            started.startsWith("Watching")
+        when:
+            def stopped = eventCommands.watch(true)
+        then:
+            1 * repoWatcher.stop() >> true
+            0 * repoWatcher.start(_)
+            stopped == "Stopped watching the local repo"
+    }
+
+    def "confirm interactions when listing the impact of a schema"() {
+        given:
+            def meta = new RepoItem("meta", RepoItemType.COMMON, null)
+            def event = new RepoItem(eventName, RepoItemType.EVENT, null)
+        when:
+            def dependents = eventCommands.impact("meta")
+        then:
+            1 * repoService.getImpactedItems("meta") >> [meta, event]
+            dependents == [eventName]
+    }
+
+    def "confirm interactions when syncing and testing compatibility of the impact of a schema"() {
+        given:
+            def impacted = [new RepoItem("meta", RepoItemType.COMMON, null)]
+        when:
+            eventCommands.sync(true, false, "meta", null, null)
+            eventCommands.testCompatibility(null, false, "meta", null, null)
+        then:
+            2 * repoService.getImpactedItems("meta") >> impacted
+            1 * mediationService.syncLocalWithRemote(impacted) >> [:]
+            1 * mediationService.testGlobalCompatibility(impacted) >> [:]
+            0 * mediationService.syncLocalWithRemote()
+            0 * mediationService.testGlobalCompatibility()
+    }
+
+    def "confirm results are streamed as NDJSON to the report file and failures fail the command"() {
+        given:
+            def report = File.createTempFile("sync", ".ndjson")
+        when:
+            eventCommands.sync(true, false, null, report.path, null)
+        then:
+            1 * mediationService.syncLocalWithRemote(null, _) >> { scope, listener ->
+                listener.accept(new SubjectResult("click-event-value", SubjectResult.Action.REGISTER, SubjectResult.Result.REGISTERED, null, Duration.ofMillis(3)))
+                listener.accept(new SubjectResult("view-event-value", SubjectResult.Action.REGISTER, SubjectResult.Result.FAILED, "Timed out", Duration.ofMillis(5)))
+            }
+            0 * mediationService.syncLocalWithRemote()
+            def e = thrown(SchemaCommandException)
+            e.message == "2 subjects reported, 1 failed"
+            def lines = report.readLines().collect { new JsonSlurper().parseText(it) }
+            lines*.subject == ["click-event-value", "view-event-value"]
+            lines*.result == ["registered", "failed"]
+            lines[0].action == "register"
+            lines[0].durationMs == 3.0
+            lines[1].message == "Timed out"
+            !lines[0].containsKey("message")
+        cleanup:
+            report.delete()
+    }
+
+    def "confirm interactions when covering only the schemas changed since a git ref"() {
+        given:
+            def changed = [new RepoItem("meta", RepoItemType.COMMON, null), new RepoItem(eventName, RepoItemType.EVENT, null)]
+        when:
+            eventCommands.validate(null, null, "origin/master")
+            eventCommands.sync(true, false, null, null, "origin/master")
+            eventCommands.testCompatibility(null, false, null, null, "origin/master")
+        then:
+            1 * repoService.validateChangesSince("origin/master")
+            2 * repoService.getItemsChangedSince("origin/master") >> changed
+            1 * mediationService.syncLocalWithRemote(changed) >> [:]
+            1 * mediationService.testGlobalCompatibility(changed) >> [:]
+            0 * repoService.validateLocalRepo()
+            0 * mediationService.syncLocalWithRemote()
+            0 * mediationService.testGlobalCompatibility()
+        when:
+            def message = eventCommands.sync(true, false, null, null, "HEAD")
+        then:
+            1 * repoService.getItemsChangedSince("HEAD") >> []
+            0 * mediationService.syncLocalWithRemote(_)
+            message == "No schemas changed since HEAD. No need to sync."
+    }
+
+    def "confirm a schema name, --impact-of and --since cannot be combined"() {
+        when:
+            eventCommands.validate(eventName, "meta", null)
+        then:
+            def e = thrown(SchemaCommandException)
+            e.message == "Give a schema name, --impact-of or --since, not more than one of them"
+            0 * repoService._
+        when:
+            eventCommands.testCompatibility(eventName, true, null, null, "HEAD")
+        then:
+            e = thrown(SchemaCommandException)
+            e.message == "Give a schema name, --impact-of or --since, not more than one of them"
+            0 * registryClient._
+            0 * mediationService._
+        when:
+            eventCommands.sync(true, false, "meta", null, "HEAD")
+        then:
+            e = thrown(SchemaCommandException)
+            e.message == "--impact-of and --since cannot be combined"
+            0 * repoService._
+            0 * mediationService._
+    }
+
 }
@@ -0,0 +1,91 @@
+package com.github.chasdevs.events.services.mediation
+
+import org.apache.avro.Schema
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static com.github.chasdevs.events.util.TestUtility.record
+
+class CompatibilityCacheSpec extends Specification {
+
+    Schema withId = record('{"name":"id","type":"string"}')
+    Schema withName = record('{"name":"name","type":"string"}')
+    Schema withIdAndName = record('{"name":"id","type":"string"},{"name":"name","type":"string","default":""}')
+
+    def "confirm a pair is only checked once per direction"() {
+        given:
+            def cache = new CompatibilityCache(100, null)
+        when:
+            def first = cache.check(withIdAndName, CompatibilityCache.Direction.CAN_READ, withId)
+            def second = cache.check(record('{"name":"id","type":"string"},{"name":"name","type":"string","default":""}'), CompatibilityCache.Direction.CAN_READ, withId)
+            def reversed = cache.check(withIdAndName, CompatibilityCache.Direction.CAN_BE_READ_BY, withId)
+        then:
+            first == null
+            second == null
+            reversed == null
+            cache.missCount == 2
+            cache.hitCount == 1
+    }
+
+    def "confirm fingerprints worked out by the caller are used as they are"() {
+        given:
+            def cache = new CompatibilityCache(100, null)
+        when:
+            def first = cache.check(withIdAndName, 1L, CompatibilityCache.Direction.CAN_READ, withId, 2L)
+            // the same fingerprints stand for the same pair, so the schemas themselves are not looked at again
+            def second = cache.check(withName, 1L, CompatibilityCache.Direction.CAN_READ, withId, 2L)
+        then:
+            first == null
+            second == null
+            cache.missCount == 1
+            cache.hitCount == 1
+    }
+
+    def "confirm incompatibilities are cached along with their message"() {
+        given:
+            def cache = new CompatibilityCache(100, null)
+        when:
+            def messages = (1..2).collect { cache.check(withName, CompatibilityCache.Direction.CAN_READ, withId) }
+        then:
+            messages[0].contains("READER_FIELD_MISSING_DEFAULT_VALUE")
+            messages[1] == messages[0]
+            cache.hitCount == 1
+    }
+
+    def "confirm the least recently used results are evicted first"() {
+        given:
+            def cache = new CompatibilityCache(2, null)
+            cache.check(withId, CompatibilityCache.Direction.CAN_READ, withName)
+            cache.check(withName, CompatibilityCache.Direction.CAN_READ, withId)
+            cache.check(withId, CompatibilityCache.Direction.CAN_READ, withName)
+        when:
+            cache.check(withIdAndName, CompatibilityCache.Direction.CAN_READ, withId)
+            cache.check(withId, CompatibilityCache.Direction.CAN_READ, withName)
+            cache.check(withName, CompatibilityCache.Direction.CAN_READ, withId)
+        then:
+            cache.size() == 2
+            cache.hitCount == 2
+            cache.missCount == 4
+    }
+
+    def "confirm persisted results are reused by the next run"() {
+        given:
+            def directory = Files.createTempDirectory("compatibility-cache")
+            def file = directory.resolve("cache")
+            def firstRun = new CompatibilityCache(100, file)
+            def message = firstRun.check(withName, CompatibilityCache.Direction.CAN_READ, withId)
+            firstRun.check(withIdAndName, CompatibilityCache.Direction.CAN_READ, withId)
+            firstRun.save()
+        when:
+            def secondRun = new CompatibilityCache(100, file)
+            def results = [secondRun.check(withName, CompatibilityCache.Direction.CAN_READ, withId),
+                           secondRun.check(withIdAndName, CompatibilityCache.Direction.CAN_READ, withId)]
+        then:
+            results == [message, null]
+            secondRun.missCount == 0
+            secondRun.hitCount == 2
+        cleanup:
+            directory.toFile().deleteDir()
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.chasdevs.events.services.mediation
+
+import com.github.chasdevs.events.clients.registry.SchemaRegistryClient
+import com.github.chasdevs.events.clients.registry.SchemaRegistryException
+import com.github.chasdevs.events.util.SchemaFingerprint
+import org.apache.avro.Schema
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Subject
+
+import static com.github.chasdevs.events.util.SchemaFingerprint.Normalization.FULL
+import static com.github.chasdevs.events.util.TestUtility.record
+
+class CompatibilityEngineSpec extends Specification {
+
+    @Subject
+    CompatibilityEngine compatibilityEngine
+
+    SchemaRegistryClient registryClient
+
+    // v1 has a required id; v2 adds a name, optional or required; v3 drops the id and adds a required page
+    @Shared
+    Schema v1 = record('{"name":"id","type":"string"}')
+    @Shared
+    Schema v2 = record('{"name":"id","type":"string"},{"name":"name","type":"string","default":""}')
+    @Shared
+    Schema v2WithoutDefault = record('{"name":"id","type":"string"},{"name":"name","type":"string"}')
+    @Shared
+    Schema v3 = record('{"name":"name","type":"string","default":""},{"name":"page","type":"string"}')
+    @Shared
+    Schema v3WithDefault = record('{"name":"name","type":"string","default":""},{"name":"page","type":"string","default":""}')
+
+    def setup() {
+        registryClient = Mock()
+        compatibilityEngine = new CompatibilityEngine(registryClient, 4, new CompatibilityCache(100, null))
+    }
+
+    def "confirm each level checks the direction it names against the latest version"() {
+        expect:
+            (compatibilityEngine.checkLatest(level, local, SchemaFingerprint.of(local, FULL), latest) == null) == compatible
+        where:
+            level                              | local         | latest | compatible
+            CompatibilityEngine.Level.NONE     | v3            | v2     | true
+            CompatibilityEngine.Level.BACKWARD | v3            | v2     | false
+            CompatibilityEngine.Level.BACKWARD | v3WithDefault | v2     | true
+            CompatibilityEngine.Level.FORWARD  | v3WithDefault | v2     | false
+            CompatibilityEngine.Level.FORWARD  | v2            | v1     | true
+            CompatibilityEngine.Level.FULL     | v2            | v1     | true
+            CompatibilityEngine.Level.FULL     | v3WithDefault | v2     | false
+    }
+
+    def "confirm transitive levels check every version and name the ones that fail"() {
+        when:
+            def message = compatibilityEngine.checkHistory(CompatibilityEngine.Level.FORWARD_TRANSITIVE, v3WithDefault,
+                    SchemaFingerprint.of(v3WithDefault, FULL), new TreeMap([1: v1, 2: v2]))
+        then:
+            message.readLines().size() == 2
+            message.readLines()[0].startsWith("Not FORWARD_TRANSITIVE compatible with version 1")
+            message.readLines()[1].startsWith("Not FORWARD_TRANSITIVE compatible with version 2")
+    }
+
+    def "confirm levels and histories are fetched once per subject and only transitive levels fetch history"() {
+        when:
+            def failures = compatibilityEngine.check(["plain-value": v2WithoutDefault, "transitive-value": v2WithoutDefault],
+                    ["plain-value": v2, "transitive-value": v2])
+        then:
+            1 * registryClient.getCompatibilityLevel("plain-value") >> "BACKWARD"
+            1 * registryClient.getCompatibilityLevel("transitive-value") >> "backward_transitive"
+            0 * registryClient.getSchemaHistory("plain-value")
+            1 * registryClient.getSchemaHistory("transitive-value") >> new TreeMap([1: v1, 2: v2])
+            0 * registryClient.testCompatibility(_, _)
+            failures.keySet() == ["transitive-value"] as Set
+            failures["transitive-value"].startsWith("Not BACKWARD_TRANSITIVE compatible with version 1")
+    }
+
+    def "confirm subjects whose level cannot be fetched are reported rather than passed"() {
+        when:
+            def failures = compatibilityEngine.check(["broken-value": v2, "unknown-value": v2], ["broken-value": v1, "unknown-value": v1])
+        then:
+            1 * registryClient.getCompatibilityLevel("broken-value") >> { throw new SchemaRegistryException("Registry down") }
+            1 * registryClient.getCompatibilityLevel("unknown-value") >> "SOMETIMES"
+            failures.keySet() == ["broken-value", "unknown-value"] as Set
+            failures["broken-value"].endsWith("Registry down")
+            failures["unknown-value"].endsWith("Unknown compatibility level SOMETIMES")
+    }
+
+    def "confirm checking a single subject with an unknown level fails as a registry error"() {
+        given:
+            registryClient.getCompatibilityLevel("unknown-value") >> "SOMETIMES"
+        when:
+            compatibilityEngine.check("unknown-value", v2, v1)
+        then:
+            def e = thrown(SchemaRegistryException)
+            e.message == "Unknown compatibility level SOMETIMES"
+    }
+}
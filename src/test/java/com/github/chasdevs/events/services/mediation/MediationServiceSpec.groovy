@@ -2,10 +2,14 @@ package com.github.chasdevs.events.services.mediation
 
 import com.github.chasdevs.events.clients.registry.SchemaRegistryClient
 import com.github.chasdevs.events.clients.registry.SchemaRegistryException
+import com.github.chasdevs.events.clients.registry.SchemaRegistrySnapshotException
+import com.github.chasdevs.events.config.SchemaRegistryConfig
+import com.github.chasdevs.events.services.repo.RepoItem
 import com.github.chasdevs.events.services.repo.RepoItemType
 
 import com.github.chasdevs.events.services.repo.RepoService
 import com.github.chasdevs.events.util.NamingUtil
+import com.github.chasdevs.events.util.SchemaFingerprint
 import com.github.chasdevs.events.util.TestUtility
 import org.apache.avro.Schema
 import spock.lang.Specification
@@ -71,6 +75,83 @@ class MediationServiceSpec extends Specification{
             resultsMap.isEmpty()
     }
 
+    def "confirm a documentation-only change is not registered unless docs are part of the diff"() {
+        given:
+            def documentedSchema = new Schema.Parser().parse(schema.toString().replaceFirst('"fields"', '"doc":"A click on a page.","fields"'))
+            def config = new SchemaRegistryConfig("http://localhost:8081", 512)
+            config.diffNormalization = normalization
+            mediationService = new MediationService(registryClient, repoService, config)
+        when:
+            mediationService.syncLocalWithRemote()
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> [(RepoItemType.EVENT): [(eventName): documentedSchema]]
+            1 * registryClient.getCurrentRegistrySchemaMap() >> [(eventName): schema]
+            registrations * registryClient.register(eventName, documentedSchema)
+        where:
+            normalization                                         | registrations
+            SchemaFingerprint.Normalization.IGNORE_DOCS            | 0
+            SchemaFingerprint.Normalization.FULL                   | 1
+    }
+
+    def "confirm concurrent sync registers common schemas before events and reports failures in order"() {
+        given:
+            def config = new SchemaRegistryConfig("http://localhost:8081", 512)
+            config.maxInFlightRequests = 4
+            mediationService = new MediationService(registryClient, repoService, config)
+            def commons = (1..6).collectEntries { ["common-$it-value".toString(), schema] }
+            def events = (1..6).collectEntries { ["event-$it-value".toString(), schema] }
+            def localMap = [(RepoItemType.EVENT):events, (RepoItemType.COMMON):commons]
+            def registered = Collections.synchronizedList([])
+        when:
+            mediationService.syncLocalWithRemote()
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> localMap
+            1 * registryClient.getCurrentRegistrySchemaMap() >> [:]
+            12 * registryClient.register(_, schema) >> { String subject, Schema s ->
+                registered.add(subject)
+                if (subject.endsWith("5-value")) {
+                    throw new SchemaRegistryException("Failed " + subject)
+                }
+                return 1
+            }
+            1 * registryClient.saveSnapshot()
+            def e = thrown(MediationServiceException)
+            e.message == "Sync completed with some failures. Updated schemas and their registration results:\n\n" +
+                    "common:\ncommon-5-value: Failed common-5-value\n\n" +
+                    ":\nevent-5-value: Failed event-5-value\n\n"
+            registered.subList(0, 6).every { it.startsWith("common") }
+            registered.subList(6, 12).every { it.startsWith("event") }
+    }
+
+    def "confirm subjects missing from a partial registry snapshot are reported rather than registered"() {
+        given:
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            def localMap = [(RepoItemType.EVENT):[(eventName):updatedSchema, "other-event":updatedSchema]]
+            def snapshotFailure = new SchemaRegistrySnapshotException(["other-event":schema], [(eventName):"Timed out after 200 ms"])
+        when:
+            mediationService.syncLocalWithRemote()
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> localMap
+            1 * registryClient.getCurrentRegistrySchemaMap() >> { throw snapshotFailure }
+            1 * registryClient.register("other-event", updatedSchema)
+            0 * registryClient.register(eventName, _)
+            def e = thrown(MediationServiceException)
+            e.message.contains("click-event: Could not fetch the current schema from the registry: Timed out after 200 ms")
+    }
+
+    def "confirm only local subjects are fetched from the registry when configured"() {
+        given:
+            mediationService = new MediationService(registryClient, repoService, new SchemaRegistryConfig(snapshotLocalSubjectsOnly: true))
+            def localMap = [(RepoItemType.EVENT):[(eventName):schema]]
+        when:
+            def resultsMap = mediationService.syncLocalWithRemote()
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> localMap
+            0 * registryClient.getCurrentRegistrySchemaMap()
+            1 * registryClient.getRegistrySchemaMap({ it as Set == [eventName] as Set }) >> [(eventName):schema]
+            resultsMap.isEmpty()
+    }
+
     def "confirm interactions when testing compatibility of local repo with matching remote"() {
         given:
             def registryMap = [(eventName):schema]
@@ -127,6 +208,21 @@ class MediationServiceSpec extends Specification{
             notThrown(MediationServiceException)
     }
 
+    def "confirm compatibility is checked in process against the subject's level when local checks are enabled"() {
+        given:
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            def localService = new MediationService(registryClient, repoService, new SchemaRegistryConfig(localCompatibilityChecks: true))
+        when:
+            def resultsMap = localService.testGlobalCompatibility()
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> [(RepoItemType.EVENT):[(eventName):updatedSchema, "unchanged-event":schema]]
+            1 * registryClient.getCurrentRegistrySchemaMap() >> [(eventName):schema, "unchanged-event":schema]
+            1 * registryClient.getCompatibilityLevel(eventName) >> "NONE"
+            0 * registryClient.getCompatibilityLevel("unchanged-event")
+            0 * registryClient.testCompatibility(_, _)
+            resultsMap.isEmpty()
+    }
+
     def "confirm interactions when testing compatibility of a single event that is the same as its remote counterpart"() {
         given:
             def registrySubjectName = NamingUtil.fromLocalToRegistrySubject(eventName)
@@ -188,4 +284,60 @@ class MediationServiceSpec extends Specification{
             results == "Compatibility check completed with some failures. Updated schemas and their compatibility test results:\n\n    test-event:\n        Bad schema yo"
     }
 
+    def "confirm a scoped sync only builds the maps for the impacted items"() {
+        given:
+            def scope = [new RepoItem(eventName, RepoItemType.EVENT, null)]
+            def subject = NamingUtil.fromLocalToRegistrySubject(eventName)
+        when:
+            def resultsMap = mediationService.syncLocalWithRemote(scope)
+        then:
+            1 * repoService.getLocalRepoSchemaMap(scope) >> [(RepoItemType.EVENT): [(subject): schema]]
+            1 * registryClient.getRegistrySchemaMap({ it as Set == [subject] as Set }) >> [:]
+            0 * repoService.getLocalRepoSchemaMap()
+            0 * registryClient.getCurrentRegistrySchemaMap()
+            1 * registryClient.register(subject, schema)
+            resultsMap.isEmpty()
+    }
+
+    def "confirm a streamed sync reports every subject as it goes without collecting results"() {
+        given:
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            def localMap = [(RepoItemType.EVENT):[(eventName):schema, "new-event":updatedSchema, "broken-event":updatedSchema]]
+            def results = []
+        when:
+            mediationService.syncLocalWithRemote(null, { results.add(it) })
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> localMap
+            1 * registryClient.getCurrentRegistrySchemaMap() >> [(eventName):schema]
+            1 * registryClient.register("new-event", updatedSchema) >> 1
+            1 * registryClient.register("broken-event", updatedSchema) >> { throw new SchemaRegistryException("Rejected") }
+            1 * registryClient.saveSnapshot()
+            notThrown(MediationServiceException)
+            results.collect { [it.subject, it.action, it.result] } == [
+                    [eventName, SubjectResult.Action.SKIP, SubjectResult.Result.UNCHANGED],
+                    ["broken-event", SubjectResult.Action.REGISTER, SubjectResult.Result.FAILED],
+                    ["new-event", SubjectResult.Action.REGISTER, SubjectResult.Result.REGISTERED]
+            ]
+            results[1].message == "Rejected"
+    }
+
+    def "confirm a streamed compatibility test reports new, unchanged and incompatible subjects"() {
+        given:
+            def updatedSchema = TestUtility.updatedSchemaFixtureData.get()
+            def localMap = [(RepoItemType.EVENT):[(eventName):updatedSchema, "same-event":schema, "new-event":schema]]
+            def results = []
+        when:
+            mediationService.testGlobalCompatibility(null, { results.add(it) })
+        then:
+            1 * repoService.getLocalRepoSchemaMap() >> localMap
+            1 * registryClient.getCurrentRegistrySchemaMap() >> [(eventName):schema, "same-event":schema]
+            1 * registryClient.testCompatibility(eventName, updatedSchema) >> false
+            notThrown(MediationServiceException)
+            results.collectEntries { [it.subject, it.result] } == [
+                    (eventName):SubjectResult.Result.INCOMPATIBLE,
+                    "same-event":SubjectResult.Result.UNCHANGED,
+                    "new-event":SubjectResult.Result.NEW
+            ]
+    }
+
 }
@@ -0,0 +1,85 @@
+package com.github.chasdevs.events.services.metrics
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.chasdevs.events.config.MetricsConfig
+import io.micrometer.core.instrument.MockClock
+import io.micrometer.core.instrument.simple.SimpleConfig
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.time.Duration
+
+class MetricsServiceSpec extends Specification {
+
+    @Subject
+    MetricsService metricsService
+
+    SimpleMeterRegistry registry
+    MetricsConfig config
+
+    def setup() {
+        registry = new SimpleMeterRegistry()
+        config = new MetricsConfig()
+        metricsService = new MetricsService(registry, config)
+    }
+
+    def "confirm timers are reported with the configured percentiles"() {
+        given:
+            def timer = registry.timer("events.parse", "outcome", "success")
+            (1..100).each { timer.record(Duration.ofMillis(it)) }
+            registry.counter("events.parse.cache", "result", "hit").increment(3)
+        when:
+            def stats = metricsService.getStats().readLines()
+        then:
+            stats[0].split(/\s+/) == ["meter", "count", "total", "ms", "mean", "ms", "p50", "p90", "p99", "max", "ms"]
+            stats[1].startsWith("events.parse{outcome=success}")
+            stats[1].split(/\s+/)[1] == "100"
+            stats[1].split(/\s+/)[-1] == "100.00"
+            stats[2].split(/\s+/) == ["events.parse.cache{result=hit}", "3"]
+    }
+
+    def "confirm percentiles and max cover everything recorded, like the count and total"() {
+        given:
+            def clock = new MockClock()
+            registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock)
+            metricsService = new MetricsService(registry, config)
+            def timer = registry.timer("events.parse", "outcome", "success")
+            (1..100).each { timer.record(Duration.ofMillis(it)) }
+        when:
+            clock.add(Duration.ofHours(1))
+            def stats = metricsService.getStats().readLines()[1].split(/\s+/)
+        then:
+            stats[1] == "100"
+            stats[-1] == "100.00"
+            Double.parseDouble(stats[-2]) > 90
+    }
+
+    def "confirm metrics are dumped as JSON on exit when a dump file is configured"() {
+        given:
+            def directory = Files.createTempDirectory("metrics")
+            config.dumpFile = directory.resolve("ci/metrics.json").toString()
+            metricsService = new MetricsService(registry, config)
+            registry.timer("events.registry.calls", "method", "register", "outcome", "failure").record(Duration.ofMillis(5))
+        when:
+            metricsService.dump()
+            def json = new ObjectMapper().readTree(directory.resolve("ci/metrics.json").toFile())
+        then:
+            json.size() == 1
+            json[0].get("name").asText() == "events.registry.calls"
+            json[0].get("tags").get("method").asText() == "register"
+            json[0].get("count").asLong() == 1
+            json[0].get("percentilesMs").has("p99")
+        cleanup:
+            directory.toFile().deleteDir()
+    }
+
+    def "confirm nothing is written without a dump file"() {
+        when:
+            metricsService.dump()
+        then:
+            notThrown(Exception)
+            metricsService.getStats() == "Nothing has been recorded yet"
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.chasdevs.events.services.performance
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.chasdevs.events.config.LocalRepoConfig
+import com.github.chasdevs.events.services.repo.RepoService
+import org.apache.avro.Schema
+import org.apache.avro.compiler.specific.SpecificCompiler
+
+import spock.lang.Specification
+
+import javax.tools.ToolProvider
+import java.nio.file.Files
+import java.nio.file.Path
+
+class SchemaBenchmarkSpec extends Specification {
+
+    Schema schema
+
+    def setup() {
+        def config = new LocalRepoConfig("src/test/resources/avro", 2)
+        config.indexFile = ""
+        schema = new RepoService(config).getSchema("click-event")
+    }
+
+    def options(int records) {
+        def options = new SchemaBenchmark.Options()
+        options.recordCount = records
+        options.warmupIterations = 1
+        options.iterations = 3
+        options
+    }
+
+    def "confirm the generic api is measured on records that are the same for the same seed"() {
+        when:
+            def first = new SchemaBenchmark(options(50)).run(schema)
+            def second = new SchemaBenchmark(options(50)).run(schema)
+        then:
+            first.schemaName == "example.ClickEvent"
+            first.measurements*.api == ["generic"]
+            first.measurements[0].encodeRecordsPerSecond > 0
+            first.measurements[0].decodeRecordsPerSecond > 0
+            first.measurements[0].encodeAllocatedBytesPerRecord >= 0
+            first.encodedBytesPerRecord > 0
+            first.encodedBytesPerRecord == second.encodedBytesPerRecord
+            first.fingerprint == second.fingerprint
+            first.toString().contains("generic")
+            new ObjectMapper().readTree(first.toJson()).get("apis").get(0).get("api").asText() == "generic"
+    }
+
+    def "confirm the specific api is measured too once the generated class can be loaded"() {
+        given:
+            Path generated = Files.createTempDirectory("generated-java")
+            new SpecificCompiler(schema).compileToDestination(null, generated.toFile())
+            def sources = []
+            generated.toFile().eachFileRecurse { if(it.name.endsWith(".java")) sources << it.path }
+            ToolProvider.systemJavaCompiler.run(null, null, null, ["-d", generated.toString(), "-cp", System.getProperty("java.class.path")] + sources as String[])
+            def options = options(20)
+            options.classLoader = new URLClassLoader([generated.toUri().toURL()] as URL[], getClass().classLoader)
+        when:
+            def result = new SchemaBenchmark(options).run(schema)
+        then:
+            result.measurements*.api == ["generic", "specific"]
+            result.measurements[1].decodeRecordsPerSecond > 0
+        cleanup:
+            generated.toFile().deleteDir()
+    }
+
+    def "confirm a benchmark without records or measured iterations is refused"() {
+        when:
+            new SchemaBenchmark(options(0))
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.chasdevs.events.services.performance
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.chasdevs.events.config.LocalRepoConfig
+import com.github.chasdevs.events.config.PerformanceBudgetConfig
+import com.github.chasdevs.events.services.repo.RepoService
+import com.github.chasdevs.events.services.repo.RepoServiceException
+import spock.lang.Specification
+
+class SchemaCostAnalyzerSpec extends Specification {
+
+    LocalRepoConfig config
+    PerformanceBudgetConfig budget = new PerformanceBudgetConfig()
+
+    def setup() {
+        config = new LocalRepoConfig("src/test/resources/avro", 2)
+        config.indexFile = ""
+    }
+
+    def "confirm every schema is ranked by its decode cost, costliest first"() {
+        given:
+            def analyzer = new SchemaCostAnalyzer(new RepoService(config), budget, config)
+        when:
+            def report = analyzer.analyze()
+        then:
+            report.ranked*.name == ["click-event", "meta", "http-headers", "jvm-languages"]
+            report.ranked*.decodeCost == report.ranked*.decodeCost.sort(false).reverse()
+            report.errors.isEmpty()
+            report.overBudget.isEmpty()
+            report.toString(2).readLines().size() == 4
+            new ObjectMapper().readTree(report.toJson(1)).get("schemas").size() == 1
+    }
+
+    def "confirm validate only enforces the budget once it is enforced"() {
+        given:
+            budget.maxEncodedBytes = 10
+            def repoService = new RepoService(config, [new PerformanceBudgetRule(budget)])
+        when:
+            repoService.validate("click-event")
+        then:
+            notThrown(RepoServiceException)
+        when:
+            budget.enforced = true
+            repoService.validate("click-event")
+        then:
+            def e = thrown(RepoServiceException)
+            e.message.startsWith("click-event is over its performance budget: estimated encoded size")
+    }
+}
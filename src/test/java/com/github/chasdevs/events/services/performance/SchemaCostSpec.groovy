@@ -0,0 +1,79 @@
+package com.github.chasdevs.events.services.performance
+
+import com.github.chasdevs.events.config.PerformanceBudgetConfig
+import org.apache.avro.Schema
+import spock.lang.Specification
+
+class SchemaCostSpec extends Specification {
+
+    PerformanceBudgetConfig budget = new PerformanceBudgetConfig()
+
+    def "confirm size and decode cost are estimated from the structure of the schema"() {
+        given:
+            def schema = new Schema.Parser().parse('''{"type":"record","name":"R","namespace":"example","fields":[
+                {"name":"a","type":"int"},
+                {"name":"b","type":["null","string"]},
+                {"name":"c","type":{"type":"array","items":"long"}},
+                {"name":"d","type":{"type":"map","values":"boolean"}}]}''')
+        when:
+            def cost = SchemaCost.estimate("r", schema, budget)
+        then:
+            cost.encodedBytes == 112.5d
+            cost.decodeCost == 30d
+            cost.nestingDepth == 2
+            cost.maxUnionBranches == 2
+            cost.fieldCount == 4
+            cost.optionalFieldRatio == 0.25d
+            cost.getBudgetViolations(budget).isEmpty()
+    }
+
+    def "confirm every threshold the schema is over is described"() {
+        given:
+            def schema = new Schema.Parser().parse('''{"type":"record","name":"Outer","namespace":"example","fields":[
+                {"name":"inner","type":["null",{"type":"record","name":"Inner","fields":[
+                    {"name":"value","type":["null","int","long","string","double"]}]}]}]}''')
+            budget.maxNestingDepth = 1
+            budget.maxUnionBranches = 4
+            budget.maxOptionalFieldRatio = 0.5
+        when:
+            def violations = SchemaCost.estimate("outer", schema, budget).getBudgetViolations(budget)
+        then:
+            violations == ["nesting depth 2 is over 1", "union of 5 branches is over 4", "optional field ratio 1.00 is over 0.50"]
+    }
+
+    def "confirm a recursive type is walked once along each path"() {
+        given:
+            def schema = new Schema.Parser().parse('''{"type":"record","name":"Node","namespace":"example","fields":[
+                {"name":"value","type":"int"},
+                {"name":"next","type":["null","Node"]}]}''')
+        when:
+            def cost = SchemaCost.estimate("node", schema, budget)
+        then:
+            cost.encodedBytes == 4d
+            cost.fieldCount == 2
+            cost.nestingDepth == 1
+    }
+
+    def "confirm records shared between schemas are walked once and estimated as if they were not"() {
+        given:
+            def schemas = ["A", "B"].collect { name ->
+                new Schema.Parser().parse("""{"type":"record","name":"${name}","namespace":"example","fields":[
+                    {"name":"meta","type":{"type":"record","name":"Meta","fields":[
+                        {"name":"id","type":"string"},{"name":"tags","type":{"type":"array","items":["null","string"]}}]}},
+                    {"name":"next","type":["null","${name}"]}]}""")
+            }
+            def estimator = new SchemaCost.Estimator(budget)
+        when:
+            def costs = schemas.collect { estimator.estimate(it.name, it) }
+        then:
+            // Meta is remembered once, but neither recursive record is
+            estimator.recordCount == 1
+            [costs, schemas.collect { SchemaCost.estimate(it.name, it, budget) }].transpose().every { remembered, fresh ->
+                [remembered.encodedBytes, remembered.decodeCost, remembered.nestingDepth, remembered.maxUnionBranches,
+                 remembered.fieldCount, remembered.optionalFieldRatio] ==
+                        [fresh.encodedBytes, fresh.decodeCost, fresh.nestingDepth, fresh.maxUnionBranches, fresh.fieldCount, fresh.optionalFieldRatio]
+            }
+            costs[0].nestingDepth == 3
+            costs[0].fieldCount == 4
+    }
+}
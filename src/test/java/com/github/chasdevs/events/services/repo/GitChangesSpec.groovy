@@ -0,0 +1,101 @@
+package com.github.chasdevs.events.services.repo
+
+import com.github.chasdevs.events.config.LocalRepoConfig
+import org.eclipse.jgit.api.Git
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+class GitChangesSpec extends Specification {
+
+    Path workTree
+    Path schemas
+    Git git
+
+    def setup() {
+        workTree = Files.createTempDirectory("git-changes").toRealPath()
+        schemas = workTree.resolve("schemas")
+        Paths.get("src/test/resources/avro").toFile().eachFileRecurse { file ->
+            if(file.isFile()) {
+                def target = schemas.resolve(Paths.get("src/test/resources/avro").relativize(file.toPath()))
+                Files.createDirectories(target.parent)
+                Files.copy(file.toPath(), target)
+            }
+        }
+        git = Git.init().setDirectory(workTree.toFile()).call()
+        commit("Add schemas")
+        git.branchCreate().setName("base").call()
+    }
+
+    def cleanup() {
+        git.close()
+        workTree.toFile().deleteDir()
+    }
+
+    def commit(String message) {
+        git.add().addFilepattern(".").call()
+        git.add().addFilepattern(".").setUpdate(true).call()
+        git.commit().setMessage(message).setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").call()
+    }
+
+    def "confirm committed, uncommitted, untracked and deleted IDL files all count as changed"() {
+        given:
+            schemas.resolve("common/Meta.avdl").toFile().append("\n// committed")
+            Files.writeString(workTree.resolve("README.md"), "not a schema")
+            commit("Change meta")
+            schemas.resolve("ClickEvent.avdl").toFile().append("\n// uncommitted")
+            Files.writeString(schemas.resolve("New.avdl"), "protocol New {}")
+            Files.delete(schemas.resolve("JvmLanguages.avdl"))
+        when:
+            def changed = GitChanges.getChangedFiles(schemas, "base")
+        then:
+            changed == [
+                    schemas.resolve("ClickEvent.avdl"),
+                    schemas.resolve("JvmLanguages.avdl"),
+                    schemas.resolve("New.avdl"),
+                    schemas.resolve("common/Meta.avdl")
+            ] as Set
+    }
+
+    def "confirm changes made on the ref after the branch forked off it are not counted"() {
+        given:
+            git.checkout().setName("base").call()
+            schemas.resolve("common/HttpHeaders.avdl").toFile().append("\n// on base")
+            commit("Change headers on base")
+            git.checkout().setName("master").call()
+            schemas.resolve("ClickEvent.avdl").toFile().append("\n// on branch")
+            commit("Change click event on branch")
+        when:
+            def changed = GitChanges.getChangedFiles(schemas, "base")
+        then:
+            changed == [schemas.resolve("ClickEvent.avdl")] as Set
+    }
+
+    def "confirm an unknown ref is reported"() {
+        when:
+            GitChanges.getChangedFiles(schemas, "no-such-branch")
+        then:
+            def e = thrown(RepoServiceException)
+            e.message == "Unknown git ref no-such-branch"
+    }
+
+    def "confirm changed files map to their items and the items importing them"() {
+        given:
+            def config = new LocalRepoConfig(schemas.toString(), 2)
+            config.indexFile = ""
+            def repoService = new RepoService(config)
+            schemas.resolve("common/Meta.avdl").toFile().append("\n// changed")
+        when:
+            def items = repoService.getItemsChangedSince("base")
+        then:
+            items*.name == ["meta", "click-event"]
+            repoService.validateChangesSince("base").itemCount == 2
+            repoService.getItemsChangedSince("master").size() == 2
+        when:
+            commit("Change meta")
+        then:
+            repoService.getItemsChangedSince("HEAD").isEmpty()
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.chasdevs.events.services.repo
+
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+class ParsedProtocolCacheSpec extends Specification {
+
+    @Subject
+    ParsedProtocolCache cache
+
+    Path tempRoot
+    Path eventPath
+    Path commonPath
+
+    def setup() {
+        cache = new ParsedProtocolCache()
+        tempRoot = Files.createTempDirectory("parsed-protocol-cache")
+        Files.createDirectories(tempRoot.resolve("common"))
+        eventPath = Files.copy(Paths.get("src/test/resources/avro/ClickEvent.avdl"), tempRoot.resolve("ClickEvent.avdl"))
+        commonPath = Files.copy(Paths.get("src/test/resources/avro/common/Meta.avdl"), tempRoot.resolve("common/Meta.avdl"))
+    }
+
+    def cleanup() {
+        Files.walk(tempRoot)
+                .sorted(Comparator.reverseOrder())
+                .forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm a file is only parsed once while it is unchanged"() {
+        when:
+            def first = cache.get(eventPath)
+            def second = cache.get(eventPath)
+        then:
+            first.is(second)
+            cache.missCount == 1
+            cache.hitCount == 1
+    }
+
+    def "confirm changing a file causes it to be parsed again"() {
+        given:
+            cache.get(eventPath)
+        when:
+            Files.writeString(eventPath, Files.readString(eventPath).replace("string bar;", "string bar;\n    int baz;"))
+            def protocol = cache.get(eventPath)
+        then:
+            cache.missCount == 2
+            protocol.getType("example.ClickEvent").getField("baz") != null
+    }
+
+    def "confirm changing an imported file causes the importing file to be parsed again"() {
+        given:
+            cache.get(eventPath)
+        when:
+            Files.writeString(commonPath, Files.readString(commonPath).replace("string eventOrigin;", "string eventOrigin;\n    int eventVersion;"))
+            def protocol = cache.get(eventPath)
+        then:
+            cache.missCount == 2
+            protocol.getType("example.common.Meta").getField("eventVersion") != null
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.chasdevs.events.services.repo
+
+import com.github.chasdevs.events.util.MetricsUtil
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.nio.file.attribute.BasicFileAttributes
+
+class RepoIndexSpec extends Specification {
+
+    @Subject
+    RepoIndex repoIndex
+
+    Path tempRoot
+    Path indexFile
+
+    def setup() {
+        tempRoot = Files.createTempDirectory("repo-index")
+        Files.createDirectories(tempRoot.resolve("common"))
+        Files.copy(Paths.get("src/test/resources/avro/ClickEvent.avdl"), tempRoot.resolve("ClickEvent.avdl"))
+        Files.copy(Paths.get("src/test/resources/avro/common/Meta.avdl"), tempRoot.resolve("common/Meta.avdl"))
+        indexFile = tempRoot.resolve(".events-index")
+        repoIndex = new RepoIndex(tempRoot, indexFile)
+    }
+
+    def cleanup() {
+        Files.walk(tempRoot)
+                .sorted(Comparator.reverseOrder())
+                .forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm items are indexed by name and type"() {
+        when:
+            def event = repoIndex.find("CLICK-EVENT")
+            def common = repoIndex.find("meta")
+        then:
+            event.repoItemType == RepoItemType.EVENT
+            event.pathToFile == tempRoot.resolve("ClickEvent.avdl")
+            common.repoItemType == RepoItemType.COMMON
+            repoIndex.list(RepoItemType.EVENT)*.name == ["click-event"]
+            repoIndex.list(RepoItemType.COMMON)*.name == ["meta"]
+            Files.exists(indexFile)
+    }
+
+    def "confirm items added to or removed from a subdirectory are picked up"() {
+        given:
+            repoIndex.list(RepoItemType.EVENT)
+            def subdirectory = Files.createDirectories(tempRoot.resolve("content/video"))
+        when:
+            Files.copy(Paths.get("src/test/resources/JvmLanguages.avdl"), subdirectory.resolve("JvmLanguages.avdl"))
+        then:
+            repoIndex.find("jvm-languages").pathToFile == subdirectory.resolve("JvmLanguages.avdl")
+        when:
+            Files.delete(subdirectory.resolve("JvmLanguages.avdl"))
+        then:
+            repoIndex.find("jvm-languages") == null
+            repoIndex.list(RepoItemType.EVENT)*.name == ["click-event"]
+    }
+
+    def "confirm names are completed from their prefix, ignoring case, and kept up to date with the file system"() {
+        expect:
+            repoIndex.complete("") == ["click-event", "meta"]
+            repoIndex.complete("CL") == ["click-event"]
+            repoIndex.complete("x").isEmpty()
+        when:
+            Files.copy(Paths.get("src/test/resources/JvmLanguages.avdl"), tempRoot.resolve("common/JvmLanguages.avdl"))
+            Files.delete(tempRoot.resolve("common/Meta.avdl"))
+        then:
+            repoIndex.complete("") == ["click-event", "jvm-languages"]
+            repoIndex.complete("Jvm-") == ["jvm-languages"]
+    }
+
+    def "confirm a persisted index is reused by a new instance, and only rewritten when its items change"() {
+        given:
+            def item = repoIndex.find("click-event")
+            // the index is moved into place whenever it is written, which gives it a new file key
+            def written = { Files.readAttributes(indexFile, BasicFileAttributes).fileKey() }
+            def firstWrite = written()
+        when:
+            repoIndex.refresh()
+            def reloaded = new RepoIndex(tempRoot, indexFile)
+        then:
+            reloaded.find("click-event") == item
+            written() == firstWrite
+            !Files.list(tempRoot).anyMatch { it.toString().endsWith(".tmp") }
+        when:
+            Files.copy(Paths.get("src/test/resources/JvmLanguages.avdl"), tempRoot.resolve("common/JvmLanguages.avdl"))
+            reloaded.refresh()
+        then:
+            written() != firstWrite
+    }
+
+    def "confirm each refresh is timed as a repo scan, tagged with whether anything had changed"() {
+        given:
+            def registry = new SimpleMeterRegistry()
+            Metrics.addRegistry(registry)
+            def scans = { changed -> registry.find(MetricsUtil.REPO_SCAN).tags("changed", changed, MetricsUtil.OUTCOME, MetricsUtil.SUCCESS).timer()?.count() ?: 0 }
+        when:
+            repoIndex.refresh()
+            repoIndex.refresh()
+        then:
+            scans("true") == 1
+            scans("false") == 1
+        cleanup:
+            Metrics.removeRegistry(registry)
+    }
+}
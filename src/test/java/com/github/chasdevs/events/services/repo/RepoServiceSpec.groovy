@@ -27,6 +27,7 @@ class RepoServiceSpec extends Specification {
         repoRoot = "src/test/resources/avro"
         allowedNamespaceDepth = 2
         config = new LocalRepoConfig(repoRoot, allowedNamespaceDepth)
+        config.indexFile = ""
         eventName = "click-event"
         commonName = "http-headers"
         repoService = new RepoService(config)
@@ -146,6 +147,34 @@ class RepoServiceSpec extends Specification {
             thrown(RepoServiceException)
     }
 
+    def "confirm validating the local repo in parallel reports errors sorted by type and name"() {
+        given:
+            config.validationParallelism = 4
+            createConcreteImplementations()
+            for(fixture in ["EnumWithoutSymbolOutdatedSchema.avdl", "EnumWithoutDefaultValue.avdl"]) {
+                def currentLocation = Paths.get("src/test/resources/" + fixture)
+                addToCleanupList(Files.copy(currentLocation, Paths.get(repoRoot).resolve(currentLocation.getFileName())))
+            }
+        when:
+            repoService.validateLocalRepo()
+        then:
+            def e = thrown(RepoServiceException)
+            e.message.startsWith("Local repo has validation errors:\n\n:\nenum-without-default-value: ")
+            e.message.indexOf("enum-without-default-value: ") < e.message.indexOf("enum-without-symbol-outdated-schema: ")
+    }
+
+    def "confirm validating the local repo reports a timing summary"() {
+        given:
+            config.validationParallelism = 2
+            createConcreteImplementations()
+        when:
+            def summary = repoService.validateLocalRepo()
+        then:
+            summary.itemCount == 4
+            summary.parallelism == 2
+            summary.wallClockNanos > 0
+    }
+
     def "confirm validating a perfect enum works as expected"() {
         given:
             createConcreteImplementations()
@@ -155,5 +184,30 @@ class RepoServiceSpec extends Specification {
             notThrown(RepoServiceException)
     }
 
+    def "confirm a change to an imported file affects the items importing it"() {
+        when:
+            def affected = repoService.getItemsAffectedBy([Paths.get(repoRoot, "common/Meta.avdl")])
+        then:
+            affected*.name as Set == ["meta", "click-event"] as Set
+        when:
+            affected = repoService.getItemsAffectedBy([Paths.get(repoRoot, "ClickEvent.avdl")])
+        then:
+            affected*.name == ["click-event"]
+            repoService.validateItems(affected).isEmpty()
+    }
+
+    def "confirm the impact of a schema covers the schemas importing it"() {
+        when:
+            def impacted = repoService.getImpactedItems("meta")
+        then:
+            impacted*.name == ["meta", "click-event"]
+            repoService.getImpactedItems(eventName)*.name == [eventName]
+        when:
+            def summary = repoService.validateImpactOf("meta")
+        then:
+            summary.itemCount == 2
+            repoService.getLocalRepoSchemaMap(impacted).collectEntries { type, schemas -> [type, schemas.keySet()] } ==
+                    [(RepoItemType.COMMON): ["meta-value"] as Set, (RepoItemType.EVENT): ["click-event-value"] as Set]
+    }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,72 @@
+package com.github.chasdevs.events.services.repo
+
+import com.github.chasdevs.events.config.LocalRepoConfig
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class RepoWatcherSpec extends Specification {
+
+    @Subject
+    RepoWatcher repoWatcher
+
+    Path tempRoot
+    LinkedBlockingQueue<String> reports = new LinkedBlockingQueue<>()
+
+    def setup() {
+        tempRoot = Files.createTempDirectory("repo-watcher")
+        Files.createDirectories(tempRoot.resolve("common"))
+        Files.copy(Paths.get("src/test/resources/avro/ClickEvent.avdl"), tempRoot.resolve("ClickEvent.avdl"))
+        Files.copy(Paths.get("src/test/resources/avro/common/Meta.avdl"), tempRoot.resolve("common/Meta.avdl"))
+        def config = new LocalRepoConfig(tempRoot.toString(), 2)
+        config.indexFile = ""
+        config.watchDebounceMs = 50
+        repoWatcher = new RepoWatcher(new RepoService(config), config)
+    }
+
+    def cleanup() {
+        repoWatcher.stop()
+        Files.walk(tempRoot)
+                .sorted(Comparator.reverseOrder())
+                .forEach({ i -> Files.delete(i) })
+    }
+
+    def "confirm saving an imported file revalidates it and the files importing it"() {
+        given:
+            repoWatcher.start({ reports.add(it) })
+        when:
+            def meta = tempRoot.resolve("common/Meta.avdl")
+            Files.writeString(meta, Files.readString(meta).replace("string eventOrigin;", "string eventOrigin; string eventSource;"))
+            def report = reports.poll(10, TimeUnit.SECONDS)
+        then:
+            report.startsWith("Meta.avdl changed: revalidated 2 schema(s)")
+            report.contains("click-event: valid")
+            report.contains("meta: valid")
+    }
+
+    def "confirm an invalid save is reported without revalidating unrelated files"() {
+        given:
+            repoWatcher.start({ reports.add(it) })
+        when:
+            def event = tempRoot.resolve("ClickEvent.avdl")
+            Files.writeString(event, Files.readString(event).replace("record ClickEvent {", "record ClickEvent {{"))
+            def report = reports.poll(10, TimeUnit.SECONDS)
+        then:
+            report.startsWith("ClickEvent.avdl changed: revalidated 1 schema(s)")
+            report.contains("click-event: Invalid AVDL file")
+            !report.contains("meta:")
+    }
+
+    def "confirm the watcher can only be started once and stopped once"() {
+        expect:
+            repoWatcher.start({ reports.add(it) })
+            !repoWatcher.start({ reports.add(it) })
+            repoWatcher.stop()
+            !repoWatcher.stop()
+    }
+}
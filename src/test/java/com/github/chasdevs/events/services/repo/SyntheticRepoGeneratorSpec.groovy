@@ -0,0 +1,72 @@
+package com.github.chasdevs.events.services.repo
+
+import com.github.chasdevs.events.config.LocalRepoConfig
+import com.github.chasdevs.events.util.TestUtility
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class SyntheticRepoGeneratorSpec extends Specification {
+
+    List<Path> roots = []
+
+    def cleanup() {
+        roots.each { TestUtility.deleteRepo(it) }
+    }
+
+    Path generate(SyntheticRepoGenerator.Options options) {
+        def root = Files.createTempDirectory("synthetic-repo")
+        roots.add(root)
+        new SyntheticRepoGenerator(options).generate(root)
+        return root
+    }
+
+    Map<String, String> contents(Path root) {
+        Files.walk(root).findAll { Files.isRegularFile(it) }.collectEntries { [(root.relativize(it).toString()): Files.readString(it)] }
+    }
+
+    def "confirm a generated repo is valid for the local repo"() {
+        given:
+            def root = TestUtility.generateRepo(200, 42)
+            roots.add(root)
+            def config = new LocalRepoConfig(root.toString(), 2)
+            config.indexFile = ""
+        when:
+            def summary = new RepoService(config).validateLocalRepo()
+        then:
+            summary.itemCount == 200
+    }
+
+    def "confirm the same seed generates the same repo and a different seed a different one"() {
+        given:
+            def options = new SyntheticRepoGenerator.Options(schemaCount: 50, seed: 7)
+            def otherOptions = new SyntheticRepoGenerator.Options(schemaCount: 50, seed: 8)
+        expect:
+            contents(generate(options)) == contents(generate(options))
+            contents(generate(options)) != contents(generate(otherOptions))
+    }
+
+    def "confirm namespace depth, import fan-out and field shapes follow the options"() {
+        given:
+            def options = new SyntheticRepoGenerator.Options(schemaCount: 100, namespaceDepth: 1, importFanOut: 3,
+                    minFields: 4, maxFields: 4, unionDensity: 0, enumDensity: 0, mapDensity: 1)
+        when:
+            def root = generate(options)
+            def events = Files.walk(root).findAll { it.toString().endsWith(".avdl") && !it.startsWith(root.resolve("common")) }
+        then:
+            events.size() == 90
+            events.every { root.relativize(it).nameCount <= 2 }
+            events.every { Files.readString(it).count("import idl") == 3 }
+            events.every { Files.readString(it).count(" map<") == 4 }
+    }
+
+    def "confirm a non-empty target directory is refused"() {
+        given:
+            def root = generate(new SyntheticRepoGenerator.Options(schemaCount: 5))
+        when:
+            new SyntheticRepoGenerator(new SyntheticRepoGenerator.Options(schemaCount: 5)).generate(root)
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
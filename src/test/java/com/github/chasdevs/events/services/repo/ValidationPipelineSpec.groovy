@@ -0,0 +1,150 @@
+package com.github.chasdevs.events.services.repo
+
+import com.github.chasdevs.events.config.LocalRepoConfig
+import org.apache.avro.Schema
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Paths
+
+class ValidationPipelineSpec extends Specification {
+
+    Schema.Parser parser = new Schema.Parser()
+
+    def setup() {
+        parser.parse('''{"type":"enum","name":"Status","namespace":"example","symbols":["ON","OFF"]}''')
+        parser.parse('''{"type":"record","name":"Shared","namespace":"example","fields":[{"name":"status","type":["null","Status"]}]}''')
+    }
+
+    def context(String name, Schema schema) {
+        new ValidationContext(new RepoItem(name, RepoItemType.EVENT, Paths.get(name + ".avdl")), schema, Paths.get(""), Paths.get(""), 2)
+    }
+
+    def countingRule(List visited) {
+        new ValidationRule() {
+            String getName() { "visits" }
+            void checkNamedType(Schema namedType) {
+                visited.add(namedType.fullName)
+            }
+        }
+    }
+
+    def "confirm custom rules run after the built-in ones and see every named type in the repo once"() {
+        given:
+            def visited = Collections.synchronizedList([])
+            def config = new LocalRepoConfig("src/test/resources/avro", 2)
+            config.indexFile = ""
+            def repoService = new RepoService(config, [countingRule(visited)])
+        when:
+            repoService.validateLocalRepo()
+        then:
+            visited.sort() == ["example.ClickEvent", "example.JvmLanguages", "example.common.HttpHeaders", "example.common.Meta"]
+            repoService.protocolCache.missCount == 4
+    }
+
+    def "confirm a nested enum breaking the rule fails every item using it, with the path to it, while being checked once"() {
+        given:
+            def visited = []
+            def pipeline = new ValidationPipeline([countingRule(visited)])
+            def run = pipeline.newRun()
+            def a = parser.parse('''{"type":"record","name":"A","namespace":"example","fields":[{"name":"shared","type":"Shared"}]}''')
+            def b = parser.parse('''{"type":"record","name":"B","namespace":"example","fields":[
+                {"name":"id","type":"string"},{"name":"others","type":{"type":"array","items":"Shared"}}]}''')
+        when:
+            run.validate(context("a", a))
+        then:
+            def e = thrown(RepoServiceException)
+            e.message == "Enum example.Status at example.A.shared.status does not have required symbol OUTDATED_SCHEMA in its list of values"
+        when:
+            run.validate(context("b", b))
+        then:
+            e = thrown(RepoServiceException)
+            e.message == "Enum example.Status at example.B.others.status does not have required symbol OUTDATED_SCHEMA in its list of values"
+            // the enum rule stops at Status, so the custom rule never gets to it
+            visited == ["example.A", "example.Shared", "example.B"]
+            run.checkedTypeCount == 4
+    }
+
+    def "confirm recursive types are walked once and checked in full"() {
+        given:
+            def visited = []
+            def node = parser.parse('''{"type":"record","name":"Node","namespace":"example","fields":[
+                {"name":"children","type":{"type":"map","values":"Node"}},
+                {"name":"color","type":{"type":"enum","name":"Color","symbols":["RED","OUTDATED_SCHEMA"],"default":"OUTDATED_SCHEMA"}},
+                {"name":"next","type":["null","Node"]}]}''')
+            def tree = parser.parse('''{"type":"record","name":"Tree","namespace":"example","fields":[{"name":"root","type":"Node"}]}''')
+            def run = new ValidationPipeline([countingRule(visited)]).newRun()
+        when:
+            run.validate(context("tree", tree))
+            run.validate(context("node", node))
+        then:
+            notThrown(RepoServiceException)
+            visited == ["example.Tree", "example.Node", "example.Color"]
+    }
+
+    def "confirm types of the same full name declared by two items themselves are each checked"() {
+        given:
+            def visited = []
+            def run = new ValidationPipeline([countingRule(visited)]).newRun()
+            def item = { String name, String enumDefault ->
+                new Schema.Parser().parse("""{"type":"record","name":"${name}","namespace":"example","fields":[{"name":"status",
+                    "type":{"type":"enum","name":"Inline","symbols":["ON","OUTDATED_SCHEMA"],"default":"${enumDefault}"}}]}""")
+            }
+        when:
+            run.validate(context("good", item("Good", "OUTDATED_SCHEMA")))
+        then:
+            notThrown(RepoServiceException)
+        when:
+            run.validate(context("bad", item("Bad", "ON")))
+        then:
+            def e = thrown(RepoServiceException)
+            e.message == "Enum example.Inline at example.Bad.status does not have required symbol OUTDATED_SCHEMA listed as its default value"
+        when:
+            run.validate(context("same", item("Same", "OUTDATED_SCHEMA")))
+        then:
+            notThrown(RepoServiceException)
+            visited == ["example.Good", "example.Inline", "example.Bad", "example.Same", "example.Inline"]
+            run.checkedTypeCount == 6
+    }
+
+    def "confirm a type imported by several items is recognised by its declaration rather than compared per item"() {
+        given:
+            def root = Files.createTempDirectory("validation-pipeline")
+            def write = { String file, String types -> Files.writeString(root.resolve(file),
+                    "@namespace(\"example\")\nprotocol ${file.replace('.avdl', '')} {\n${types}\n}\n") }
+            def common = write("Common.avdl", "record Shared { string id; }")
+            def items = ["A", "B"].collect { write("${it}.avdl", "import idl \"Common.avdl\";\nrecord Own { int n; }\nrecord ${it} { Shared shared; Own own; }") }
+            def cache = new ParsedProtocolCache()
+            cache.get(common)
+            def visited = []
+            def run = new ValidationPipeline([countingRule(visited)]).newRun()
+            def schemas = []
+        when:
+            items.eachWithIndex { path, i ->
+                def schema = cache.get(path).getType("example." + ["A", "B"][i])
+                schemas.add(schema)
+                run.validate(new ValidationContext(new RepoItem(["a", "b"][i], RepoItemType.EVENT, path), schema, Paths.get(""), Paths.get(""), 2,
+                        cache.getDeclarations(path)))
+            }
+        then:
+            // each item has a copy of Shared of its own, which is checked once, while each item's Own is checked
+            !schemas[0].getField("shared").schema().is(schemas[1].getField("shared").schema())
+            visited == ["example.A", "example.Shared", "example.Own", "example.B", "example.Own"]
+            run.checkedTypeCount == 5
+        cleanup:
+            root.toFile().deleteDir()
+    }
+
+    def "confirm the first broken rule fails the item and later rules do not run"() {
+        given:
+            def rule = Mock(ValidationRule)
+            def schema = Schema.createRecord("Outer", null, "elsewhere", false, [])
+        when:
+            new ValidationPipeline([rule]).validate(context("outer", schema))
+        then:
+            def e = thrown(RepoServiceException)
+            e.message == "outer's namespace (elsewhere) does not match its location in the local repo ()"
+            0 * rule.checkItem(_)
+            0 * rule.checkNamedType(_)
+    }
+}
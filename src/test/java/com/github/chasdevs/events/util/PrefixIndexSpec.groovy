@@ -0,0 +1,20 @@
+package com.github.chasdevs.events.util
+
+import spock.lang.Specification
+
+class PrefixIndexSpec extends Specification {
+
+    def "confirm names are found by prefix, ignoring case, in alphabetical order"() {
+        given:
+            def index = new PrefixIndex(["page-view", "click-event", "Click-Through", "checkout", "CLICK-EVENT"])
+        expect:
+            index.size() == 4
+            index.startingWith("cl") == ["click-event", "Click-Through"]
+            index.startingWith("CLICK-E") == ["click-event"]
+            index.startingWith("c") == ["checkout", "click-event", "Click-Through"]
+            index.startingWith("") == ["checkout", "click-event", "Click-Through", "page-view"]
+            index.startingWith("page-view-2").isEmpty()
+            index.startingWith("z").isEmpty()
+            PrefixIndex.empty().startingWith("").isEmpty()
+    }
+}
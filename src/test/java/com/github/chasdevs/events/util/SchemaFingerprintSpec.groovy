@@ -0,0 +1,57 @@
+package com.github.chasdevs.events.util
+
+import org.apache.avro.Schema
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static com.github.chasdevs.events.util.SchemaFingerprint.Normalization.*
+
+class SchemaFingerprintSpec extends Specification {
+
+    static Schema record(String doc, String labelDefault, String metaDefault) {
+        new Schema.Parser().parse("""{"type":"record","name":"Click","namespace":"example","doc":"$doc","fields":[
+            {"name":"label","type":"string","doc":"$doc","default":"$labelDefault"},
+            {"name":"meta","type":{"type":"record","name":"Meta","fields":[{"name":"doc","type":"string"}]},
+             "default":{"doc":"$metaDefault"}}
+        ]}""")
+    }
+
+    @Unroll
+    def "confirm #change is #outcome with normalization #normalization"() {
+        given:
+            def original = record("a click", "none", "none")
+        expect:
+            (SchemaFingerprint.of(original, normalization) == SchemaFingerprint.of(changed, normalization)) == same
+        where:
+            change                         | changed                                   | normalization          | same
+            "no change"                    | record("a click", "none", "none")         | FULL                   | true
+            "a documentation edit"         | record("a click on a page", "none", "none") | FULL                 | false
+            "a documentation edit"         | record("a click on a page", "none", "none") | IGNORE_DOCS          | true
+            "a change to a default"        | record("a click", "unknown", "none")      | IGNORE_DOCS            | false
+            "a change to a default record" | record("a click", "none", "unknown")      | IGNORE_DOCS            | false
+            "a change to a default"        | record("a click", "unknown", "none")      | PARSING_CANONICAL_FORM | true
+            outcome = same ? "ignored" : "detected"
+    }
+
+    def "confirm schemas shared between keys are fingerprinted once and missing schemas are left out"() {
+        given:
+            def schema = record("a click", "none", "none")
+        when:
+            def fingerprints = SchemaFingerprint.ofAll(["a-value": schema, "b-value": schema, "c-value": null], IGNORE_DOCS)
+        then:
+            fingerprints.keySet() == ["a-value", "b-value"] as Set
+            fingerprints["a-value"] == SchemaFingerprint.of(schema, IGNORE_DOCS)
+    }
+
+    def "confirm fingerprints are remembered per schema instance, not per equal schema"() {
+        given:
+            def schema = record("a click", "none", "none")
+            def equal = record("a click", "none", "none")
+        when:
+            SchemaFingerprint.remember(schema, FULL, 42L)
+        then:
+            SchemaFingerprint.of(schema, FULL) == 42L
+            SchemaFingerprint.of(equal, FULL) != 42L
+            SchemaFingerprint.of(equal, FULL) == SchemaFingerprint.of(equal, FULL)
+    }
+}
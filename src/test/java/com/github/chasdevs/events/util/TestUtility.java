@@ -1,12 +1,17 @@
 package com.github.chasdevs.events.util;
 
+import com.github.chasdevs.events.services.repo.SyntheticRepoGenerator;
 import org.apache.avro.Schema;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Small IO utility class to help with reading any configuration or fixture data across the project.
@@ -38,4 +43,34 @@ public class TestUtility {
         }
         return Optional.of(schema);
     }
+
+    /**
+     * Parses a {@code test.PageView} record with the given fields, e.g. {@code {"name":"id","type":"string"}}, as
+     * separate versions of one schema to check compatibility or register with.
+     *
+     * @param fields the fields as comma separated JSON objects
+     */
+    public static Schema record(String fields) {
+        return new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"PageView\",\"namespace\":\"test\",\"fields\":[" + fields + "]}");
+    }
+
+    /**
+     * Generates a synthetic repo with the default shape into a new temp directory. Delete it with {@link #deleteRepo(Path)}.
+     */
+    public static Path generateRepo(int schemaCount, long seed) throws IOException {
+        SyntheticRepoGenerator.Options options = new SyntheticRepoGenerator.Options();
+        options.setSchemaCount(schemaCount);
+        options.setSeed(seed);
+        Path root = Files.createTempDirectory("synthetic-repo");
+        new SyntheticRepoGenerator(options).generate(root);
+        return root;
+    }
+
+    public static void deleteRepo(Path root) throws IOException {
+        try(Stream<Path> paths = Files.walk(root)) {
+            for(Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
 }